@@ -0,0 +1,296 @@
+// ===================== DemandGenerator.java =====================
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Time-varying origin-destination demand (simulation thread only).
+ *
+ * OD CSV      : from_edge,to_edge,type,veh_per_hour[,profile]
+ * Profile CSV : profile,start_sec,end_sec,factor   (sim seconds; outside its periods a profile is 0,
+ *               OD rows without a profile or with an unknown one run at their base rate)
+ *
+ * The timeline is cut at every profile breakpoint; each segment gets its total rate and an alias table
+ * over the OD pairs. Per step window: one Poisson draw for the number of arrivals, then O(1) per arrival
+ * to pick the pair => cost is O(arrivals), independent of the number of OD pairs.
+ * Arrivals are injected on VehicleInjection's long route variants via the InjectionEngine.
+ */
+final class DemandGenerator {
+
+    // Poisson draws above this mean are split (sum of Poissons is Poisson) to keep exp(-mean) away from underflow
+    private static final double POISSON_CHUNK = 30.0;
+
+    private static final class OdPair {
+        final VehicleInjection.RouteDef route;
+        final String typeId;
+        final double vehPerHour;
+        final String profile;
+        List<VehicleInjection.RouteVariant> variants = Collections.emptyList();
+
+        OdPair(VehicleInjection.RouteDef route, String typeId, double vehPerHour, String profile) {
+            this.route = route;
+            this.typeId = typeId;
+            this.vehPerHour = vehPerHour;
+            this.profile = profile;
+        }
+    }
+
+    private static final class Period {
+        final double start, end, factor;
+        Period(double start, double end, double factor) { this.start = start; this.end = end; this.factor = factor; }
+    }
+
+    // Piece of the timeline with constant rates: [start, end)
+    private static final class Segment {
+        final double start, end;
+        final double totalPerSec;
+        final AliasTable pick; // null if totalPerSec == 0
+
+        Segment(double start, double end, double totalPerSec, AliasTable pick) {
+            this.start = start;
+            this.end = end;
+            this.totalPerSec = totalPerSec;
+            this.pick = pick;
+        }
+    }
+
+    private final List<OdPair> pairs;
+    private final Map<String, List<Period>> profiles;
+    private final Random rng;
+
+    private Segment[] segments = new Segment[0];
+    private int segCursor = 0;
+    private long generated = 0;
+
+    private DemandGenerator(List<OdPair> pairs, Map<String, List<Period>> profiles, long seed) {
+        this.pairs = pairs;
+        this.profiles = profiles;
+        this.rng = seed >= 0 ? new Random(seed) : new Random();
+    }
+
+    // ===================== Loading =====================
+    // Reads the CSVs (no TraCI); call prepare() on the simulation thread afterwards.
+    static DemandGenerator load(File odCsv, File profileCsv, long seed) throws IOException {
+        Map<String, List<Period>> profiles = new HashMap<>();
+        if (profileCsv != null && profileCsv.isFile()) {
+            for (String[] r : readCsv(profileCsv, 4)) {
+                double start = Double.parseDouble(r[1]);
+                double end = Double.parseDouble(r[2]);
+                double factor = Double.parseDouble(r[3]);
+                if (!(end > start) || factor < 0) throw new IOException("Bad profile period: " + String.join(",", r));
+                profiles.computeIfAbsent(r[0], k -> new ArrayList<>()).add(new Period(start, end, factor));
+            }
+        }
+
+        List<OdPair> pairs = new ArrayList<>();
+        for (String[] r : readCsv(odCsv, 4)) {
+            double vph = Double.parseDouble(r[3]);
+            if (vph <= 0) continue;
+            String profile = r.length > 4 ? r[4] : "";
+            pairs.add(new OdPair(routeFor(r[0], r[1]), r[2], vph, profile));
+        }
+
+        Logging.LOG.info("OD demand loaded: pairs=" + pairs.size() + " profiles=" + profiles.size()
+                + " from " + odCsv.getPath());
+        return new DemandGenerator(pairs, profiles, seed);
+    }
+
+    // Prefer the trip scenario with the same endpoints (shares its installed variants).
+    private static VehicleInjection.RouteDef routeFor(String fromEdge, String toEdge) {
+        for (VehicleInjection.RouteDef rd : VehicleInjection.TRIP_ROUTES.values()) {
+            if (rd.fromEdge.equals(fromEdge) && rd.toEdge.equals(toEdge)) return rd;
+        }
+        String baseId = "rt_od_" + fromEdge.replaceAll("[^a-zA-Z0-9_]", "_") + "_" + toEdge.replaceAll("[^a-zA-Z0-9_]", "_");
+        return new VehicleInjection.RouteDef(baseId, "OD: " + fromEdge + " -> " + toEdge,
+                fromEdge, toEdge, new ArrayList<>());
+    }
+
+    private static List<String[]> readCsv(File f, int minColumns) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String line;
+            boolean first = true;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] cols = line.split("\\s*,\\s*");
+                // Optional header row: both formats have a number in the 4th column
+                if (first) {
+                    first = false;
+                    if (cols.length < 4 || !looksNumeric(cols[3])) continue;
+                }
+                if (cols.length < minColumns) throw new IOException("Too few columns in " + f.getName() + ": " + line);
+                rows.add(cols);
+            }
+        }
+        return rows;
+    }
+
+    private static boolean looksNumeric(String s) {
+        try { Double.parseDouble(s); return true; } catch (NumberFormatException ex) { return false; }
+    }
+
+    // ===================== Preparation (simulation thread: builds route variants via TraCI) =====================
+    void prepare() {
+        prepare(VehicleInjection::variantsFor);
+    }
+
+    // Variant source as a parameter: tests supply fixed variants instead of building them via TraCI.
+    void prepare(BiFunction<VehicleInjection.RouteDef, String, List<VehicleInjection.RouteVariant>> variantsFor) {
+        List<OdPair> usable = new ArrayList<>();
+        for (OdPair p : pairs) {
+            List<VehicleInjection.RouteVariant> vars = variantsFor.apply(p.route, p.typeId);
+            if (vars == null || vars.isEmpty()) {
+                Logging.LOG.warning("OD pair dropped (no route variants): " + p.route.name + " / " + p.typeId);
+                continue;
+            }
+            p.variants = vars;
+            usable.add(p);
+        }
+        pairs.retainAll(usable);
+        buildSegments();
+        segCursor = 0;
+        Logging.LOG.info("OD demand ready: pairs=" + pairs.size() + " segments=" + segments.length);
+    }
+
+    private void buildSegments() {
+        // Breakpoints of all referenced profiles (plus +-infinity)
+        TreeSet<Double> cuts = new TreeSet<>();
+        cuts.add(Double.NEGATIVE_INFINITY);
+        cuts.add(Double.POSITIVE_INFINITY);
+        for (OdPair p : pairs) {
+            List<Period> periods = profiles.get(p.profile);
+            if (periods == null) continue;
+            for (Period per : periods) {
+                cuts.add(per.start);
+                cuts.add(per.end);
+            }
+        }
+
+        Double[] b = cuts.toArray(new Double[0]);
+        List<Segment> out = new ArrayList<>();
+        double[] rates = new double[pairs.size()];
+        for (int k = 0; k + 1 < b.length; k++) {
+            double start = b[k], end = b[k + 1];
+            double probe = Double.isInfinite(start) ? (Double.isInfinite(end) ? 0.0 : end - 1.0) : start;
+
+            double total = 0.0;
+            for (int i = 0; i < pairs.size(); i++) {
+                OdPair p = pairs.get(i);
+                rates[i] = p.vehPerHour / 3600.0 * factorAt(p.profile, probe);
+                total += rates[i];
+            }
+            out.add(new Segment(start, end, total, total > 0 ? new AliasTable(rates) : null));
+        }
+        segments = out.toArray(new Segment[0]);
+    }
+
+    private double factorAt(String profile, double t) {
+        List<Period> periods = profiles.get(profile);
+        if (periods == null) return 1.0;
+        double f = 0.0;
+        for (Period p : periods) {
+            if (t >= p.start && t < p.end) f = p.factor; // later rows win on overlap
+        }
+        return f;
+    }
+
+    // ===================== Per step window =====================
+    /** Schedule all arrivals in [from, to) with the engine; returns how many. O(arrivals) per call. */
+    int generate(double from, double to, InjectionEngine engine) {
+        if (segments.length == 0 || !(to > from)) return 0;
+
+        // Sim time only moves forward => the segment cursor only moves forward.
+        while (segCursor + 1 < segments.length && segments[segCursor].end <= from) segCursor++;
+
+        int count = 0;
+        for (int k = segCursor; k < segments.length; k++) {
+            Segment s = segments[k];
+            if (s.start >= to) break;
+            double a = Math.max(from, s.start), b = Math.min(to, s.end);
+            if (s.pick == null || !(b > a)) continue;
+
+            int n = poisson(s.totalPerSec * (b - a));
+            for (int j = 0; j < n; j++) {
+                OdPair p = pairs.get(s.pick.sample(rng));
+                VehicleInjection.RouteVariant v = VehicleInjection.pickVariant(p.variants, rng);
+                String firstEdge = v.edges.isEmpty() ? null : v.edges.get(0);
+                engine.schedule(v.routeId, p.typeId, firstEdge, a + rng.nextDouble() * (b - a));
+            }
+            count += n;
+        }
+        generated += count;
+        return count;
+    }
+
+    long generatedTotal() { return generated; }
+
+    private int poisson(double mean) {
+        int n = 0;
+        while (mean > POISSON_CHUNK) {
+            n += poissonSmall(POISSON_CHUNK);
+            mean -= POISSON_CHUNK;
+        }
+        return n + poissonSmall(mean);
+    }
+
+    // Knuth: O(result)
+    private int poissonSmall(double mean) {
+        double limit = Math.exp(-mean);
+        double prod = rng.nextDouble();
+        int n = 0;
+        while (prod > limit) {
+            n++;
+            prod *= rng.nextDouble();
+        }
+        return n;
+    }
+
+    // ===================== Alias table (Vose) =====================
+    // O(n) build, O(1) weighted sample.
+    static final class AliasTable {
+        private final double[] prob;
+        private final int[] alias;
+
+        AliasTable(double[] weights) {
+            int n = weights.length;
+            prob = new double[n];
+            alias = new int[n];
+
+            double sum = 0.0;
+            for (double w : weights) sum += w;
+
+            double[] scaled = new double[n];
+            int[] small = new int[n], large = new int[n];
+            int ns = 0, nl = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / sum;
+                if (scaled[i] < 1.0) small[ns++] = i;
+                else large[nl++] = i;
+            }
+
+            while (ns > 0 && nl > 0) {
+                int s = small[--ns], l = large[--nl];
+                prob[s] = scaled[s];
+                alias[s] = l;
+                scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+                if (scaled[l] < 1.0) small[ns++] = l;
+                else large[nl++] = l;
+            }
+            while (nl > 0) prob[large[--nl]] = 1.0;
+            while (ns > 0) prob[small[--ns]] = 1.0; // rounding leftovers
+        }
+
+        int sample(Random rng) {
+            int i = rng.nextInt(prob.length);
+            return rng.nextDouble() < prob[i] ? i : alias[i];
+        }
+    }
+}
@@ -0,0 +1,245 @@
+// ===================== EdgeTable.java =====================
+package org.example;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Static attributes of every normal edge of the .net.xml, read once into primitive arrays.
+ *
+ * Index = edge; lanes of edge e are laneStart[e] .. laneStart[e + 1] - 1 (in index order).
+ * Replaces the per-edge TraCI lookups (Edge.getLaneNumber, Lane.getAllowed, Lane.getLength) in variant
+ * building and lane selection. Immutable after load => safe to read from any thread.
+ */
+final class EdgeTable {
+
+    // vClass bits (only the classes we inject)
+    static final byte CLASS_PASSENGER = 1;
+    static final byte CLASS_TRUCK = 2;
+    static final byte CLASS_BUS = 4;
+    static final byte CLASS_ALL = CLASS_PASSENGER | CLASS_TRUCK | CLASS_BUS;
+
+    private static final double DEFAULT_SPEED = 13.89;
+    private static final double DEFAULT_LENGTH = 5.0;
+
+    // ===================== Per edge =====================
+    final String[] ids;                    // interned
+    final double[] length;                 // lane 0 length (m)
+    final double[] speed;                  // max lane speed (m/s)
+    final byte[] classMask;                // union over lanes
+    final double[] fromX, fromY, toX, toY; // junction coordinates (NaN if unknown)
+    final int[] laneStart;
+
+    // ===================== Per lane =====================
+    final byte[] laneMask;
+
+    private final Map<String, Integer> indexOf;
+
+    // Package-private for NetCache (arrays are adopted, not copied).
+    EdgeTable(String[] ids, double[] length, double[] speed, byte[] classMask,
+                      double[] fromX, double[] fromY, double[] toX, double[] toY,
+                      int[] laneStart, byte[] laneMask) {
+        this.ids = ids;
+        this.length = length;
+        this.speed = speed;
+        this.classMask = classMask;
+        this.fromX = fromX;
+        this.fromY = fromY;
+        this.toX = toX;
+        this.toY = toY;
+        this.laneStart = laneStart;
+        this.laneMask = laneMask;
+
+        this.indexOf = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) indexOf.put(ids[i], i);
+    }
+
+    // ===================== Loading =====================
+    // One NetXmlReader pass; returns null if the file cannot be read.
+    static EdgeTable load(File netFile) {
+        if (netFile == null || !netFile.isFile()) return null;
+        try {
+            return NetXmlReader.read(netFile, false).edges;
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Edge table load failed: " + netFile.getPath(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Streaming builder: beginEdge / addLane* / endEdge per normal edge, in file order.
+     * Junction ids are resolved in build() (net.xml lists junctions after the edges).
+     */
+    static final class Builder {
+        private final ArrayList<String> ids = new ArrayList<>();
+        private final ArrayList<String> fromJ = new ArrayList<>(), toJ = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private double[] length = new double[256], speed = new double[256];
+        private byte[] classMask = new byte[256];
+        private int[] laneStart = new int[257];
+        private byte[] laneMask = new byte[512];
+        private int lanesTotal = 0;
+
+        // Lanes of the current edge (sorted by index in endEdge)
+        private int curLanes = 0;
+        private int[] curIndex = new int[8];
+        private byte[] curMask = new byte[8];
+        private double[] curLength = new double[8], curSpeed = new double[8];
+
+        void beginEdge(String id, String fromJunction, String toJunction) {
+            curLanes = 0;
+            ids.add(id.intern());
+            fromJ.add(fromJunction);
+            toJ.add(toJunction);
+        }
+
+        void addLane(int laneIndex, double len, double vmax, String allow, String disallow) {
+            if (curLanes == curIndex.length) {
+                int cap = curLanes * 2;
+                curIndex = Arrays.copyOf(curIndex, cap);
+                curMask = Arrays.copyOf(curMask, cap);
+                curLength = Arrays.copyOf(curLength, cap);
+                curSpeed = Arrays.copyOf(curSpeed, cap);
+            }
+            curIndex[curLanes] = laneIndex;
+            curMask[curLanes] = laneClassMask(allow, disallow);
+            curLength[curLanes] = len;
+            curSpeed[curLanes] = vmax > 0 ? vmax : DEFAULT_SPEED;
+            curLanes++;
+        }
+
+        void endEdge() {
+            int e = ids.size() - 1;
+            index.put(ids.get(e), e);
+            if (e + 1 >= laneStart.length - 1) {
+                int cap = laneStart.length * 2;
+                length = Arrays.copyOf(length, cap);
+                speed = Arrays.copyOf(speed, cap);
+                classMask = Arrays.copyOf(classMask, cap);
+                laneStart = Arrays.copyOf(laneStart, cap + 1);
+            }
+
+            // Insertion sort by lane index (edges have a handful of lanes, usually already in order)
+            for (int i = 1; i < curLanes; i++) {
+                for (int j = i; j > 0 && curIndex[j - 1] > curIndex[j]; j--) {
+                    swap(j - 1, j);
+                }
+            }
+
+            double vmax = 0;
+            byte mask = 0;
+            laneStart[e] = lanesTotal;
+            for (int i = 0; i < curLanes; i++) {
+                if (lanesTotal == laneMask.length) laneMask = Arrays.copyOf(laneMask, lanesTotal * 2);
+                laneMask[lanesTotal++] = curMask[i];
+                mask |= curMask[i];
+                vmax = Math.max(vmax, curSpeed[i]);
+            }
+            laneStart[e + 1] = lanesTotal;
+
+            double len0 = curLanes > 0 ? curLength[0] : -1;
+            length[e] = len0 > 0 ? len0 : DEFAULT_LENGTH;
+            speed[e] = vmax > 0 ? vmax : DEFAULT_SPEED;
+            classMask[e] = mask;
+        }
+
+        private void swap(int a, int b) {
+            int ti = curIndex[a]; curIndex[a] = curIndex[b]; curIndex[b] = ti;
+            byte tm = curMask[a]; curMask[a] = curMask[b]; curMask[b] = tm;
+            double tl = curLength[a]; curLength[a] = curLength[b]; curLength[b] = tl;
+            double ts = curSpeed[a]; curSpeed[a] = curSpeed[b]; curSpeed[b] = ts;
+        }
+
+        // Index of a finished edge (connections come after all edges); -1 if unknown/internal.
+        int indexOf(String edgeId) {
+            if (edgeId == null) return -1;
+            Integer e = index.get(edgeId);
+            return e == null ? -1 : e;
+        }
+
+        EdgeTable build(Map<String, double[]> junctionXY) {
+            int n = ids.size();
+            double[] fx = new double[n], fy = new double[n], tx = new double[n], ty = new double[n];
+            for (int i = 0; i < n; i++) {
+                double[] s = fromJ.get(i) == null ? null : junctionXY.get(fromJ.get(i));
+                double[] t = toJ.get(i) == null ? null : junctionXY.get(toJ.get(i));
+                fx[i] = s == null ? Double.NaN : s[0];
+                fy[i] = s == null ? Double.NaN : s[1];
+                tx[i] = t == null ? Double.NaN : t[0];
+                ty[i] = t == null ? Double.NaN : t[1];
+            }
+            return new EdgeTable(ids.toArray(new String[0]), Arrays.copyOf(length, n), Arrays.copyOf(speed, n),
+                    Arrays.copyOf(classMask, n), fx, fy, tx, ty, Arrays.copyOf(laneStart, n + 1),
+                    Arrays.copyOf(laneMask, lanesTotal));
+        }
+    }
+
+    private static byte laneClassMask(String allow, String disallow) {
+        if (allow != null && !allow.isBlank()) return classesIn(allow);
+        if (disallow != null && !disallow.isBlank()) return (byte) (CLASS_ALL & ~classesIn(disallow));
+        return CLASS_ALL;
+    }
+
+    private static byte classesIn(String list) {
+        byte m = 0;
+        for (String c : list.trim().split("\\s+")) {
+            if ("all".equals(c)) return CLASS_ALL;
+            m |= classBit(c);
+        }
+        return m;
+    }
+
+    static byte classBit(String vClass) {
+        switch (vClass) {
+            case "passenger": return CLASS_PASSENGER;
+            case "truck": return CLASS_TRUCK;
+            case "bus": return CLASS_BUS;
+            default: return 0;
+        }
+    }
+
+    static byte classBitForType(String typeId) {
+        return classBit(VehicleInjection.vClassFor(typeId));
+    }
+
+    // ===================== Lookups =====================
+    int size() { return ids.length; }
+
+    int indexOf(String edgeId) {
+        Integer e = indexOf.get(edgeId);
+        return e == null ? -1 : e;
+    }
+
+    boolean contains(String edgeId) { return indexOf.containsKey(edgeId); }
+
+    int laneCount(int e) { return laneStart[e + 1] - laneStart[e]; }
+
+    byte laneMask(int e, int laneIndex) {
+        return laneIndex >= 0 && laneIndex < laneCount(e) ? laneMask[laneStart[e] + laneIndex] : 0;
+    }
+
+    // True if some lane of the edge allows the vType's class (unknown edge => true, like the TraCI check).
+    boolean allows(String edgeId, String typeId) {
+        int e = indexOf(edgeId);
+        return e < 0 || (classMask[e] & classBitForType(typeId)) != 0;
+    }
+
+    // Lane 0 length; NaN for unknown edges.
+    double length(String edgeId) {
+        int e = indexOf(edgeId);
+        return e < 0 ? Double.NaN : length[e];
+    }
+
+    /** Indices of the lanes that allow the vType's class; null for unknown edges. */
+    int[] lanesAllowing(String edgeId, String typeId) {
+        int e = indexOf(edgeId);
+        if (e < 0) return null;
+        byte bit = classBitForType(typeId);
+        int[] tmp = new int[laneCount(e)];
+        int k = 0;
+        for (int i = 0; i < tmp.length; i++) {
+            if ((laneMask[laneStart[e] + i] & bit) != 0) tmp[k++] = i;
+        }
+        return Arrays.copyOf(tmp, k);
+    }
+}
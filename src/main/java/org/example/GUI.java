@@ -83,6 +83,15 @@ public final class GUI {
     // Traffic light status label (selected TLS, state etc)
     private static final JLabel tlStateLabel = new JLabel("TL State: -");
 
+    // Requested vs achieved sim speed (machine may not keep up with high ratios)
+    private static final JLabel paceLabel = new JLabel("Sim Pace: -");
+
+    // Injected vehicles that have not entered the network yet
+    private static final JLabel waitingLabel = new JLabel("Waiting to Enter: 0");
+
+    // Speed slider stops: sim-seconds per wall-second (last one = as fast as possible)
+    private static final double[] SIM_RATIOS = {0.5, 1, 2, 5, 10, 20, 50, PacingScheduler.UNLIMITED};
+
     // ===================== UI Parts holder =====================
     // Problem: GUI me bahut saare components => local variables ka jungle 🌳
     // Solution: UiParts me sab store => wireActions(...) me clean access.
@@ -99,12 +108,14 @@ public final class GUI {
         // Input widgets
         JSlider simSpeedSlider, minSpeedSlider;
         JTextField numVehiclesField;
+        JTextField spreadSecField;
         JComboBox<VehicleInjection.RouteDef> routeCombo;
         JComboBox<TrafficControl.TlsItem> tlCombo;
 
         // Filter toggles
         JCheckBox showCarsCb, showTrucksCb, showBusesCb;
         JCheckBox ruleBasedTlsCb;
+        JCheckBox odDemandCb;
 
         // Min speed label
         JLabel minSpeedValueLabel;
@@ -163,6 +174,8 @@ public final class GUI {
                 throughputLabel,
                 meanSpeedLabel,
                 tlStateLabel,
+                paceLabel,
+                waitingLabel,
                 ui.routeCombo,
                 ui.tlCombo,
                 trafficControl,
@@ -245,6 +258,16 @@ public final class GUI {
         ui.numVehiclesField.setAlignmentX(Component.LEFT_ALIGNMENT);
         ui.numVehiclesField.setMaximumSize(new Dimension(160, 28));
 
+        // Departure spread (sim seconds): 0 => all depart now
+        JLabel spreadLabel = new JLabel("Spread departures over (sim s)");
+        ui.spreadSecField = new JTextField("0");
+        ui.spreadSecField.setFont(new Font("SansSerif", Font.BOLD, 14));
+        ui.spreadSecField.setAlignmentX(Component.LEFT_ALIGNMENT);
+        ui.spreadSecField.setMaximumSize(new Dimension(160, 28));
+
+        // Background OD demand from Main.DEMAND_OD_CSV / DEMAND_PROFILE_CSV
+        ui.odDemandCb = styleCheckBox(new JCheckBox("OD demand (CSV)", false));
+
         // Spawn type buttons
         JLabel vehicleTypeLabel = new JLabel("Spawn type");
         ui.carBtn = new JButton("Car");
@@ -306,6 +329,7 @@ public final class GUI {
         styleSectionLabel(speedLabel, titleFont);
         styleSectionLabel(routeLabel, new Font("SansSerif", Font.BOLD, 12));
         styleSectionLabel(numVehiclesLabel, titleFont);
+        styleSectionLabel(spreadLabel, new Font("SansSerif", Font.BOLD, 12));
         styleSectionLabel(vehicleTypeLabel, titleFont);
         styleSectionLabel(filterTitle, titleFont);
         styleSectionLabel(minSpeedTitle, new Font("SansSerif", Font.BOLD, 12));
@@ -348,6 +372,12 @@ public final class GUI {
         controls.add(numVehiclesLabel);
         controls.add(Box.createVerticalStrut(4));
         controls.add(ui.numVehiclesField);
+        controls.add(Box.createVerticalStrut(6));
+        controls.add(spreadLabel);
+        controls.add(Box.createVerticalStrut(4));
+        controls.add(ui.spreadSecField);
+        controls.add(Box.createVerticalStrut(6));
+        controls.add(ui.odDemandCb);
 
         controls.add(Box.createVerticalStrut(10));
         controls.add(vehicleTypeLabel);
@@ -396,19 +426,22 @@ public final class GUI {
         return controlsScroll;
     }
 
-    // Speed slider with labels 1x..10x
+    // Speed slider: one stop per entry of SIM_RATIOS (0.5x .. 50x, max)
     private static JSlider buildSpeedSlider() {
-        JSlider s = new JSlider(1, 10, 1);
+        JSlider s = new JSlider(0, SIM_RATIOS.length - 1, indexOfRatio(LiveConnectionSumo.DEFAULT_SIM_RATIO));
         s.setMajorTickSpacing(1);
         s.setPaintTicks(true);
+        s.setSnapToTicks(true);
 
         // Label table: slider value -> label component
         Hashtable<Integer, JLabel> speedLabelTable = new Hashtable<>();
-        JLabel minL = new JLabel("1x"), maxL = new JLabel("10x");
-        minL.setForeground(Color.WHITE);
-        maxL.setForeground(Color.WHITE);
-        speedLabelTable.put(1, minL);
-        speedLabelTable.put(10, maxL);
+        Font labelFont = new Font("SansSerif", Font.PLAIN, 10);
+        for (int i = 0; i < SIM_RATIOS.length; i++) {
+            JLabel l = new JLabel(PacingScheduler.format(SIM_RATIOS[i]));
+            l.setForeground(Color.WHITE);
+            l.setFont(labelFont);
+            speedLabelTable.put(i, l);
+        }
 
         s.setLabelTable(speedLabelTable);
         s.setPaintLabels(true);
@@ -420,6 +453,13 @@ public final class GUI {
         return s;
     }
 
+    private static int indexOfRatio(double ratio) {
+        for (int i = 0; i < SIM_RATIOS.length; i++) {
+            if (SIM_RATIOS[i] == ratio) return i;
+        }
+        return 0;
+    }
+
     // ===================== Right metrics =====================
     private static JPanel buildMetricsPanel(UiParts ui) {
         JPanel metrics = new JPanel();
@@ -432,7 +472,7 @@ public final class GUI {
         for (JLabel l : new JLabel[]{
                 activeVehiclesLabel, visibleVehiclesLabel, byTypeLabel,
                 avgWaitLabel, congestionLabel, throughputLabel, meanSpeedLabel,
-                tlStateLabel
+                tlStateLabel, paceLabel, waitingLabel
         }) {
             l.setForeground(Color.WHITE);
             l.setFont(metricsFont);
@@ -464,6 +504,10 @@ public final class GUI {
 
         metrics.add(Box.createVerticalStrut(10));
         metrics.add(tlStateLabel);
+        metrics.add(Box.createVerticalStrut(4));
+        metrics.add(paceLabel);
+        metrics.add(Box.createVerticalStrut(4));
+        metrics.add(waitingLabel);
         metrics.add(Box.createVerticalGlue());
 
         return metrics;
@@ -483,13 +527,13 @@ public final class GUI {
 
         // Speed slider
         ui.simSpeedSlider.addChangeListener(e -> {
-            int factor = ui.simSpeedSlider.getValue(); // 1..10
+            if (ui.simSpeedSlider.getValueIsAdjusting()) return; // apply once the knob is released
 
-            // delay formula: 1x => 100ms, 10x => 10ms
-            int delayMs = 110 - 10 * factor;
+            // slider index => sim-seconds per wall-second (PacingScheduler keeps the pace)
+            double ratio = SIM_RATIOS[ui.simSpeedSlider.getValue()];
 
-            live.setSpeedDelay(delayMs, factor);
-            Logging.LOG.info("Sim speed set: " + factor + "x (delay=" + delayMs + "ms)");
+            live.setSimRatio(ratio);
+            Logging.LOG.info("Sim speed set: " + PacingScheduler.format(ratio));
         });
 
         // Export CSV
@@ -517,13 +561,39 @@ public final class GUI {
             catch (Exception ex) { return 1; }
         };
 
+        // Departure spread safe supplier: invalid input => 0 (all depart now)
+        java.util.function.Supplier<Double> spreadSupplier = () -> {
+            try { return Math.max(0.0, Double.parseDouble(ui.spreadSecField.getText().trim())); }
+            catch (Exception ex) { return 0.0; }
+        };
+
+        // TraCI writes never run on the EDT: they are queued and executed by the simulation thread between steps.
+        SimCommandQueue commands = live.commands();
+        InjectionEngine engine = live.injection();
+
         // Inject vehicles by type
-        ui.carBtn.addActionListener(e -> VehicleInjection.injectVehicles(ui.frame, Main.TYPE_CAR,
-                (VehicleInjection.RouteDef) ui.routeCombo.getSelectedItem(), numVehiclesSupplier.get()));
-        ui.truckBtn.addActionListener(e -> VehicleInjection.injectVehicles(ui.frame, Main.TYPE_TRUCK,
-                (VehicleInjection.RouteDef) ui.routeCombo.getSelectedItem(), numVehiclesSupplier.get()));
-        ui.busBtn.addActionListener(e -> VehicleInjection.injectVehicles(ui.frame, Main.TYPE_BUS,
-                (VehicleInjection.RouteDef) ui.routeCombo.getSelectedItem(), numVehiclesSupplier.get()));
+        ui.carBtn.addActionListener(e -> VehicleInjection.injectVehicles(ui.frame, commands, engine, Main.TYPE_CAR,
+                (VehicleInjection.RouteDef) ui.routeCombo.getSelectedItem(), numVehiclesSupplier.get(), spreadSupplier.get()));
+        ui.truckBtn.addActionListener(e -> VehicleInjection.injectVehicles(ui.frame, commands, engine, Main.TYPE_TRUCK,
+                (VehicleInjection.RouteDef) ui.routeCombo.getSelectedItem(), numVehiclesSupplier.get(), spreadSupplier.get()));
+        ui.busBtn.addActionListener(e -> VehicleInjection.injectVehicles(ui.frame, commands, engine, Main.TYPE_BUS,
+                (VehicleInjection.RouteDef) ui.routeCombo.getSelectedItem(), numVehiclesSupplier.get(), spreadSupplier.get()));
+
+        // OD demand ON/OFF (loading + variant building run on the simulation thread)
+        ui.odDemandCb.addActionListener(e -> {
+            boolean enabled = ui.odDemandCb.isSelected();
+            commands.submit("OD demand " + enabled, () -> {
+                live.setDemandEnabled(enabled);
+                return null;
+            }).whenComplete((ok, err) -> {
+                if (err == null || !enabled) return;
+                SwingUtilities.invokeLater(() -> {
+                    ui.odDemandCb.setSelected(false);
+                    JOptionPane.showMessageDialog(ui.frame, "Could not load OD demand from " + Main.DEMAND_OD_CSV
+                            + ":\n" + err.getMessage(), "OD Demand", JOptionPane.ERROR_MESSAGE);
+                });
+            });
+        });
 
         // TLS dropdown selection => TrafficControl ko selected id do
         ui.tlCombo.addActionListener(e -> {
@@ -535,20 +605,22 @@ public final class GUI {
         ui.tlRedBtn.addActionListener(e -> {
             TrafficControl.TlsItem item = (TrafficControl.TlsItem) ui.tlCombo.getSelectedItem();
             String tlsId = (item == null) ? null : item.id;
-            if (tlsId != null) trafficControl.forceTrafficLightRed(tlsId);
+            if (tlsId != null) commands.run("TLS force red " + tlsId, () -> trafficControl.forceTrafficLightRed(tlsId));
         });
 
         ui.tlGreenBtn.addActionListener(e -> {
             TrafficControl.TlsItem item = (TrafficControl.TlsItem) ui.tlCombo.getSelectedItem();
             String tlsId = (item == null) ? null : item.id;
-            if (tlsId != null) trafficControl.forceTrafficLightGreen(tlsId);
+            if (tlsId != null) commands.run("TLS force green " + tlsId, () -> trafficControl.forceTrafficLightGreen(tlsId));
         });
 
-        ui.tlResetBtn.addActionListener(e -> trafficControl.resetAllForcedTrafficLights());
+        ui.tlResetBtn.addActionListener(e -> commands.run("TLS reset", trafficControl::resetAllForcedTrafficLights));
 
         // Rule-based TLS ON/OFF
-        ui.ruleBasedTlsCb.addActionListener(e ->
-                trafficControl.setRuleBasedTlsEnabled(ui.ruleBasedTlsCb.isSelected()));
+        ui.ruleBasedTlsCb.addActionListener(e -> {
+            boolean enabled = ui.ruleBasedTlsCb.isSelected();
+            commands.run("rule-based TLS " + enabled, () -> trafficControl.setRuleBasedTlsEnabled(enabled));
+        });
 
         // Filters => update global FILTER (MapPanel reads it)
         ui.showCarsCb.addActionListener(e -> FILTER.showCars = ui.showCarsCb.isSelected());
@@ -0,0 +1,181 @@
+// ===================== HeadlessRunner.java =====================
+package org.example;
+
+import org.eclipse.sumo.libtraci.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Batch mode without Swing: starts plain `sumo`, steps as fast as SUMO allows (no sleep, no repaint)
+ * and writes the same MetricRow data as the GUI export.
+ *
+ * Usage: --headless [--cfg file.sumocfg] [--duration seconds] [--seed n] [--out metrics.csv] [--sample seconds]
+ *                   [--od od.csv [--profile profile.csv]] [--polling]
+ *
+ * With --od, extra demand is generated from the OD matrix (DemandGenerator, seeded with --seed) on top of the
+ * routes of the config. --polling reads vehicles with per-vehicle calls instead of subscriptions (latency
+ * comparison; the collector logs its average per-step latency at FINE).
+ *
+ * Nothing is rendered, so SUMO advances straight from one metric sample to the next; vehicles are read once per
+ * sample, arrivals are counted on every SUMO step in between.
+ */
+final class HeadlessRunner {
+
+    private HeadlessRunner() {}
+
+    // ===================== Options =====================
+    static final class Options {
+        String sumocfgPath = Main.SUMOCFG_PATH;
+        double durationSec = 3600.0;
+        long seed = -1;                    // -1 => SUMO default seed
+        String metricsCsvPath = "headless_metrics.csv";
+        double sampleEverySimSec = LiveConnectionSumo.LOG_EVERY_SIM_SECONDS;
+        String odCsvPath = null;           // null => no extra OD demand
+        String profileCsvPath = null;
+        boolean useSubscriptions = Main.USE_VEHICLE_SUBSCRIPTIONS;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                switch (a) {
+                    case "--headless": break;
+                    case "--cfg": o.sumocfgPath = value(args, ++i, a); break;
+                    case "--duration": o.durationSec = Double.parseDouble(value(args, ++i, a)); break;
+                    case "--seed": o.seed = Long.parseLong(value(args, ++i, a)); break;
+                    case "--out": o.metricsCsvPath = value(args, ++i, a); break;
+                    case "--sample": o.sampleEverySimSec = Double.parseDouble(value(args, ++i, a)); break;
+                    case "--od": o.odCsvPath = value(args, ++i, a); break;
+                    case "--profile": o.profileCsvPath = value(args, ++i, a); break;
+                    case "--polling": o.useSubscriptions = false; break;
+                    default: throw new IllegalArgumentException("Unknown argument: " + a);
+                }
+            }
+            if (!(o.durationSec > 0)) throw new IllegalArgumentException("--duration must be > 0");
+            if (!(o.sampleEverySimSec > 0)) throw new IllegalArgumentException("--sample must be > 0");
+            if (o.profileCsvPath != null && o.odCsvPath == null) throw new IllegalArgumentException("--profile needs --od");
+            return o;
+        }
+
+        private static String value(String[] args, int i, String name) {
+            if (i >= args.length) throw new IllegalArgumentException("Missing value for " + name);
+            return args[i];
+        }
+
+        @Override public String toString() {
+            return String.format(Locale.US, "cfg=%s duration=%.0fs seed=%s out=%s sample=%.2fs od=%s collect=%s",
+                    sumocfgPath, durationSec, seed >= 0 ? Long.toString(seed) : "default", metricsCsvPath,
+                    sampleEverySimSec, odCsvPath == null ? "-" : odCsvPath, useSubscriptions ? "subscriptions" : "polling");
+        }
+    }
+
+    // Returns the process exit code (0 = ok).
+    static int run(String[] args) {
+        Options opt;
+        try {
+            opt = Options.parse(args);
+        } catch (IllegalArgumentException ex) {
+            Logging.LOG.severe("Headless: " + ex.getMessage());
+            Logging.LOG.info("Usage: --headless [--cfg file.sumocfg] [--duration seconds] [--seed n] [--out metrics.csv] [--sample seconds]"
+                    + " [--od od.csv [--profile profile.csv]] [--polling]");
+            return 2;
+        }
+
+        File cfg = new File(opt.sumocfgPath);
+        if (!cfg.isFile() || !cfg.canRead()) {
+            Logging.LOG.severe("Headless: SUMO config not readable: " + cfg.getAbsolutePath());
+            return 2;
+        }
+
+        Logging.LOG.info("Headless run: " + opt);
+        try {
+            SumoLauncher.start(SumoLauncher.headlessCommand(
+                    opt.sumocfgPath, SumoLauncher.writeVTypesOnlyRoutesFile(), opt.seed));
+            List<LiveConnectionSumo.MetricRow> rows = simulate(opt, TraciBackend.INSTANCE, loadDemand(opt));
+            LiveConnectionSumo.writeMetricsCsv(new File(opt.metricsCsvPath), rows, "", 0.0);
+            Logging.LOG.info("Headless: wrote " + rows.size() + " rows to " + new File(opt.metricsCsvPath).getAbsolutePath());
+            return 0;
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Headless run failed", ex);
+            return 1;
+        } finally {
+            try { Simulation.close(); } catch (Exception ignored) {}
+        }
+    }
+
+    // Optional OD demand: trips and network of the --cfg config (the one SUMO runs); null without --od.
+    private static DemandGenerator loadDemand(Options opt) throws IOException {
+        if (opt.odCsvPath == null) return null;
+        if (opt.seed >= 0) VehicleInjection.setVariantSeed(opt.seed);
+        VehicleInjection.loadTripRoutesFromRou(opt.sumocfgPath);
+        VehicleInjection.loadRoutingGraph(MapVisualisation.netFileFromSumocfg(opt.sumocfgPath));
+        VehicleInjection.validateRoutingGraph();
+        DemandGenerator demand = DemandGenerator.load(new File(opt.odCsvPath),
+                opt.profileCsvPath == null ? null : new File(opt.profileCsvPath), opt.seed);
+        demand.prepare();
+        return demand;
+    }
+
+    // ===================== Simulation loop (max speed) =====================
+    // Package-private with the backend as a parameter so the loop can run against a stand-in in tests.
+    static List<LiveConnectionSumo.MetricRow> simulate(Options opt, SimBackend sim, DemandGenerator demand)
+            throws InterruptedException {
+        VehicleCollector collector = new VehicleCollector(sim, opt.useSubscriptions);
+        StepAggregator aggregator = new StepAggregator(null); // no filter => every vehicle counts as visible
+        ThroughputWindow arrivals = new ThroughputWindow(Main.THROUGHPUT_WINDOW_SEC);
+        RawVehicleFrame frame = new RawVehicleFrame(256); // same frame type as the GUI pipeline, reused
+
+        List<LiveConnectionSumo.MetricRow> rows = new ArrayList<>();
+        double lastLoggedSimTime = -1.0;
+        long wallStart = System.nanoTime();
+        PacingScheduler pacer = new PacingScheduler(PacingScheduler.UNLIMITED); // only measures the ratio
+        InjectionEngine engine = new InjectionEngine();
+
+        double deltaT = sim.deltaT();
+        long stepsPerSample = Math.max(1, Math.round(opt.sampleEverySimSec / deltaT));
+
+        while (true) {
+            // Advance to the next sample time (arrivals of every intermediate step are counted).
+            double before = sim.currentTime();
+            double target = Math.min(opt.durationSec, before + stepsPerSample * deltaT);
+            if (demand != null) {
+                demand.generate(before, target, engine);
+                engine.releaseDue(before, target);
+            }
+            int arrived = sim.stepCountingArrivals(target, null);
+            double simTime = sim.currentTime();
+            pacer.pace(simTime);
+
+            collector.collect(simTime - before > deltaT * 1.5);
+            frame.clear();
+            collector.copyTo(frame);
+            frame.arrived = arrived;
+            arrivals.record(simTime, frame.arrived);
+            aggregator.aggregate(frame);
+
+            lastLoggedSimTime = simTime;
+            rows.add(new LiveConnectionSumo.MetricRow(
+                    Logging.nowTag(), simTime, aggregator.active, aggregator.stopped, aggregator.congestion,
+                    aggregator.avgWaitSec, aggregator.meanSpeedMps,
+                    arrivals.ratePerHour(Main.THROUGHPUT_WINDOW_SEC), pacer.targetRatio(), pacer.achievedRatio(),
+                    aggregator.visible, aggregator.visibleCars, aggregator.visibleTrucks, aggregator.visibleBuses,
+                    false
+            ));
+
+            if (simTime >= opt.durationSec) break;
+            // Demand exhausted and network empty => nothing left to measure (OD demand never runs out).
+            if (demand == null && sim.minExpectedNumber() <= 0) break;
+        }
+
+        double wallSec = (System.nanoTime() - wallStart) / 1e9;
+        Logging.LOG.info(String.format(Locale.US,
+                "Headless: simulated %.1f s in %.1f s wall time (%.1fx), arrivals=%d, od_generated=%d",
+                lastLoggedSimTime, wallSec, wallSec > 0 ? lastLoggedSimTime / wallSec : 0.0, arrivals.total(),
+                demand == null ? 0 : demand.generatedTotal()));
+        return rows;
+    }
+}
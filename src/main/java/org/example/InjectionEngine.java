@@ -0,0 +1,180 @@
+// ===================== InjectionEngine.java =====================
+package org.example;
+
+import org.eclipse.sumo.libtraci.*;
+
+import java.util.*;
+
+/**
+ * Bulk vehicle injection with scheduled departures (simulation thread only).
+ *
+ * Injection requests only enqueue vehicles with a depart time; before each step call the engine hands all
+ * vehicles due within that step window to SUMO in one batch. IDs are {@code inj_<type>_<counter>}: the prefix
+ * keeps them apart from the vehicle ids of the cfg's route files, the type part is kept for classification.
+ * Departures are spread round-robin across the lanes of the first edge that allow the vehicle class.
+ */
+final class InjectionEngine {
+
+    // Prefix of every injected vehicle id (route files of the cfg never use it)
+    static final String ID_PREFIX = "inj_";
+
+    // Bound on Vehicle.add calls per step window (the rest follows in the next window)
+    private static final int MAX_ADDS_PER_STEP = 2000;
+
+    // Outcome of add()
+    private static final int ADDED = 0, FAILED = 1, DEFERRED = 2;
+
+    // The minimal Vehicle.add signature (no depart time / lane) was needed at least once
+    private static boolean minimalAddWarned = false;
+
+    private static final class Pending {
+        final long seq;
+        final String vehId, routeId, typeId, firstEdge;
+        final double departTime;
+
+        Pending(long seq, String vehId, String routeId, String typeId, String firstEdge, double departTime) {
+            this.seq = seq;
+            this.vehId = vehId;
+            this.routeId = routeId;
+            this.typeId = typeId;
+            this.firstEdge = firstEdge;
+            this.departTime = departTime;
+        }
+    }
+
+    private final PriorityQueue<Pending> scheduled = new PriorityQueue<>(
+            Comparator.<Pending>comparingDouble(p -> p.departTime).thenComparingLong(p -> p.seq));
+
+    private long nextSeq = 0;
+
+    // (edge|type) -> lane indices allowing the vehicle class, and the round-robin cursor per key
+    private final Map<String, int[]> allowedLanes = new HashMap<>();
+    private final Map<String, Integer> laneCursor = new HashMap<>();
+
+    // Read by the UI thread (status label)
+    private volatile int waitingInEngine = 0;
+    private volatile int waitingInSumo = 0;
+
+    // ===================== Scheduling =====================
+    // Queue one vehicle; returns its (collision-free) id.
+    String schedule(String routeId, String typeId, String firstEdge, double departTime) {
+        long seq = nextSeq++;
+        String vehId = ID_PREFIX + typeId + "_" + seq;
+        scheduled.add(new Pending(seq, vehId, routeId, typeId, firstEdge, departTime));
+        waitingInEngine = scheduled.size();
+        return vehId;
+    }
+
+    /**
+     * Hand every vehicle due before horizon (the sim time the next step call advances to) to SUMO.
+     * Returns how many were added.
+     */
+    int releaseDue(double simTime, double horizon) {
+        int added = 0, attempted = 0;
+        List<Pending> deferred = null;
+        while (!scheduled.isEmpty() && attempted < MAX_ADDS_PER_STEP) {
+            Pending p = scheduled.peek();
+            if (p.departTime > horizon) break;
+            scheduled.poll();
+            attempted++;
+
+            String depart = p.departTime <= simTime ? "now" : String.format(Locale.US, "%.2f", p.departTime);
+            String lane = nextLane(p.firstEdge, p.typeId);
+            int result = add(p, depart, lane, simTime);
+            if (result == ADDED) added++;
+            else if (result == DEFERRED) {
+                if (deferred == null) deferred = new ArrayList<>();
+                deferred.add(p);
+            }
+        }
+        // Re-queued after the loop so they are not polled again within this window.
+        if (deferred != null) scheduled.addAll(deferred);
+
+        waitingInEngine = scheduled.size();
+        if (attempted > 0 || waitingInSumo > 0) waitingInSumo = Math.max(0, TraciCapabilities.pendingVehicleCount());
+        return added;
+    }
+
+    // Queued vehicles in release order as "route type depart" (no ids; for comparing schedules).
+    List<String> scheduledInOrder() {
+        List<Pending> queued = new ArrayList<>(scheduled);
+        queued.sort(scheduled.comparator());
+        List<String> out = new ArrayList<>(queued.size());
+        for (Pending p : queued) out.add(String.format(Locale.US, "%s %s %.6f", p.routeId, p.typeId, p.departTime));
+        return out;
+    }
+
+    // Vehicles requested but not driving yet: still scheduled here + loaded but not inserted by SUMO.
+    int waitingToEnter() { return waitingInEngine + waitingInSumo; }
+    int waitingInEngine() { return waitingInEngine; }
+    int waitingInSumo() { return waitingInSumo; }
+
+    // ===================== Internals =====================
+    private static int add(Pending p, String depart, String lane, double simTime) {
+        // String signature (current libtraci): exact depart time + lane.
+        if (TraciCapabilities.addVehicle(p.vehId, p.routeId, p.typeId, depart, lane, "base", "0")) return ADDED;
+
+        // Older APIs: numeric signature, else the minimal one.
+        double departSec = "now".equals(depart) ? Simulation.getCurrentTime() : Double.parseDouble(depart);
+        if (TraciCapabilities.addVehicleFull(p.vehId, p.routeId, p.typeId, departSec, lane, 0.0, -1.0)) return ADDED;
+
+        // The minimal signature departs "now" on SUMO's default lane => only used once the vehicle is due,
+        // a later depart time stays scheduled here.
+        if (p.departTime > simTime) return DEFERRED;
+        if (!minimalAddWarned) {
+            minimalAddWarned = true;
+            Logging.LOG.warning("Vehicle.add without depart time/lane in use (old libtraci): "
+                    + "injected vehicles depart at the first step window they are due, lane chosen by SUMO");
+        }
+        try {
+            Vehicle.add(p.vehId, p.routeId, p.typeId);
+            return ADDED;
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE,
+                    "Vehicle.add failed for " + p.vehId + " route=" + p.routeId, ex);
+            return FAILED;
+        }
+    }
+
+    private String nextLane(String edgeId, String typeId) {
+        if (edgeId == null) return "best";
+        String key = edgeId + "|" + typeId;
+
+        int[] lanes = allowedLanes.get(key);
+        if (lanes == null) {
+            lanes = resolveAllowedLanes(edgeId, typeId);
+            allowedLanes.put(key, lanes);
+        }
+        if (lanes.length == 0) return "best";
+
+        int cursor = laneCursor.getOrDefault(key, 0);
+        laneCursor.put(key, cursor + 1);
+        return Integer.toString(lanes[cursor % lanes.length]);
+    }
+
+    private static int[] resolveAllowedLanes(String edgeId, String typeId) {
+        EdgeTable table = VehicleInjection.edgeTable();
+        int[] fromTable = table == null ? null : table.lanesAllowing(edgeId, typeId);
+        if (fromTable != null) return fromTable;
+
+        // Edge not in the table (or no table): ask SUMO
+        int n = TraciCapabilities.edgeLaneCount(edgeId);
+        if (n <= 0) return new int[0];
+
+        String vClass = VehicleInjection.vClassFor(typeId);
+        int[] tmp = new int[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            StringVector allowed = TraciCapabilities.laneAllowed(edgeId + "_" + i);
+            if (allowed == null || allowed.size() == 0 || containsIgnoreCase(allowed, vClass)) tmp[k++] = i;
+        }
+        return Arrays.copyOf(tmp, k);
+    }
+
+    private static boolean containsIgnoreCase(StringVector v, String s) {
+        for (int i = 0; i < v.size(); i++) {
+            if (s.equalsIgnoreCase(v.get(i))) return true;
+        }
+        return false;
+    }
+}
@@ -8,11 +8,13 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 // Use Java to connect to the SUMO simulation (TraCI/libtraci) and read vehicle data in real time.
 public class LiveConnectionSumo implements Runnable {
@@ -34,6 +36,8 @@ public class LiveConnectionSumo implements Runnable {
     private final JLabel meanSpeedLabel;
 
     private final JLabel tlStateLabel;
+    private final JLabel paceLabel;
+    private final JLabel waitingLabel;
 
     private final JComboBox<VehicleInjection.RouteDef> routeCombo;
     private final JComboBox<TrafficControl.TlsItem> tlCombo;
@@ -45,8 +49,19 @@ public class LiveConnectionSumo implements Runnable {
     // volatile ensures the simulation thread can immediately see changes made by the UI thread.
     private volatile boolean started = false;
     private volatile boolean running = true;
-    private volatile int sleepMs = 50;
-    private volatile int latestSpeedFactorUi = 1;
+
+    // Real-time factor pacing (replaces the fixed per-step sleep)
+    static final double DEFAULT_SIM_RATIO = 10.0;
+    private final PacingScheduler pacer = new PacingScheduler(DEFAULT_SIM_RATIO);
+
+    // UI-requested TraCI writes, executed on this thread between steps
+    private final SimCommandQueue commands = new SimCommandQueue();
+
+    // Scheduled bulk injection (vehicles handed to SUMO per step window)
+    private final InjectionEngine injection = new InjectionEngine();
+
+    // OD demand feeding the engine (null = off); simulation thread only
+    private DemandGenerator demand;
 
     private int injectedCounter = 0;
 
@@ -64,7 +79,8 @@ public class LiveConnectionSumo implements Runnable {
         final double avgWaitSeconds;
         final double meanSpeedMps;
         final double throughputVph;
-        final int speedFactorUi;
+        final double speedFactorUi;   // requested sim/wall ratio (PacingScheduler.UNLIMITED => max)
+        final double achievedRatio;
 
         final int visibleVehicles;
         final int visibleCars;
@@ -75,7 +91,7 @@ public class LiveConnectionSumo implements Runnable {
 
         MetricRow(String exportLocalTime, double simTime, int activeVehicles, int stoppedVehicles,
                   double congestionIndex, double avgWaitSeconds, double meanSpeedMps,
-                  double throughputVph, int speedFactorUi,
+                  double throughputVph, double speedFactorUi, double achievedRatio,
                   int visibleVehicles, int visibleCars, int visibleTrucks, int visibleBuses,
                   boolean ruleBasedEnabled) {
             this.exportLocalTime = exportLocalTime;
@@ -87,6 +103,7 @@ public class LiveConnectionSumo implements Runnable {
             this.meanSpeedMps = meanSpeedMps;
             this.throughputVph = throughputVph;
             this.speedFactorUi = speedFactorUi;
+            this.achievedRatio = achievedRatio;
             this.visibleVehicles = visibleVehicles;
             this.visibleCars = visibleCars;
             this.visibleTrucks = visibleTrucks;
@@ -95,15 +112,15 @@ public class LiveConnectionSumo implements Runnable {
         }
     }
 
-    // Stores all MetricRow entries; synchronizedList is used because run() writes while export reads,
+    // Stores all MetricRow entries; synchronizedList is used because the publish stage writes while export reads,
     // preventing concurrency issues.
     private final List<MetricRow> metricsLog = Collections.synchronizedList(new ArrayList<>());
 
-    private final Deque<Double> arrivalTimes = new ArrayDeque<>();
-    private final Set<String> prevVehicleIds = new HashSet<>();
+    // Per-second arrival counters for the throughput window (constant memory, O(1) update/query).
+    private final ThroughputWindow arrivals = new ThroughputWindow(Main.THROUGHPUT_WINDOW_SEC);
 
     private double lastLoggedSimTime = -1.0;
-    private static final double LOG_EVERY_SIM_SECONDS = 0.5;
+    static final double LOG_EVERY_SIM_SECONDS = 0.5;
 
     // Filter state source (GUI provides values)
     private final GUI.VehicleFilter filter;
@@ -121,6 +138,8 @@ public class LiveConnectionSumo implements Runnable {
             JLabel throughputLabel,
             JLabel meanSpeedLabel,
             JLabel tlStateLabel,
+            JLabel paceLabel,
+            JLabel waitingLabel,
             JComboBox<VehicleInjection.RouteDef> routeCombo,
             JComboBox<TrafficControl.TlsItem> tlCombo,
             TrafficControl trafficControl,
@@ -141,6 +160,8 @@ public class LiveConnectionSumo implements Runnable {
         this.meanSpeedLabel = meanSpeedLabel;
 
         this.tlStateLabel = tlStateLabel;
+        this.paceLabel = paceLabel;
+        this.waitingLabel = waitingLabel;
 
         this.routeCombo = routeCombo;
         this.tlCombo = tlCombo;
@@ -157,9 +178,25 @@ public class LiveConnectionSumo implements Runnable {
         Logging.LOG.info("Simulation START pressed.");
     }
 
-    public void setSpeedDelay(int ms, int speedFactorUi) {
-        sleepMs = Math.max(1, ms);
-        latestSpeedFactorUi = speedFactorUi;
+    // Requested sim-seconds per wall-second; PacingScheduler.UNLIMITED => as fast as SUMO allows.
+    public void setSimRatio(double ratio) {
+        pacer.setTargetRatio(ratio);
+    }
+
+    SimCommandQueue commands() { return commands; }
+
+    InjectionEngine injection() { return injection; }
+
+    // Simulation thread (submit via commands()): load/prepare the OD demand from Main.DEMAND_* or switch it off.
+    void setDemandEnabled(boolean on) throws IOException {
+        if (!on) {
+            demand = null;
+            Logging.LOG.info("OD demand off.");
+            return;
+        }
+        DemandGenerator d = DemandGenerator.load(new File(Main.DEMAND_OD_CSV), new File(Main.DEMAND_PROFILE_CSV), -1);
+        d.prepare();
+        demand = d;
     }
 
     // Turn off running so the while loop in run() exits and the simulation thread shuts down cleanly.
@@ -168,315 +205,314 @@ public class LiveConnectionSumo implements Runnable {
         Logging.LOG.info("Simulation STOP pressed.");
     }
 
-    // Routing file override for manual injection only
-    private String buildRoutesFileWithVTypesOnly() throws IOException {
-        File tmp = File.createTempFile("manual_only_", ".rou.xml");
-        tmp.deleteOnExit();
-        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"))) {
-            pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            pw.println("<routes xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
-            pw.println("        xsi:noNamespaceSchemaLocation=\"http://sumo.dlr.de/xsd/routes_file.xsd\">");
-            pw.println("  <!-- Manual injection only (no trips/vehicles here) -->");
-            pw.println("  <vType id=\"car\"   vClass=\"passenger\" length=\"5.0\"  accel=\"2.6\" decel=\"4.5\" maxSpeed=\"33\"/>");
-            pw.println("  <vType id=\"truck\" vClass=\"truck\"     length=\"8.0\"  accel=\"1.3\" decel=\"4.0\" maxSpeed=\"25\"/>");
-            pw.println("  <vType id=\"bus\"   vClass=\"bus\"       length=\"12.0\" accel=\"1.1\" decel=\"4.0\" maxSpeed=\"22\"/>");
-            pw.println("</routes>");
-        }
-        Logging.LOG.info("Temp manual routes file: " + tmp.getAbsolutePath());
-        return tmp.getAbsolutePath();
-    }
+    // Render frame for the map; filled inside the aggregator's single pass and published with one atomic swap.
+    static final class SnapshotAccumulator implements StepAggregator.Accumulator {
+        private final VehicleSnapshotBuffer buffer;
+        private VehicleSnapshot frame;
 
-    // Version compatibility: support different libtraci method names across versions.
-    private double safeVehicleWaitingTimeSec(String vehId) {
-        try {
-            Method m = Vehicle.class.getMethod("getWaitingTime", String.class);
-            Object o = m.invoke(null, vehId);
-            if (o instanceof Number) return ((Number) o).doubleValue();
-        } catch (Exception ignore) {}
+        SnapshotAccumulator(VehicleSnapshotBuffer buffer) { this.buffer = buffer; }
 
-        try {
-            Method m = Vehicle.class.getMethod("getAccumulatedWaitingTime", String.class);
-            Object o = m.invoke(null, vehId);
-            if (o instanceof Number) return ((Number) o).doubleValue();
-        } catch (Exception ignore) {}
+        @Override public void begin() { frame = buffer.beginWrite(); }
 
-        return Double.NaN;
-    }
-
-    private double computeAvgWaitSeconds(StringVector vIds) {
-        if (vIds == null || vIds.size() == 0) return 0.0;
-
-        double sum = 0.0;
-        int cnt = 0;
-        for (int i = 0; i < vIds.size(); i++) {
-            String id = vIds.get(i);
-            double w = safeVehicleWaitingTimeSec(id);
-            if (!Double.isNaN(w) && !Double.isInfinite(w)) {
-                sum += w;
-                cnt++;
-            }
+        @Override public void accept(RawVehicleFrame f, int i, boolean visible) {
+            frame.add(f.handle[i], f.x[i], f.y[i], f.speed[i], f.type[i]);
         }
-        if (cnt == 0) return -1.0;
-        return sum / cnt;
-    }
 
-    private double computeMeanSpeed(StringVector vIds) {
-        if (vIds == null || vIds.size() == 0) return 0.0;
-        double sum = 0.0;
-        int cnt = 0;
-        for (int i = 0; i < vIds.size(); i++) {
-            try {
-                sum += Vehicle.getSpeed(vIds.get(i));
-                cnt++;
-            } catch (Exception ignore) {}
+        @Override public void end() {
+            buffer.publish();
+            frame = null;
         }
-        return cnt == 0 ? 0.0 : (sum / cnt);
     }
 
-    private int countStopped(StringVector vIds) {
-        int stopped = 0;
-        for (int i = 0; i < vIds.size(); i++) {
-            try {
-                if (Vehicle.getSpeed(vIds.get(i)) < 0.1) stopped++;
-            } catch (Exception ignore) {}
+    // ===================== Pipeline =====================
+    // Stage 1 (SUMO-Simulation-Thread): step, TLS control, pacing, raw TraCI reads -> RawFrameRing
+    // Stage 2 (SUMO-Compute-Thread)   : throughput, single-pass metrics, render snapshot -> publish queue
+    // Stage 3 (SUMO-Publish-Thread)   : metricsLog, trend chart, map repaint, coalesced label update on the EDT
+    // Only stage 1 talks to libtraci; Java-side work of one frame overlaps with stepping the next one.
+    private static final int FRAME_RING_SIZE = 8;
+    private static final int PUBLISH_QUEUE_SIZE = 64;
+
+    // Values for the metric labels (immutable; one per computed frame).
+    private static final class UiUpdate {
+        final int active, stopped, visible, visCar, visTruck, visBus;
+        final double congestion, avgWaitSec, throughputVph, meanSpeed;
+        final String tlsStatus, pace;
+        final int waitingToEnter;
+        final MetricRow row; // null if no metric sample was due for this frame
+
+        UiUpdate(StepAggregator a, double throughputVph, String tlsStatus, String pace, int waitingToEnter,
+                 MetricRow row) {
+            this.active = a.active;
+            this.stopped = a.stopped;
+            this.visible = a.visible;
+            this.visCar = a.visibleCars;
+            this.visTruck = a.visibleTrucks;
+            this.visBus = a.visibleBuses;
+            this.congestion = a.congestion;
+            this.avgWaitSec = a.avgWaitSec;
+            this.meanSpeed = a.meanSpeedMps;
+            this.throughputVph = throughputVph;
+            this.tlsStatus = tlsStatus;
+            this.pace = pace;
+            this.waitingToEnter = waitingToEnter;
+            this.row = row;
         }
-        return stopped;
     }
 
-    private int recordArrivalsAndReturnCount(double simTime, Set<String> currentIdsSet) {
-        try {
-            Method m = Simulation.class.getMethod("getArrivedIDList");
-            Object o = m.invoke(null);
-            if (o instanceof StringVector) {
-                StringVector arrived = (StringVector) o;
-                int n = arrived.size();
-                for (int i = 0; i < n; i++) arrivalTimes.addLast(simTime);
-                return n;
-            }
-        } catch (Exception ignore) {}
+    // Marks the end of the publish queue (identity compare).
+    private static final UiUpdate END_OF_STREAM =
+            new UiUpdate(new StepAggregator(null), 0.0, null, null, 0, null);
 
-        int arrived = 0;
-        for (String oldId : prevVehicleIds) {
-            if (!currentIdsSet.contains(oldId)) {
-                arrived++;
-                arrivalTimes.addLast(simTime);
-            }
-        }
-        return arrived;
-    }
+    private final BlockingQueue<UiUpdate> publishQueue = new ArrayBlockingQueue<>(PUBLISH_QUEUE_SIZE);
 
-    private void trimThroughputWindow(double simTime) {
-        while (!arrivalTimes.isEmpty()) {
-            double t = arrivalTimes.peekFirst();
-            if ((simTime - t) > Main.THROUGHPUT_WINDOW_SEC) arrivalTimes.removeFirst();
-            else break;
-        }
-    }
+    // Newest label values not yet shown; at most one EDT task is pending at a time.
+    private final AtomicReference<UiUpdate> pendingUi = new AtomicReference<>();
 
-    private double computeThroughputVph() {
-        double windowHours = Main.THROUGHPUT_WINDOW_SEC / 3600.0;
-        if (windowHours <= 1e-9) return 0.0;
-        return arrivalTimes.size() / windowHours;
-    }
-
-    // ===================== Simulation main loop =====================
+    // ===================== Stage 1: simulation main loop =====================
     @Override public void run() {
+        RawFrameRing ring = null;
+        Thread computeThread = null;
+        Thread publishThread = null;
         try {
-            // Load native C++ libraries for SUMO.
-            Simulation.preloadLibraries();
-
             // Generate a temporary route file containing only vTypes, and store its path in manualRou.
-            String manualRou = buildRoutesFileWithVTypesOnly();
+            String manualRou = SumoLauncher.writeVTypesOnlyRoutesFile();
 
-            // Build the command line arguments to start SUMO in GUI mode.
-            StringVector cmd = new StringVector();
-            cmd.add("sumo-gui");
+            // Start SUMO in GUI mode with the chosen .sumocfg (TraCI connection happens here).
+            SumoLauncher.start(SumoLauncher.guiCommand(Main.SUMOCFG_PATH, manualRou));
 
-            // Add -c and the config file path to start SUMO with the chosen .sumocfg.
-            cmd.add("-c"); cmd.add(Main.SUMOCFG_PATH);
-            cmd.add("--route-files"); cmd.add(manualRou);
-            cmd.add("--start");
-            cmd.add("--quit-on-end");
+            // Rebuild UI dropdown options (route scenarios appear as their variants get installed).
+            trafficControl.rebuildTrafficLightDropdown();
+            VehicleInjection.rebuildAllowedRoutesAndDropdown(routeCombo, commands);
 
-            Logging.LOG.info("Starting SUMO: " + cmd);
+            // Subscription-based collector (one TraCI read per step instead of several per vehicle).
+            VehicleCollector collector = new VehicleCollector(Main.USE_VEHICLE_SUBSCRIPTIONS);
 
-            // TraCI connection happens here (libtraci start is a static call).
-            Simulation.start(cmd);
+            // Single pass over the collected vehicles: metrics + filter counts + render snapshot (stage 2).
+            VehicleSnapshotBuffer snapshots = new VehicleSnapshotBuffer(256);
+            mapPanel.setVehicleSnapshots(snapshots);
 
-            Logging.LOG.info("SUMO started.");
+            StepAggregator aggregator = new StepAggregator(filter);
+            aggregator.addAccumulator(new SnapshotAccumulator(snapshots));
 
-            // Rebuild UI dropdown options.
-            trafficControl.rebuildTrafficLightDropdown();
-            VehicleInjection.rebuildAllowedRoutesAndDropdown(routeCombo);
+            final RawFrameRing frames = new RawFrameRing(FRAME_RING_SIZE, 256);
+            ring = frames;
+            computeThread = new Thread(() -> computeLoop(frames, aggregator), "SUMO-Compute-Thread");
+            publishThread = new Thread(this::publishLoop, "SUMO-Publish-Thread");
+            computeThread.start();
+            publishThread.start();
 
-            // As long as running is true, keep stepping the simulation, collecting data, and updating the UI.
+            // Stepping / render collection / metric sampling run on separate cadences.
+            SimCadence cadence = SimCadence.forDisplay(LOG_EVERY_SIM_SECONDS);
+            double deltaT = Simulation.getDeltaT();
+            Logging.LOG.info("Loop cadence: " + cadence + ", SUMO step=" + deltaT + " s");
+
+            long lastRenderNanos = 0;
+            double lastCollectSimTime = Simulation.getCurrentTime();
+            int arrivedSinceCollect = 0; // counted on every SUMO step, also those between two collections
+
+            // As long as running is true, keep stepping the simulation and feeding raw frames to stage 2.
             while (running) {
+                // UI commands (injection, TLS force/reset) run here, never while SUMO is stepping.
+                commands.drain();
+
                 if (!started) {
                     // Idle wait to reduce CPU usage when paused.
+                    pacer.reset();
                     Thread.sleep(50);
                     continue;
                 }
 
-                // Advance simulation by one step.
-                Simulation.step();
-                double simTime = Simulation.getCurrentTime();
+                // Advance the simulation by one display frame worth of sim time (one or several SUMO steps).
+                double stepFrom = Simulation.getCurrentTime();
+                double stepTarget = cadence.nextStepTarget(stepFrom, deltaT, pacer.targetRatio());
+
+                // OD arrivals of this window are scheduled first, then everything due goes to SUMO as one batch.
+                if (demand != null) demand.generate(stepFrom, stepTarget, injection);
+                injection.releaseDue(stepFrom, stepTarget);
 
-                // Apply logic: every step, let trafficControl apply per-step control logic
-                // (e.g., change lights, keep manual overrides, etc.).
-                trafficControl.applyPerStep(simTime);
+                // The chunk runs step by step: trafficControl applies its control logic after every SUMO step
+                // (rule timings stay exact at any ratio) and arrivals are counted per step.
+                arrivedSinceCollect += TraciBackend.INSTANCE.stepCountingArrivals(stepTarget, trafficControl::applyPerStep);
+                double simTime = Simulation.getCurrentTime();
 
                 // Auto reroute disabled
                 if (AUTO_REROUTE_ENABLED) {
                 }
 
-                // Throttle simulation speed to be viewable by human eye.
-                Thread.sleep(sleepMs);
-
-                // ---- vehicle metrics ----
-                // DATA COLLECTION PHASE
-                StringVector vIds = Vehicle.getIDList();
-                int active = vIds.size();
-
-                Set<String> currentIdSet = new HashSet<>(Math.max(16, active * 2));
-                for (int i = 0; i < vIds.size(); i++) currentIdSet.add(vIds.get(i));
-
-                // Record “newly appeared/arrived” events as base data for throughput statistics.
-                recordArrivalsAndReturnCount(simTime, currentIdSet);
-                // Trim arrival log based on the configured throughput window (seconds).
-                trimThroughputWindow(simTime);
-                // Compute throughput in vehicles per hour.
-                double throughputVph = computeThroughputVph();
-
-                prevVehicleIds.clear();
-                prevVehicleIds.addAll(currentIdSet);
-
-                int stopped = countStopped(vIds);
-
-                // Congestion index = proportion of stopped vehicles; avoid division by zero if no vehicles.
-                double congestion = active > 0 ? (double) stopped / active : 0.0;
-
-                // Average waiting time (seconds) for display and trend chart.
-                double avgWaitSec = computeAvgWaitSeconds(vIds);
-                double meanSpeed = computeMeanSpeed(vIds);
-
-                // Create position cache: vehicleId -> (x,y), used by mapPanel for drawing vehicles.
-                Map<String, java.awt.geom.Point2D.Double> positions = new HashMap<>();
-                Map<String, String> types = new HashMap<>();
-                Map<String, Double> speeds = new HashMap<>();
-
-                int visibleCount = 0, visCar = 0, visTruck = 0, visBus = 0;
+                // Pace to the requested real-time factor (deadline based: TraCI/metrics time is absorbed).
+                pacer.pace(simTime);
+
+                // Collect only when a frame is due (display refresh) or a metric sample is due (sim time).
+                long now = System.nanoTime();
+                boolean renderDue = (now - lastRenderNanos) >= cadence.renderIntervalNanos();
+                boolean metricsDue = cadence.metricsDue(simTime, lastLoggedSimTime);
+                if (!renderDue && !metricsDue) continue;
+                lastRenderNanos = now;
+                if (metricsDue) lastLoggedSimTime = simTime;
+
+                // DATA COLLECTION PHASE: raw TraCI reads only, everything derived happens in stage 2.
+                collector.collect(simTime - lastCollectSimTime > deltaT * 1.5);
+                lastCollectSimTime = simTime;
+
+                // Waits if stage 2 is a full ring behind; null => compute stage is gone.
+                RawVehicleFrame f = frames.claim();
+                if (f == null) break;
+
+                f.simTime = simTime;
+                f.metricsDue = metricsDue;
+                f.requestedRatio = pacer.targetRatio();
+                f.achievedRatio = pacer.achievedRatio();
+                f.lagging = pacer.isLagging();
+                f.ruleBasedTls = trafficControl.isRuleBasedTlsEnabled();
+                f.tlsStatus = trafficControl.buildTlsStatusString();
+                f.waitingToEnter = injection.waitingToEnter();
+                collector.copyTo(f);
+                f.arrived = arrivedSinceCollect;
+                arrivedSinceCollect = 0;
+                frames.publish();
+            }
 
-                // Iterate over vehicles: read position/type/speed and store them.
-                for (int i = 0; i < vIds.size(); i++) {
-                    String id = vIds.get(i);
+            // Let stages 2 and 3 drain, then close SUMO.
+            commands.close();
+            RawVehicleFrame last = frames.claim();
+            if (last != null) {
+                last.endOfStream = true;
+                frames.publish();
+            }
+            frames.close();
+            computeThread.join(2000);
+            publishThread.join(2000);
 
-                    TraCIPosition pos = Vehicle.getPosition(id);
+            // Clean shutdown ensures SUMO process doesn't hang in the background.
+            try { Simulation.close(); } catch (Exception ignored) {}
+            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
 
-                    // Store coordinates in positions; the UI renderer only needs positions for drawing.
-                    positions.put(id, new java.awt.geom.Point2D.Double(pos.getX(), pos.getY()));
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Simulation thread crashed", ex);
+            commands.close();
+            if (ring != null) ring.close();
+            // Even on crash, invoke the stop callback so the UI does not stay stuck in “running” state.
+            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
+        }
+    }
 
-                    String type;
-                    if (id.startsWith("car_")) type = Main.TYPE_CAR;
-                    else if (id.startsWith("truck_")) type = Main.TYPE_TRUCK;
-                    else if (id.startsWith("bus_")) type = Main.TYPE_BUS;
-                    else type = Main.TYPE_CAR;
+    // ===================== Stage 2: compute =====================
+    private void computeLoop(RawFrameRing frames, StepAggregator aggregator) {
+        try {
+            while (true) {
+                RawVehicleFrame f = frames.take();
+                if (f == null) break;
+                if (f.endOfStream) {
+                    frames.release();
+                    break;
+                }
 
-                    types.put(id, type);
+                // Arrivals are counted per SUMO step by stage 1 (none lost between collections).
+                arrivals.record(f.simTime, f.arrived);
+                // Throughput in vehicles per hour over the configured window (seconds).
+                double throughputVph = arrivals.ratePerHour(Main.THROUGHPUT_WINDOW_SEC);
+
+                // One pass: stopped count, mean speed, mean wait, filter/visible counts and render snapshot.
+                aggregator.aggregate(f);
+
+                // One metrics row (raw data for CSV/PDF export) per metric sample.
+                MetricRow row = null;
+                if (f.metricsDue) {
+                    row = new MetricRow(
+                            Logging.nowTag(), f.simTime, aggregator.active, aggregator.stopped, aggregator.congestion,
+                            aggregator.avgWaitSec, aggregator.meanSpeedMps, throughputVph,
+                            f.requestedRatio, f.achievedRatio,
+                            aggregator.visible, aggregator.visibleCars, aggregator.visibleTrucks, aggregator.visibleBuses,
+                            f.ruleBasedTls
+                    );
+                }
 
-                    double sp = 0.0; // default speed is 0
-                    try { sp = Vehicle.getSpeed(id); } catch (Exception ignore) {}
-                    speeds.put(id, sp);
+                String pace = String.format(Locale.US, "Sim Pace: %s requested, %.1fx achieved%s",
+                        PacingScheduler.format(f.requestedRatio), f.achievedRatio,
+                        f.lagging ? " (cannot keep up)" : "");
+                UiUpdate u = new UiUpdate(aggregator, throughputVph, f.tlsStatus, pace, f.waitingToEnter, row);
 
-                    // Filter check: should this vehicle be “visible/countable” under current filter settings?
-                    if (filter.allows(type, sp)) {
-                        visibleCount++;
-                        if (Main.TYPE_CAR.equals(type)) visCar++;
-                        else if (Main.TYPE_TRUCK.equals(type)) visTruck++;
-                        else if (Main.TYPE_BUS.equals(type)) visBus++;
-                    }
-                }
+                // Frame data is fully consumed => hand the slot back to stage 1 before publishing.
+                frames.release();
+                publishQueue.put(u);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Compute stage crashed", ex);
+        } finally {
+            // Unblocks stage 1 if this stage died early; always ends stage 3.
+            frames.close();
+            try { publishQueue.put(END_OF_STREAM); } catch (InterruptedException ignored) {}
+        }
+    }
 
-                if (lastLoggedSimTime < 0 || (simTime - lastLoggedSimTime) >= LOG_EVERY_SIM_SECONDS) {
-                    lastLoggedSimTime = simTime;
+    // ===================== Stage 3: publish =====================
+    private void publishLoop() {
+        try {
+            while (true) {
+                UiUpdate u = publishQueue.take();
+                if (u == END_OF_STREAM) break;
 
-                    // Add one metrics row (raw data for CSV/PDF export).
-                    metricsLog.add(new MetricRow(
-                            Logging.nowTag(), simTime, active, stopped, congestion,
-                            avgWaitSec, meanSpeed, throughputVph, latestSpeedFactorUi,
-                            visibleCount, visCar, visTruck, visBus,
-                            trafficControl.isRuleBasedTlsEnabled()
-                    ));
+                if (u.row != null) {
+                    metricsLog.add(u.row);
 
                     // Add current data to the trend chart data source.
                     trendChart.addSample(
-                            avgWaitSec < 0 ? 0.0 : avgWaitSec,
-                            throughputVph,
-                            congestion
+                            u.avgWaitSec < 0 ? 0.0 : u.avgWaitSec,
+                            u.throughputVph,
+                            u.congestion
                     );
                 }
 
                 // VISUALIZATION UPDATE
-                // Capture "final" variables to pass a snapshot of data to the UI.
-                final Map<String, java.awt.geom.Point2D.Double> positionsF = positions;
-                final Map<String, String> typesF = types;
-                final Map<String, Double> speedsF = speeds;
-
-                final int activeF = active;
-                final int stoppedF = stopped;
-                final double congestionF = congestion;
-                final double avgWaitSecF = avgWaitSec;
-                final double throughputVphF = throughputVph;
-                final double meanSpeedF = meanSpeed;
-
-                final int visibleF = visibleCount;
-                final int visCarF = visCar, visTruckF = visTruck, visBusF = visBus;
-
-                final String tlsStateF = trafficControl.buildTlsStatusString();
-
-                // Run UI updates on Swing's Event Dispatch Thread.
-                SwingUtilities.invokeLater(() -> {
-                    // Vehicle snapshot: this is the data source used for map rendering.
-                    mapPanel.updateVehicles(positionsF, typesF, speedsF);
-
-                    // Update text labels...
-                    activeVehiclesLabel.setText("Active Vehicles (all): " + activeF);
-                    visibleVehiclesLabel.setText("Visible Vehicles (filtered): " + visibleF);
-                    byTypeLabel.setText("By Type: car=" + visCarF + " truck=" + visTruckF + " bus=" + visBusF);
-
-                    if (avgWaitSecF >= 0) {
-                        // If waiting time is valid, display it normally.
-                        avgWaitLabel.setText(String.format(Locale.US,
-                                "Avg Wait Time: %.1f s (%.2f min)", avgWaitSecF, avgWaitSecF / 60.0));
-                    } else {
-                        // If waiting-time API is unavailable, display an alternative metric (stopped ratio).
-                        double ratio = activeF > 0 ? (stoppedF / (double) activeF) : 0.0;
-                        avgWaitLabel.setText(String.format(Locale.US,
-                                "Avg Wait Time: N/A (API) | stopped ratio=%.2f", ratio));
-                    }
-
-                    // Update congestion label
-                    congestionLabel.setText(String.format(Locale.US,
-                            "Congestion Index: %.2f (stopped=%d)", congestionF, stoppedF));
-
-                    throughputLabel.setText(String.format(Locale.US,
-                            "Throughput: %.1f v/h (last %.0f s)", throughputVphF, Main.THROUGHPUT_WINDOW_SEC));
-
-                    meanSpeedLabel.setText(String.format(Locale.US,
-                            "Mean Speed: %.2f m/s", meanSpeedF));
-
-                    tlStateLabel.setText(tlsStateF);
-                });
+                // The vehicle frame was already published by stage 2; repaint() is thread-safe.
+                mapPanel.repaint();
+
+                // Coalesce label updates: if the EDT has not shown the previous values yet, just replace them.
+                if (pendingUi.getAndSet(u) == null) SwingUtilities.invokeLater(this::applyUiUpdate);
             }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Publish stage crashed", ex);
+        }
+    }
 
-            // Clean shutdown ensures SUMO process doesn't hang in the background.
-            try { Simulation.close(); } catch (Exception ignored) {}
-            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
+    // Runs on Swing's Event Dispatch Thread.
+    private void applyUiUpdate() {
+        UiUpdate u = pendingUi.getAndSet(null);
+        if (u == null) return;
 
-        } catch (Exception ex) {
-            Logging.LOG.log(java.util.logging.Level.SEVERE, "Simulation thread crashed", ex);
-            // Even on crash, invoke the stop callback so the UI does not stay stuck in “running” state.
-            if (onStopped != null) SwingUtilities.invokeLater(onStopped);
+        // Update text labels...
+        activeVehiclesLabel.setText("Active Vehicles (all): " + u.active);
+        visibleVehiclesLabel.setText("Visible Vehicles (filtered): " + u.visible);
+        byTypeLabel.setText("By Type: car=" + u.visCar + " truck=" + u.visTruck + " bus=" + u.visBus);
+
+        if (u.avgWaitSec >= 0) {
+            // If waiting time is valid, display it normally.
+            avgWaitLabel.setText(String.format(Locale.US,
+                    "Avg Wait Time: %.1f s (%.2f min)", u.avgWaitSec, u.avgWaitSec / 60.0));
+        } else {
+            // If waiting-time API is unavailable, display an alternative metric (stopped ratio).
+            double ratio = u.active > 0 ? (u.stopped / (double) u.active) : 0.0;
+            avgWaitLabel.setText(String.format(Locale.US,
+                    "Avg Wait Time: N/A (API) | stopped ratio=%.2f", ratio));
         }
+
+        // Update congestion label
+        congestionLabel.setText(String.format(Locale.US,
+                "Congestion Index: %.2f (stopped=%d)", u.congestion, u.stopped));
+
+        throughputLabel.setText(String.format(Locale.US,
+                "Throughput: %.1f v/h (last %.0f s)", u.throughputVph, Main.THROUGHPUT_WINDOW_SEC));
+
+        meanSpeedLabel.setText(String.format(Locale.US,
+                "Mean Speed: %.2f m/s", u.meanSpeed));
+
+        tlStateLabel.setText(u.tlsStatus);
+        paceLabel.setText(u.pace);
+        waitingLabel.setText("Waiting to Enter: " + u.waitingToEnter);
     }
 
     // csvEscape ensures CSV compliance by quoting fields containing commas, quotes, or newlines,
@@ -512,9 +548,26 @@ public class LiveConnectionSumo implements Runnable {
         // metricsLog is continuously appended in the run() thread; export reads it here.
         synchronized (metricsLog) { snap = new ArrayList<>(metricsLog); }
 
+        try {
+            writeMetricsCsv(file, snap, selectedRouteName, filter.minSpeedMps);
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.SEVERE, "Export CSV failed", ex);
+            JOptionPane.showMessageDialog(parent, "CSV export failed:\n" + ex.getMessage(),
+                    "Export Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        JOptionPane.showMessageDialog(parent,
+                "Exported " + snap.size() + " rows to:\n" + file.getAbsolutePath(),
+                "Export Data", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // Same CSV layout for the GUI export and the headless batch run (no Swing in here).
+    static void writeMetricsCsv(File file, List<MetricRow> rows, String selectedRouteName,
+                                double minSpeedMps) throws IOException {
         try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
-            pw.println("export_local_time,sim_time,active_vehicles,stopped_vehicles,congestion_index,avg_wait_seconds,mean_speed_mps,throughput_vph,speed_factor_ui,selected_route,visible_vehicles,visible_cars,visible_trucks,visible_buses,min_speed_filter_mps,rule_based_enabled");
-            for (MetricRow r : snap) {
+            pw.println("export_local_time,sim_time,active_vehicles,stopped_vehicles,congestion_index,avg_wait_seconds,mean_speed_mps,throughput_vph,speed_factor_ui,selected_route,visible_vehicles,visible_cars,visible_trucks,visible_buses,min_speed_filter_mps,rule_based_enabled,achieved_ratio");
+            for (MetricRow r : rows) {
                 // Write each MetricRow line-by-line
                 pw.print(csvEscape(r.exportLocalTime)); pw.print(",");
                 pw.print(String.format(Locale.US, "%.2f", r.simTime)); pw.print(",");
@@ -524,26 +577,19 @@ public class LiveConnectionSumo implements Runnable {
                 pw.print(String.format(Locale.US, "%.3f", r.avgWaitSeconds)); pw.print(",");
                 pw.print(String.format(Locale.US, "%.3f", r.meanSpeedMps)); pw.print(",");
                 pw.print(String.format(Locale.US, "%.2f", r.throughputVph)); pw.print(",");
-                pw.print(r.speedFactorUi); pw.print(",");
+                // 0 => unlimited (as fast as possible)
+                pw.print(String.format(Locale.US, "%.2f", Double.isInfinite(r.speedFactorUi) ? 0.0 : r.speedFactorUi)); pw.print(",");
                 pw.print(csvEscape(selectedRouteName)); pw.print(",");
                 pw.print(r.visibleVehicles); pw.print(",");
                 pw.print(r.visibleCars); pw.print(",");
                 pw.print(r.visibleTrucks); pw.print(",");
                 pw.print(r.visibleBuses); pw.print(",");
                 // Use Locale.US to prevent decimal comma locales from breaking CSV columns.
-                pw.print(String.format(Locale.US, "%.2f", filter.minSpeedMps)); pw.print(",");
-                pw.println(r.ruleBasedEnabled ? "1" : "0");
+                pw.print(String.format(Locale.US, "%.2f", minSpeedMps)); pw.print(",");
+                pw.print(r.ruleBasedEnabled ? "1" : "0"); pw.print(",");
+                pw.println(String.format(Locale.US, "%.2f", r.achievedRatio));
             }
-        } catch (Exception ex) {
-            Logging.LOG.log(java.util.logging.Level.SEVERE, "Export CSV failed", ex);
-            JOptionPane.showMessageDialog(parent, "CSV export failed:\n" + ex.getMessage(),
-                    "Export Error", JOptionPane.ERROR_MESSAGE);
-            return;
         }
-
-        JOptionPane.showMessageDialog(parent,
-                "Exported " + snap.size() + " rows to:\n" + file.getAbsolutePath(),
-                "Export Data", JOptionPane.INFORMATION_MESSAGE);
     }
 
     // ===================== Export PDF (Summary) =====================
@@ -587,7 +633,8 @@ public class LiveConnectionSumo implements Runnable {
             lines.add("Avg wait(s): " + String.format(Locale.US, "%.3f", last.avgWaitSeconds));
             lines.add("Mean speed(m/s): " + String.format(Locale.US, "%.3f", last.meanSpeedMps));
             lines.add("Throughput(vph): " + String.format(Locale.US, "%.2f", last.throughputVph));
-            lines.add("Speed factor(UI): " + last.speedFactorUi);
+            lines.add("Sim pace: " + PacingScheduler.format(last.speedFactorUi) + " requested, "
+                    + String.format(Locale.US, "%.1fx", last.achievedRatio) + " achieved");
             lines.add("Visible vehicles: " + last.visibleVehicles +
                     " (cars " + last.visibleCars + ", trucks " + last.visibleTrucks + ", buses " + last.visibleBuses + ")");
         }
@@ -17,10 +17,27 @@ public class Main {
     // Feature toggle (currently OFF)
     public static final boolean DROP_SECOND_ROUTE = false;
 
+    // Vehicle data via TraCI subscriptions; -Dtraffic.polling=true (headless: --polling) => old per-vehicle
+    // polling, e.g. to compare step latency without a rebuild
+    public static final boolean USE_VEHICLE_SUBSCRIPTIONS = !Boolean.getBoolean("traffic.polling");
+
     // Throughput window (last 5 minutes)
     public static final double THROUGHPUT_WINDOW_SEC = 300.0;
 
+    // Time-varying OD demand (see DemandGenerator for the CSV formats)
+    public static final String DEMAND_OD_CSV = "sumo/demand_od.csv";
+    public static final String DEMAND_PROFILE_CSV = "sumo/demand_profile.csv";
+
+    // Computed route variants, reused across launches while net/trips/parameters are unchanged
+    public static final String VARIANT_CACHE_PATH = "sumo/route_variants.cache";
+
     public static void main(String[] args) {
+        // Batch mode: no Swing at all (nightly capacity studies on build boxes)
+        if (isHeadless(args)) {
+            System.exit(HeadlessRunner.run(args));
+            return;
+        }
+
         // 1) Basic setup check (config exists/readable)
         if (!projectIsReady()) return;
 
@@ -34,6 +51,13 @@ public class Main {
         GUI.launch();
     }
 
+    private static boolean isHeadless(String[] args) {
+        for (String a : args) {
+            if ("--headless".equals(a)) return true;
+        }
+        return false;
+    }
+
     // ===================== Startup checks =====================
     private static boolean projectIsReady() {
         try {
@@ -51,8 +75,9 @@ public class Main {
 
     private static void initData() {
         // Load routes/trips for injection + prepare map bounds for rendering
-        VehicleInjection.loadTripRoutesFromRou();
-        MapVisualisation.initBoundsFromFiles();
+        VehicleInjection.loadTripRoutesFromRou(SUMOCFG_PATH);
+        NetXmlReader.NetData net = MapVisualisation.initBoundsFromFiles();
+        VehicleInjection.loadRoutingGraph(net);
     }
 
     // Validate SUMO config file presence + readability
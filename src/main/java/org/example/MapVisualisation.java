@@ -3,26 +3,22 @@ package org.example;
 
 // Import files: Swing GUI core package, used to build map panel, event listeners, and graphics drawing.
 import javax.swing.*;
-// Import files: XML parsing core packages, used to parse SUMO .net.xml road network configuration.
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
 // Import files: AWT graphics core package, used for 2D rendering, coordinate transforms, and mouse handling.
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 // Import files: File IO package, used to read .net.xml/.sumocfg config files.
 import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
 // Import files: Java collections, used to store network geometry, TLS positions, and vehicle data
 // (thread-safe collections are important here).
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-
-// Import files: W3C DOM XML parsing package for reading XML nodes and attributes.
-import org.w3c.dom.*;
 
 /**
  * Class: MapVisualisation
@@ -99,10 +95,12 @@ public final class MapVisualisation {
      * - laneIndex: lane index
      * - internal: whether internal edge (junction connector)
      * - laneWidth: lane width (meters)
-     * - xy: lane shape coordinates (x1,y1,x2,y2,...)
+     * - coords/offset/points: lane shape (x1,y1,x2,y2,...) inside a flat float buffer shared by all lanes
+     *   (a heap array after parsing, the memory-mapped NetCache file on later starts)
      *
      * Key flow:
-     * initBoundsFromFiles() -> readConvBoundaryFromNet() -> loadRoadGeometriesFromNet() -> loadTlsPositionsFromNet()
+     * initBoundsFromFiles() -> NetCache.loadOrParse() (mapped cache or one NetXmlReader pass)
+     *   -> TileStore (lanes loaded per viewport tile in drawRoads) / tlsPositions()
      */
     /*
      * RoadGeom: stores road info including road ID, lane index, width, and coordinates.
@@ -112,13 +110,113 @@ public final class MapVisualisation {
         final int laneIndex;
         final boolean internal;
         final float laneWidth;
-        final double[] xy;
-        RoadGeom(String edgeId, int laneIndex, boolean internal, float laneWidth, double[] xy) {
+        final FloatBuffer coords;
+        final int offset;   // index of x1 in coords
+        final int points;   // number of (x, y) pairs
+        final float minX, minY, maxX, maxY; // bounding box of the shape (viewport culling)
+        RoadGeom(String edgeId, int laneIndex, boolean internal, float laneWidth, FloatBuffer coords, int offset, int points) {
             this.edgeId = edgeId;
             this.laneIndex = laneIndex;
             this.internal = internal;
             this.laneWidth = laneWidth;
-            this.xy = xy;
+            this.coords = coords;
+            this.offset = offset;
+            this.points = points;
+
+            float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+            float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+            for (int k = 0; k < points; k++) {
+                float x = coords.get(offset + 2 * k), y = coords.get(offset + 2 * k + 1);
+                x0 = Math.min(x0, x); y0 = Math.min(y0, y);
+                x1 = Math.max(x1, x); y1 = Math.max(y1, y);
+            }
+            this.minX = x0; this.minY = y0; this.maxX = x1; this.maxY = y1;
+        }
+
+        boolean intersects(double x0, double y0, double x1, double y1) {
+            return minX <= x1 && maxX >= x0 && minY <= y1 && maxY >= y0;
+        }
+        private Path2D.Float[] paths; // per LOD tier, world coordinates (see buildPaths())
+        // Absolute gets only: safe for concurrent readers of the shared buffer.
+        double x(int k) { return coords.get(offset + 2 * k); }
+        double y(int k) { return coords.get(offset + 2 * k + 1); }
+
+        /**
+         * Lane shape of a LOD tier in world coordinates; the view transform is applied by the Graphics2D
+         * when drawing. Built on first use (TileStore warms it on the loader thread before the tile becomes
+         * visible).
+         */
+        Path2D.Float path(int tier) {
+            if (paths == null) buildPaths();
+            return paths[tier];
+        }
+
+        /**
+         * Full shape plus a Douglas-Peucker simplified shape per coarser tier (a tier that drops no point
+         * shares the previous tier's path). Returns the heap estimate of the paths, 0 if already built.
+         */
+        int buildPaths() {
+            if (paths != null) return 0;
+            Path2D.Float[] out = new Path2D.Float[LOD_TIERS];
+            boolean[] keep = new boolean[points];
+            int bytes = 0, lastKept = -1;
+            for (int t = 0; t < LOD_TIERS; t++) {
+                int kept = t == 0 || points <= 2 ? points : simplify(LOD_TOLERANCE_M[t], keep);
+                if (kept == lastKept) { // larger tolerance keeps a subset: same count => same shape
+                    out[t] = out[t - 1];
+                    continue;
+                }
+                Path2D.Float p = new Path2D.Float(Path2D.WIND_NON_ZERO, kept);
+                boolean first = true;
+                for (int k = 0; k < points; k++) {
+                    if (kept != points && !keep[k]) continue;
+                    float x = coords.get(offset + 2 * k), y = coords.get(offset + 2 * k + 1);
+                    if (first) p.moveTo(x, y);
+                    else p.lineTo(x, y);
+                    first = false;
+                }
+                out[t] = p;
+                bytes += 48 + kept * 9; // two floats and a segment type byte per point
+                lastKept = kept;
+            }
+            paths = out;
+            return bytes;
+        }
+
+        // Douglas-Peucker: marks in keep the points needed to stay within tol meters of the shape.
+        private int simplify(double tol, boolean[] keep) {
+            Arrays.fill(keep, false);
+            keep[0] = keep[points - 1] = true;
+            int kept = 2;
+            double tol2 = tol * tol;
+            int[] stack = new int[2 * points];
+            int sp = 0;
+            stack[sp++] = 0;
+            stack[sp++] = points - 1;
+            while (sp > 0) {
+                int last = stack[--sp], first = stack[--sp];
+                double ax = x(first), ay = y(first);
+                double dx = x(last) - ax, dy = y(last) - ay, len2 = dx * dx + dy * dy;
+                int worst = -1;
+                double worstD2 = tol2;
+                for (int k = first + 1; k < last; k++) {
+                    double px = x(k) - ax, py = y(k) - ay;
+                    double cross = px * dy - py * dx;
+                    double d2 = len2 == 0 ? px * px + py * py : cross * cross / len2;
+                    if (d2 > worstD2) {
+                        worstD2 = d2;
+                        worst = k;
+                    }
+                }
+                if (worst < 0) continue;
+                keep[worst] = true;
+                kept++;
+                stack[sp++] = first;
+                stack[sp++] = worst;
+                stack[sp++] = worst;
+                stack[sp++] = last;
+            }
+            return kept;
         }
     }
 
@@ -137,13 +235,37 @@ public final class MapVisualisation {
     private static final double ROAD_THICKNESS_MULT = 1.25;
     private static final double ROAD_MIN_PX = 6.0;
     private static final boolean DRAW_LANE_MARKINGS = true;
+    // Culling margins: a lane's outline reaches past its centerline (widest lane assumed ~8 m),
+    // a TLS marker's label sits right of / above its junction point (pixels).
+    private static final double ROAD_CULL_MARGIN_M = 0.5 * 8.0 * ROAD_THICKNESS_MULT;
+    private static final double ROAD_CULL_MARGIN_PX = ROAD_MIN_PX / 2 + 3;
+    private static final double TLS_CULL_MARGIN_PX = 120;
+
+    // Level of detail by on-screen scale (pixels per meter): 0 = full, 1 = medium, 2 = far.
+    // Coarser tiers draw simplified lanes (tolerance ~1 px at the tier's largest scale) without markings,
+    // and plot vehicles as dots in a pixel raster instead of sprites. Far also drops internal connectors
+    // (junctions shrink to a few pixels, closed by the round caps) and draws one lane per edge.
+    private static final int LOD_TIERS = 3;
+    private static final double[] LOD_MIN_SCALE = {1.0, 0.25, 0.0};
+    private static final double[] LOD_TOLERANCE_M = {0.0, 1.0, 4.0};
+    private static final int[] LOD_VEHICLE_DOT_PX = {3, 2, 1};
+    // More vehicles than this on screen => dots even at full detail (keeps 20k+ vehicles interactive)
+    private static final int MAX_VEHICLE_SPRITES = 2000;
+
+    private static int lodTier(double pxPerMeter) {
+        int t = 0;
+        while (t < LOD_TIERS - 1 && pxPerMeter < LOD_MIN_SCALE[t]) t++;
+        return t;
+    }
 
-    // Global cache: road geometries (volatile for cross-thread visibility).
-    private static volatile java.util.List<RoadGeom> ROAD_GEOMS = java.util.Collections.emptyList();
+    // Global cache: road geometry tiles, loaded on demand (volatile for cross-thread visibility).
+    private static volatile TileStore ROAD_TILES = null;
     // Global cache: TLS positions (key=TLS ID, value=world coordinates).
     private static volatile Map<String, Point2D.Double> TLS_POSITIONS = java.util.Collections.emptyMap();
     // Global cache: TLS labels (key=TLS ID, value=simplified label like t1/t2).
     private static volatile Map<String, String> TLS_LABELS = java.util.Collections.emptyMap();
+    // Global cache: uniform grid over TLS_POSITIONS (markers drawn per viewport query).
+    private static volatile PointGrid TLS_GRID = PointGrid.build(java.util.Collections.emptyMap());
 
     // ===================== Public getters =====================
     // Get active bounds (prefer parsed bounds; otherwise fallback).
@@ -152,9 +274,6 @@ public final class MapVisualisation {
         return (b != null && b.sane()) ? b : FALLBACK_BOUNDS;
     }
 
-    // Get road geometry list (visibility guaranteed by volatile).
-    public static List<RoadGeom> getRoadGeoms() { return ROAD_GEOMS; }
-
     // Get TLS positions.
     public static Map<String, Point2D.Double> getTlsPositions() { return TLS_POSITIONS; }
 
@@ -166,8 +285,8 @@ public final class MapVisualisation {
      * Initialize map bounds and geometry data.
      * Flow:
      * 1) Read net.xml path from sumocfg.
-     * 2) Parse net.xml convBoundary to get bounds.
-     * 3) Load road geometries and TLS positions, build simplified TLS labels.
+     * 2) Read net.xml once (streaming): convBoundary, lanes, junctions, connections, tlLogic.
+     * 3) Derive road geometries and TLS positions, build simplified TLS labels.
      *
      * Error handling: catch all exceptions, log them, and keep fallback bounds to avoid crashing.
      */
@@ -175,279 +294,69 @@ public final class MapVisualisation {
      * English: Entry method for map data initialization; parses SUMO configuration files and coordinates
      * the loading of boundary, road, and traffic light data.
      */
-    public static void initBoundsFromFiles() {
+    static NetXmlReader.NetData initBoundsFromFiles() {
         try {
             // Step 1: read net.xml path from sumocfg config file
-            String netPath = readNetFileFromSumocfg(Main.SUMOCFG_PATH);
-            if (netPath == null || netPath.isBlank()) netPath = "final.net.xml";
-            File netFile = resolveRelativeToSumocfg(netPath);
+            File netFile = netFileFromSumocfg();
 
-            // Step 2: parse convBoundary from net.xml to get map bounds
-            Bounds b = readConvBoundaryFromNet(netFile);
+            // Step 2: mapped binary cache if it matches the net.xml, else one streaming pass (then cached)
+            NetXmlReader.NetData net = NetCache.loadOrParse(netFile);
+            if (net == null) throw new IOException("Network unreadable: " + netFile.getPath());
+            Bounds b = net.convBoundary;
             if (b != null && b.sane()) {
                 // Add 3% padding so elements are not drawn right at the border.
                 NET_BOUNDS = addPadding(b, 0.03);
                 Logging.LOG.info("Map bounds loaded: " + netFile.getPath());
 
-                // Step 3: load road geometry, TLS positions, and TLS labels
-                ROAD_GEOMS = loadRoadGeometriesFromNet(netFile);
-                TLS_POSITIONS = loadTlsPositionsFromNet(netFile);
+                // Step 3: road geometry, TLS positions, and TLS labels from the same pass
+                ROAD_TILES = net.tiles;
+                Logging.LOG.info("Road geometry: " + net.tiles.tileCount() + " tiles (loaded on demand)");
+                TLS_POSITIONS = tlsPositions(net);
                 TLS_LABELS = buildTlsLabels(TLS_POSITIONS.keySet());
+                TLS_GRID = PointGrid.build(TLS_POSITIONS);
             } else {
                 Logging.LOG.warning("convBoundary not found; using fallback bounds.");
             }
+            // Returned so routing can reuse the parsed edges/connections instead of reading the file again.
+            return net;
         } catch (Exception e) {
             // Catch all exceptions; log with stack trace; fallback remains active.
             Logging.LOG.log(java.util.logging.Level.WARNING, "Bounds init failed; using fallback.", e);
-        }
-    }
-
-    // Add padding around bounds to avoid drawing right on the edge.
-    private static Bounds addPadding(Bounds b, double frac) {
-        double dx = (b.maxX - b.minX) * frac;
-        double dy = (b.maxY - b.minY) * frac;
-        return new Bounds(b.minX - dx, b.minY - dy, b.maxX + dx, b.maxY + dy);
-    }
-
-    /**
-     * Parse net.xml "location" node and extract convBoundary.
-     * XML security hardening: disable external DTD loading and entity expansion.
-     */
-    /*
-     * Extracts map boundary coordinates from .net.xml and checks validity.
-     */
-    private static Bounds readConvBoundaryFromNet(File netFile) {
-        try {
-            if (netFile == null || !netFile.exists()) return null;
-
-            // XML parser factory configuration (security hardening)
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            dbf.setExpandEntityReferences(false);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(netFile);
-            doc.getDocumentElement().normalize();
-
-            // Read convBoundary attribute from the "location" node
-            NodeList locs = doc.getElementsByTagName("location");
-            if (locs.getLength() == 0) return null;
-
-            Element loc = (Element) locs.item(0);
-            String cb = loc.getAttribute("convBoundary");
-            if (cb == null || cb.isBlank()) return null;
-
-            // Parse coordinate string (minX,minY,maxX,maxY)
-            String[] p = cb.split(",");
-            if (p.length != 4) return null;
-
-            double minX = Double.parseDouble(p[0].trim());
-            double minY = Double.parseDouble(p[1].trim());
-            double maxX = Double.parseDouble(p[2].trim());
-            double maxY = Double.parseDouble(p[3].trim());
-            return new Bounds(minX, minY, maxX, maxY);
-        } catch (Exception ex) {
-            // If XML parsing fails, log and return null
-            Logging.LOG.log(java.util.logging.Level.WARNING, "Failed reading convBoundary from net.xml", ex);
             return null;
         }
     }
 
     /**
-     * Parse .net.xml file to extract lane geometry (shapes).
-     * SUMO provides coordinates, but drawing needs conversion from
-     * World Coordinates (meters) to Screen Coordinates (pixels).
+     * TLS positions: TLS id -> junction (first connection controlled by the TLS, via its from-edge's
+     * to-junction; tlLogic ids without connections map to the junction of the same id) -> coordinates.
      */
-    /*
-     * Extract lane information (ID, width, coordinates) from .net.xml and store it into RoadGeom objects
-     * to avoid repeated parsing.
-     */
-    private static java.util.List<RoadGeom> loadRoadGeometriesFromNet(File netFile) {
-        java.util.List<RoadGeom> out = new java.util.ArrayList<>();
-        try {
-            if (netFile == null || !netFile.exists()) return out;
-
-            // XML parsing security configuration
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            dbf.setExpandEntityReferences(false);
-
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(netFile);
-            doc.getDocumentElement().normalize();
-
-            // Iterate all "edge" nodes
-            NodeList edges = doc.getElementsByTagName("edge");
-            for (int i = 0; i < edges.getLength(); i++) {
-                Node n = edges.item(i);
-                if (!(n instanceof Element)) continue;
-                Element edge = (Element) n;
-
-                String id = edge.getAttribute("id");
-                String fn = edge.getAttribute("function");
-                boolean internal = (id != null && id.startsWith(":")) || "internal".equalsIgnoreCase(fn);
-                if (internal && !DRAW_INTERNAL_EDGES) continue;
-
-                // Iterate all "lane" nodes under the edge
-                NodeList lanes = edge.getElementsByTagName("lane");
-                for (int j = 0; j < lanes.getLength(); j++) {
-                    Node ln = lanes.item(j);
-                    if (!(ln instanceof Element)) continue;
-                    Element lane = (Element) ln;
-
-                    // If DRAW_ALL_LANES is false, only draw lane index 0
-                    if (!DRAW_ALL_LANES) {
-                        String idxStr = lane.getAttribute("index");
-                        if (idxStr != null && !idxStr.isBlank() && !"0".equals(idxStr.trim())) continue;
-                    }
-
-                    // Read lane shape coordinate string
-                    String shape = lane.getAttribute("shape");
-                    if (shape == null || shape.isBlank()) continue;
-
-                    // Read lane width (default 3.2m)
-                    float w = 3.2f;
-                    try {
-                        String wStr = lane.getAttribute("width");
-                        if (wStr != null && !wStr.isBlank()) w = Float.parseFloat(wStr.trim());
-                    } catch (Exception ignore) {
-                        // Ignore parsing errors and keep default width
-                    }
-
-                    // Parse shape to double array
-                    double[] xy = parseShape(shape);
-
-                    // Read lane index (default 0)
-                    int laneIndex = 0;
-                    try {
-                        String idxStr2 = lane.getAttribute("index");
-                        if (idxStr2 != null && !idxStr2.isBlank()) laneIndex = Integer.parseInt(idxStr2.trim());
-                    } catch (Exception ignore) {
-                        // Ignore parsing errors and keep default index
-                    }
-
-                    // Require at least 2 points (4 numbers)
-                    if (xy.length >= 4) out.add(new RoadGeom(id, laneIndex, internal, w, xy));
-                }
-            }
-
-            Logging.LOG.info("Road geometry loaded: " + out.size() + " lane-shapes from " + netFile.getPath());
-        } catch (Exception e) {
-            // Continue without roads if parsing fails.
-            Logging.LOG.log(java.util.logging.Level.WARNING, "Road geometry load failed; continuing without roads.", e);
+    private static Map<String, Point2D.Double> tlsPositions(NetXmlReader.NetData net) {
+        Map<String, Point2D.Double> out = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : net.tlsToJunction.entrySet()) {
+            Point2D.Double p = net.junctionPos.get(e.getValue());
+            if (p == null) p = net.junctionPos.get(e.getKey());
+            if (p != null) out.put(e.getKey(), p);
         }
-
-        // Storing RoadGeom allows efficient repainting in paintComponent without re-parsing.
         return out;
     }
 
-    /**
-     * Load traffic light (TLS) positions from net.xml.
-     * Logic:
-     * 1) Read junction coordinates.
-     * 2) Build edge -> to-junction mapping.
-     * 3) Associate TLS IDs to junctions via connection/tlLogic nodes.
-     * 4) Map TLS ID to junction position.
-     */
-    /*
-     * Obtain traffic light positions and map them to corresponding junction coordinates for map display.
-     */
-    private static Map<String, Point2D.Double> loadTlsPositionsFromNet(File netFile) {
-        try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(false);
-            dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(netFile);
-            doc.getDocumentElement().normalize();
-
-            // Step 1: read all junction coordinates
-            Map<String, Point2D.Double> junctionPos = new HashMap<>();
-            NodeList junctions = doc.getElementsByTagName("junction");
-            for (int i = 0; i < junctions.getLength(); i++) {
-                Node n = junctions.item(i);
-                if (!(n instanceof Element)) continue;
-                Element j = (Element) n;
-                String id = j.getAttribute("id");
-                String xs = j.getAttribute("x");
-                String ys = j.getAttribute("y");
-                if (id == null || id.isBlank() || xs == null || ys == null) continue;
-                try {
-                    double x = Double.parseDouble(xs.trim());
-                    double y = Double.parseDouble(ys.trim());
-                    junctionPos.put(id.trim(), new Point2D.Double(x, y));
-                } catch (Exception ignore) {
-                    // Skip invalid coordinates
-                }
-            }
-
-            // Step 2: build edge -> "to junction" mapping
-            Map<String, String> edgeToNode = new HashMap<>();
-            NodeList edges = doc.getElementsByTagName("edge");
-            for (int i = 0; i < edges.getLength(); i++) {
-                Node n = edges.item(i);
-                if (!(n instanceof Element)) continue;
-                Element e = (Element) n;
-                String id = e.getAttribute("id");
-                if (id == null || id.isBlank()) continue;
-
-                // Skip internal edges
-                if (id.startsWith(":")) continue;
-                String func = e.getAttribute("function");
-                if (func != null && func.equalsIgnoreCase("internal")) continue;
-
-                String to = e.getAttribute("to");
-                if (to != null && !to.isBlank()) edgeToNode.put(id.trim(), to.trim());
-            }
-
-            // Step 3: associate TLS -> junction via connection nodes
-            Map<String, String> tlsToJunction = new LinkedHashMap<>();
-            NodeList conns = doc.getElementsByTagName("connection");
-            for (int i = 0; i < conns.getLength(); i++) {
-                Node n = conns.item(i);
-                if (!(n instanceof Element)) continue;
-                Element c = (Element) n;
-                String tl = c.getAttribute("tl");
-                if (tl == null || tl.isBlank()) continue;
-                tl = tl.trim();
-
-                String fromEdge = c.getAttribute("from");
-                if (fromEdge != null && !fromEdge.isBlank()) {
-                    String jId = edgeToNode.get(fromEdge.trim());
-                    if (jId != null && !jId.isBlank() && !tlsToJunction.containsKey(tl)) {
-                        tlsToJunction.put(tl, jId);
-                    }
-                }
-            }
-
-            // Step 4: also include tlLogic IDs (in case connection mapping is incomplete)
-            NodeList tlLogics = doc.getElementsByTagName("tlLogic");
-            for (int i = 0; i < tlLogics.getLength(); i++) {
-                Node n = tlLogics.item(i);
-                if (!(n instanceof Element)) continue;
-                Element tl = (Element) n;
-                String id = tl.getAttribute("id");
-                if (id != null && !id.isBlank() && !tlsToJunction.containsKey(id.trim())) {
-                    tlsToJunction.put(id.trim(), id.trim());
-                }
-            }
+    // net.xml referenced by Main.SUMOCFG_PATH (fallback: final.net.xml next to it).
+    static File netFileFromSumocfg() {
+        return netFileFromSumocfg(Main.SUMOCFG_PATH);
+    }
 
-            // Step 5: map TLS IDs to coordinates
-            Map<String, Point2D.Double> out = new LinkedHashMap<>();
-            for (Map.Entry<String, String> e : tlsToJunction.entrySet()) {
-                String tlsId = e.getKey();
-                String jId = e.getValue();
-                Point2D.Double p = junctionPos.get(jId);
-                if (p == null) p = junctionPos.get(tlsId);
-                if (p != null) out.put(tlsId, p);
-            }
+    // net.xml referenced by the given sumocfg (headless --cfg).
+    static File netFileFromSumocfg(String sumocfgPath) {
+        String netPath = readNetFileFromSumocfg(sumocfgPath);
+        if (netPath == null || netPath.isBlank()) netPath = "final.net.xml";
+        return resolveRelativeToSumocfg(sumocfgPath, netPath);
+    }
 
-            return out;
-        } catch (Exception ex) {
-            // On parsing errors, log and return empty map.
-            Logging.LOG.log(java.util.logging.Level.WARNING,
-                    "Failed to load TLS positions from net.xml: " + netFile.getPath(), ex);
-            return java.util.Collections.emptyMap();
-        }
+    // Add padding around bounds to avoid drawing right on the edge.
+    private static Bounds addPadding(Bounds b, double frac) {
+        double dx = (b.maxX - b.minX) * frac;
+        double dy = (b.maxY - b.minY) * frac;
+        return new Bounds(b.minX - dx, b.minY - dy, b.maxX + dx, b.maxY + dy);
     }
 
     // Build simplified TLS labels (t1/t2/t3...) to improve UI readability.
@@ -460,58 +369,18 @@ public final class MapVisualisation {
         return out;
     }
 
-    // Parse SUMO shape string (x1,y1 x2,y2 x3,y3...) into a double array.
-    private static double[] parseShape(String shape) {
-        String[] pts = shape.trim().split("\\s+");
-        java.util.List<Double> coords = new java.util.ArrayList<>(pts.length * 2);
-        for (String pt : pts) {
-            String[] xy = pt.split(",");
-            if (xy.length != 2) continue;
-            try {
-                coords.add(Double.parseDouble(xy[0]));
-                coords.add(Double.parseDouble(xy[1]));
-            } catch (Exception ignore) {
-                // Skip invalid coordinate pair
-            }
-        }
-        double[] arr = new double[coords.size()];
-        for (int i = 0; i < coords.size(); i++) arr[i] = coords.get(i);
-        return arr;
-    }
-
     // ===================== SUMOCFG parsing =====================
-    // Read net-file "value" attribute (network file path) from sumocfg.
+    // Read net-file "value" attribute (network file path) from sumocfg (streaming, first match only).
     private static String readNetFileFromSumocfg(String sumocfgPath) {
-        try {
-            File f = new File(sumocfgPath);
-            if (!f.exists()) return null;
-
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            dbf.setExpandEntityReferences(false);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(f);
-            doc.getDocumentElement().normalize();
-
-            NodeList list = doc.getElementsByTagName("net-file");
-            if (list.getLength() > 0) {
-                Element e = (Element) list.item(0);
-                String v = e.getAttribute("value");
-                if (v != null && !v.isBlank()) return v.trim();
-            }
-        } catch (Exception ex) {
-            // If parsing fails, log and return null
-            Logging.LOG.log(java.util.logging.Level.WARNING, "Failed reading net-file from sumocfg", ex);
-        }
-        return null;
+        return NetXmlReader.readConfigValue(new File(sumocfgPath), "net-file");
     }
 
     // Resolve relative paths: prefer the directory containing sumocfg; otherwise current working directory.
-    private static File resolveRelativeToSumocfg(String pathMaybeRelative) {
+    private static File resolveRelativeToSumocfg(String sumocfgPath, String pathMaybeRelative) {
         File f = new File(pathMaybeRelative);
         if (f.exists()) return f;
 
-        File cfg = new File(Main.SUMOCFG_PATH);
+        File cfg = new File(sumocfgPath);
         File baseDir = cfg.getParentFile();
         if (baseDir == null) baseDir = new File(".");
         File alt = new File(baseDir, pathMaybeRelative);
@@ -528,16 +397,14 @@ public final class MapVisualisation {
      * Features:
      * 1) Zoom, pan, rotate interactions (mouse: left drag pan, right drag rotate, wheel zoom,
      *    double-click or press R to reset).
-     * 2) Thread-safe vehicle data updates via ConcurrentHashMap.
+     * 2) Thread-safe vehicle data updates via a triple-buffered columnar snapshot (VehicleSnapshotBuffer).
      * 3) Coordinate conversion (world -> screen), drawing background/roads/TLS/vehicles.
      * 4) Vehicle filtering via Filter interface.
      */
     public static class MapPanel extends JPanel {
 
-        // Vehicle data caches (thread-safe maps prevent ConcurrentModificationException during repaint)
-        private final Map<String, Point2D.Double> vehicles = new ConcurrentHashMap<>(); // vehicleId -> position
-        private final Map<String, String> vehicleTypes = new ConcurrentHashMap<>();     // vehicleId -> type
-        private final Map<String, Double> vehicleSpeeds = new ConcurrentHashMap<>();   // vehicleId -> speed
+        // Vehicle frames published by the simulation thread (null until the simulation starts)
+        private volatile VehicleSnapshotBuffer vehicleSnapshots = null;
         private final Filter filter; // Vehicle filter rules
 
         // View transform state: zoom, rotation (radians), pan (x/y in pixels)
@@ -551,6 +418,47 @@ public final class MapVisualisation {
         private boolean draggingPan = false;
         private boolean draggingRotate = false;
 
+        // Static layer cache (background + roads + TLS markers), EDT only; rebuilt when the view key changes
+        // or a road tile arrives. Vehicle-only frames are then one drawImage plus the vehicles.
+        private BufferedImage staticLayer = null;
+        private double layerZoom, layerRotation, layerPanX, layerPanY, layerScaleX, layerScaleY;
+        private int layerW, layerH;
+        private Bounds layerBounds = null;
+        private volatile boolean staticLayerStale = true; // set by the tile loader thread
+
+        // Road colors: outline, road, internal road, shoulder, lane marking
+        private static final Color ROAD_OUTLINE = new Color(0x0B0F14);
+        private static final Color ROAD_SURFACE = new Color(0x111827);
+        private static final Color ROAD_INTERNAL = new Color(0x1F2937);
+        private static final Color ROAD_SHOULDER = new Color(0x2A2F36);
+        private static final Color ROAD_MARKING = new Color(255, 255, 255, 180);
+        // TLS marker and vehicle colors
+        private static final Color TLS_DOT = new Color(255, 255, 255, 220);
+        private static final Color TLS_BORDER = new Color(17, 24, 39, 220);
+        private static final Color TLS_LABEL_BG = new Color(255, 255, 255, 200);
+        private static final Color VEHICLE_SHADOW = new Color(0, 0, 0, 70);
+        private static final Color CAR_BODY = new Color(0xFB923C);
+        private static final Color TRUCK_BODY = new Color(0x94A3B8);
+        private static final Color TRUCK_CARGO = new Color(0xFDE68A);
+        private static final Color BUS_BODY = new Color(0xFACC15);
+        private static final Color WHEEL = new Color(0x111827);
+        // Dot colors for coarse LOD, indexed by VehicleSnapshot type code
+        private static final int[] VEHICLE_DOT_ARGB = {CAR_BODY.getRGB(), TRUCK_BODY.getRGB(), BUS_BODY.getRGB()};
+        // Vehicles this far outside the panel are skipped (largest sprite half-width)
+        private static final int VEHICLE_MARGIN_PX = 16;
+
+        // Last strokes handed out (see roundStroke / markingStroke), EDT only
+        private BasicStroke roundStroke, markingStroke;
+        private float roundStrokePx, markingStrokePx;
+        private double roundStrokeScale, markingStrokeScale;
+
+        // Vehicle screen positions of the current frame (x0, y0, x1, y1, ...), reused across frames
+        private double[] vehicleXY = new double[0];
+        private int[] vehicleIdx = new int[0]; // rows shown this frame (on screen + filter)
+        // Raster for vehicle dots (coarse LOD), panel-sized, EDT only
+        private BufferedImage vehicleLayer = null;
+        private int[] vehiclePixels = null;
+
         /*
          * MapPanel: one of the most important classes because it enables user interaction with the panel.
          */
@@ -652,26 +560,6 @@ public final class MapVisualisation {
             return Math.max(lo, Math.min(hi, v));
         }
 
-        // Apply view transform (zoom + rotation + pan) to screen coordinates.
-        private Point2D.Double applyViewTransform(double x, double y) {
-            double cx = getWidth() / 2.0;
-            double cy = getHeight() / 2.0;
-
-            double bx = x - cx;
-            double by = y - cy;
-
-            double cos = Math.cos(viewRotationRad);
-            double sin = Math.sin(viewRotationRad);
-
-            double sx = bx * viewZoom;
-            double sy = by * viewZoom;
-
-            double rx = sx * cos - sy * sin;
-            double ry = sx * sin + sy * cos;
-
-            return new Point2D.Double(cx + rx + viewPanX, cy + ry + viewPanY);
-        }
-
         // Inverse view transform: convert screen coordinate back to base screen coordinate
         // (used when computing zoom around cursor).
         private Point2D.Double inverseViewTransform(double sx, double sy) {
@@ -716,16 +604,11 @@ public final class MapVisualisation {
 
         /**
          * Thread-safe vehicle updates.
-         * Design: clear then batch put, to avoid partial updates and reduce flicker.
+         * Design: the simulation thread publishes complete frames into the triple buffer and calls repaint();
+         * paintComponent always reads one consistent frame (no clear+putAll window, no per-step maps).
          */
-        public void updateVehicles(Map<String, Point2D.Double> newPos,
-                                   Map<String, String> newTypes,
-                                   Map<String, Double> newSpeeds) {
-            vehicles.clear(); vehicleTypes.clear(); vehicleSpeeds.clear();
-            if (newPos != null) vehicles.putAll(newPos);
-            if (newTypes != null) vehicleTypes.putAll(newTypes);
-            if (newSpeeds != null) vehicleSpeeds.putAll(newSpeeds);
-            repaint(); // repaint after data update
+        void setVehicleSnapshots(VehicleSnapshotBuffer snapshots) {
+            this.vehicleSnapshots = snapshots;
         }
 
         // Compute current scale based on bounds and panel size.
@@ -737,15 +620,12 @@ public final class MapVisualisation {
             return Math.min(panelW / worldW, panelH / worldH) * viewZoom;
         }
 
-        // Convert world coordinates to screen coordinates (including view transform).
-        private Point worldToScreen(double wx, double wy, Bounds b) {
-            Point2D.Double base = baseWorldToScreen(wx, wy, b);
-            Point2D.Double v = applyViewTransform(base.x, base.y);
-            return new Point((int) Math.round(v.x), (int) Math.round(v.y));
-        }
-
-        // Base world->screen conversion (fit-to-panel only, no view transform).
-        private Point2D.Double baseWorldToScreen(double wx, double wy, Bounds b) {
+        /**
+         * World (meters, Y up) -> screen (pixels) as one transform per frame:
+         * fit-to-panel + Y flip, then zoom and rotation around the panel center, then pan.
+         * Lanes, TLS markers and vehicles all go through it (no per-vertex conversion code).
+         */
+        private AffineTransform viewTransform(Bounds b) {
             double panelW = Math.max(1, getWidth());
             double panelH = Math.max(1, getHeight());
 
@@ -753,30 +633,63 @@ public final class MapVisualisation {
             double worldH = Math.max(1e-9, b.maxY - b.minY);
 
             double fit = Math.min(panelW / worldW, panelH / worldH);
-            double contentW = worldW * fit;
-            double contentH = worldH * fit;
+            double xPad = (panelW - worldW * fit) / 2.0;
+            double yPad = (panelH - worldH * fit) / 2.0;
+            double cx = getWidth() / 2.0;
+            double cy = getHeight() / 2.0;
 
-            double xPad = (panelW - contentW) / 2.0;
-            double yPad = (panelH - contentH) / 2.0;
+            AffineTransform at = new AffineTransform();
+            at.translate(cx + viewPanX, cy + viewPanY);
+            at.rotate(viewRotationRad);
+            at.scale(viewZoom, viewZoom);
+            at.translate(-cx, -cy);
+            // SUMO Y-axis is up, screen Y-axis is down, so flip Y.
+            at.translate(xPad - b.minX * fit, panelH - yPad + b.minY * fit);
+            at.scale(fit, -fit);
+            return at;
+        }
 
-            double sx = xPad + (wx - b.minX) * fit;
-            double sy = yPad + (wy - b.minY) * fit;
+        /**
+         * World-space bounding box {minX, minY, maxX, maxY} of the visible panel: the panel corners through
+         * the inverse view transform, so a rotated view yields the box around the rotated rectangle.
+         * Grown by `margin` world units on every side.
+         */
+        private double[] worldViewport(AffineTransform at, double margin) {
+            double w = getWidth(), h = getHeight();
+            double[] c = {0, 0, w, 0, 0, h, w, h};
+            try {
+                at.inverseTransform(c, 0, c, 0, 4);
+            } catch (java.awt.geom.NoninvertibleTransformException ex) {
+                return new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+            }
+            return new double[]{Math.min(Math.min(c[0], c[2]), Math.min(c[4], c[6])) - margin,
+                    Math.min(Math.min(c[1], c[3]), Math.min(c[5], c[7])) - margin,
+                    Math.max(Math.max(c[0], c[2]), Math.max(c[4], c[6])) + margin,
+                    Math.max(Math.max(c[1], c[3]), Math.max(c[5], c[7])) + margin};
+        }
 
-            // SUMO Y-axis is up, screen Y-axis is down, so flip Y.
-            double screenY = panelH - sy;
-            return new Point2D.Double(sx, screenY);
+        // Strokes are given in world units (the Graphics2D carries the view transform): pixels / scale.
+        // Most lanes share a width, so the last stroke is reused instead of allocating one per lane.
+        private BasicStroke roundStroke(float px, double sc) {
+            if (px != roundStrokePx || sc != roundStrokeScale || roundStroke == null) {
+                roundStroke = new BasicStroke((float) (px / sc), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+                roundStrokePx = px;
+                roundStrokeScale = sc;
+            }
+            return roundStroke;
         }
 
-        // Build a Path2D for a lane.
-        private Path2D.Double buildPath(double[] xy, Bounds b) {
-            Path2D.Double path = new Path2D.Double();
-            Point p0 = worldToScreen(xy[0], xy[1], b);
-            path.moveTo(p0.x, p0.y);
-            for (int k = 2; k < xy.length; k += 2) {
-                Point pk = worldToScreen(xy[k], xy[k + 1], b);
-                path.lineTo(pk.x, pk.y);
+        private BasicStroke markingStroke(float lanePx, double sc) {
+            if (lanePx != markingStrokePx || sc != markingStrokeScale || markingStroke == null) {
+                float markW = Math.max(1.5f, lanePx * 0.10f);
+                float dashA = Math.max(12f, lanePx * 1.4f);
+                float dashB = Math.max(10f, lanePx * 1.1f);
+                float[] dash = new float[]{(float) (dashA / sc), (float) (dashB / sc)}; // dashed line style
+                markingStroke = new BasicStroke((float) (markW / sc), BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10f, dash, 0f);
+                markingStrokePx = lanePx;
+                markingStrokeScale = sc;
             }
-            return path;
+            return markingStroke;
         }
 
         // Draw background (light gray).
@@ -787,166 +700,239 @@ public final class MapVisualisation {
 
         // Draw roads in layers: outline -> shoulder -> surface -> markings (better visual depth).
         private void drawRoads(Graphics2D g2, Bounds b) {
-            if (ROAD_GEOMS == null || ROAD_GEOMS.isEmpty()) return;
+            TileStore tiles = ROAD_TILES;
+            if (tiles == null) return;
 
+            // Lanes intersecting the viewport (grown by the stroke overhang); missing tiles load in the
+            // background and repaint.
+            AffineTransform at = viewTransform(b);
             double sc = currentScale(b);
+            double[] v = worldViewport(at, ROAD_CULL_MARGIN_M + ROAD_CULL_MARGIN_PX / sc);
+            List<RoadGeom> geoms = tiles.visible(v[0], v[1], v[2], v[3], this::onRoadTileLoaded);
+            if (!DRAW_INTERNAL_EDGES || !DRAW_ALL_LANES) {
+                geoms.removeIf(rg -> (rg.internal && !DRAW_INTERNAL_EDGES) || (!DRAW_ALL_LANES && rg.laneIndex != 0));
+            }
+            int tier = lodTier(sc);
+            if (tier == LOD_TIERS - 1) {
+                // Far: lanes of an edge are under a pixel apart (inside ROAD_MIN_PX), one per edge is enough
+                geoms.removeIf(rg -> rg.laneIndex != 0);
+            }
+            if (geoms.isEmpty()) return;
 
-            // Road colors: outline, road, internal road, shoulder, lane marking
-            Color outline = new Color(0x0B0F14);
-            Color road = new Color(0x111827);
-            Color roadInternal = new Color(0x1F2937);
-            Color shoulder = new Color(0x2A2F36);
-            Color marking = new Color(255,255,255,180);
+            // Paths are prebuilt in world coordinates: the view goes into the Graphics2D once.
+            // Strokes are in world units too, so both are restored before the pixel-space TLS markers.
+            AffineTransform saved = g2.getTransform();
+            Stroke savedStroke = g2.getStroke();
+            g2.transform(at);
+            try {
+                strokeRoadLayers(g2, geoms, sc, tier);
+            } finally {
+                g2.setTransform(saved);
+                g2.setStroke(savedStroke);
+            }
+        }
+
+        private void strokeRoadLayers(Graphics2D g2, List<RoadGeom> geoms, double sc, int tier) {
+            // Junction internals are only a few pixels when far out
+            boolean connectors = DRAW_INTERNAL_CONNECTORS && tier < LOD_TIERS - 1;
 
             // Step 1: draw road outline
-            for (RoadGeom rg : ROAD_GEOMS) {
-                if (!DRAW_INTERNAL_CONNECTORS && rg.internal) continue;
-                if (rg.xy.length < 4) continue;
+            for (RoadGeom rg : geoms) {
+                if (!connectors && rg.internal) continue;
+                if (rg.points < 2) continue;
 
                 float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
                 if (rg.internal) lanePx = Math.max(3.0f, lanePx * 0.70f);
 
-                Path2D path = buildPath(rg.xy, b);
-                g2.setStroke(new BasicStroke(lanePx + 6.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2.setColor(outline);
-                g2.draw(path);
+                g2.setStroke(roundStroke(lanePx + 6.0f, sc));
+                g2.setColor(ROAD_OUTLINE);
+                g2.draw(rg.path(tier));
             }
 
             // Step 2: draw shoulder
-            for (RoadGeom rg : ROAD_GEOMS) {
-                if (!DRAW_INTERNAL_CONNECTORS && rg.internal) continue;
-                if (rg.xy.length < 4) continue;
+            for (RoadGeom rg : geoms) {
+                if (!connectors && rg.internal) continue;
+                if (rg.points < 2) continue;
 
                 float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
                 if (rg.internal) lanePx = Math.max(3.0f, lanePx * 0.70f);
 
-                Path2D path = buildPath(rg.xy, b);
-                g2.setStroke(new BasicStroke(lanePx + 2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2.setColor(shoulder);
-                g2.draw(path);
+                g2.setStroke(roundStroke(lanePx + 2.0f, sc));
+                g2.setColor(ROAD_SHOULDER);
+                g2.draw(rg.path(tier));
             }
 
             // Step 3: draw road surface
-            for (RoadGeom rg : ROAD_GEOMS) {
-                if (!DRAW_INTERNAL_CONNECTORS && rg.internal) continue;
-                if (rg.xy.length < 4) continue;
+            for (RoadGeom rg : geoms) {
+                if (!connectors && rg.internal) continue;
+                if (rg.points < 2) continue;
 
                 float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
                 if (rg.internal) lanePx = Math.max(3.0f, lanePx * 0.70f);
 
-                Path2D path = buildPath(rg.xy, b);
-                g2.setStroke(new BasicStroke(lanePx, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2.setColor(rg.internal ? roadInternal : road);
-                g2.draw(path);
+                g2.setStroke(roundStroke(lanePx, sc));
+                g2.setColor(rg.internal ? ROAD_INTERNAL : ROAD_SURFACE);
+                g2.draw(rg.path(tier));
             }
 
-            // Step 4: draw lane markings (only lane index 0, non-internal)
-            if (DRAW_LANE_MARKINGS) {
-                for (RoadGeom rg : ROAD_GEOMS) {
+            // Step 4: draw lane markings (only lane index 0, non-internal, full detail)
+            if (DRAW_LANE_MARKINGS && tier == 0) {
+                for (RoadGeom rg : geoms) {
                     if (rg.internal) continue;
                     if (rg.laneIndex != 0) continue;
-                    if (rg.xy.length < 4) continue;
+                    if (rg.points < 2) continue;
 
                     float lanePx = (float) Math.max(ROAD_MIN_PX, rg.laneWidth * sc * ROAD_THICKNESS_MULT);
-                    Path2D path = buildPath(rg.xy, b);
-
-                    float markW = Math.max(1.5f, lanePx * 0.10f);
-                    float dashA = Math.max(12f, lanePx * 1.4f);
-                    float dashB = Math.max(10f, lanePx * 1.1f);
-                    float[] dash = new float[]{dashA, dashB}; // dashed line style
-
-                    g2.setStroke(new BasicStroke(markW, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10f, dash, 0f));
-                    g2.setColor(marking);
-                    g2.draw(path);
+                    g2.setStroke(markingStroke(lanePx, sc));
+                    g2.setColor(ROAD_MARKING);
+                    g2.draw(rg.path(tier));
                 }
             }
         }
 
-        // Draw traffic light markers (circle marker + simplified label).
+        // Draw traffic light markers (circle marker + simplified label), only those near the viewport.
+        // LOD: labels only at full detail, bare markers at medium, none at far.
         private void drawTlsMarkers(Graphics2D g2, Bounds b) {
-            Map<String, Point2D.Double> pos = TLS_POSITIONS;
-            if (pos == null || pos.isEmpty()) return;
+            PointGrid grid = TLS_GRID;
+            if (grid == null || grid.size() == 0) return;
+            int tier = lodTier(currentScale(b));
+            if (tier == LOD_TIERS - 1) return;
 
             Font oldF = g2.getFont();
             Font f = oldF.deriveFont(Font.BOLD, 12f);
             g2.setFont(f);
             FontMetrics fm = g2.getFontMetrics();
 
-            for (Map.Entry<String, Point2D.Double> e : pos.entrySet()) {
-                String tlsId = e.getKey();
-                Point2D.Double p = e.getValue();
-                if (p == null) continue;
-
-                Point s = worldToScreen(p.x, p.y, b);
-                int sx = s.x, sy = s.y;
-
-                String tag = TLS_LABELS != null ? TLS_LABELS.getOrDefault(tlsId, tlsId) : tlsId;
-
-                // White circular background
-                g2.setColor(new Color(255, 255, 255, 220));
-                g2.fillOval(sx - 5, sy - 5, 10, 10);
-                // Dark border
-                g2.setColor(new Color(17, 24, 39, 220));
-                g2.drawOval(sx - 5, sy - 5, 10, 10);
-
-                // Label background (rounded rectangle)
-                int tw = fm.stringWidth(tag);
-                int th = fm.getAscent();
-                int padX = 6, padY = 3;
-                int bx = sx + 8;
-                int by = sy - th - 2;
-
-                g2.setColor(new Color(255, 255, 255, 200));
-                g2.fillRoundRect(bx, by, tw + padX * 2, th + padY * 2, 10, 10);
-                g2.setColor(new Color(17, 24, 39, 220));
-                g2.drawRoundRect(bx, by, tw + padX * 2, th + padY * 2, 10, 10);
-
-                // Label text
-                g2.drawString(tag, bx + padX, by + padY + th - 2);
-            }
+            // Markers stay pixel-sized: only their anchor goes through the view transform.
+            AffineTransform at = viewTransform(b);
+            double[] v = worldViewport(at, TLS_CULL_MARGIN_PX / currentScale(b));
+            Map<String, String> labels = TLS_LABELS;
+            double[] s = new double[2];
+
+            grid.query(v[0], v[1], v[2], v[3], i -> {
+                s[0] = grid.x[i];
+                s[1] = grid.y[i];
+                at.transform(s, 0, s, 0, 1);
+                String tlsId = grid.ids[i];
+                String tag = tier > 0 ? null : labels != null ? labels.getOrDefault(tlsId, tlsId) : tlsId;
+                drawTlsMarker(g2, fm, (int) Math.round(s[0]), (int) Math.round(s[1]), tag);
+            });
 
             g2.setFont(oldF); // restore font
         }
 
+        private void drawTlsMarker(Graphics2D g2, FontMetrics fm, int sx, int sy, String tag) {
+            // White circular background
+            g2.setColor(TLS_DOT);
+            g2.fillOval(sx - 5, sy - 5, 10, 10);
+            // Dark border
+            g2.setColor(TLS_BORDER);
+            g2.drawOval(sx - 5, sy - 5, 10, 10);
+            if (tag == null) return;
+
+            // Label background (rounded rectangle)
+            int tw = fm.stringWidth(tag);
+            int th = fm.getAscent();
+            int padX = 6, padY = 3;
+            int bx = sx + 8;
+            int by = sy - th - 2;
+
+            g2.setColor(TLS_LABEL_BG);
+            g2.fillRoundRect(bx, by, tw + padX * 2, th + padY * 2, 10, 10);
+            g2.setColor(TLS_BORDER);
+            g2.drawRoundRect(bx, by, tw + padX * 2, th + padY * 2, 10, 10);
+
+            // Label text
+            g2.drawString(tag, bx + padX, by + padY + th - 2);
+        }
+
         // Draw a vehicle (different type -> different shape).
         private void drawVehicle(Graphics2D g2, int sx, int sy, String type) {
             // Draw vehicle shadow (adds depth)
-            g2.setColor(new Color(0,0,0,70));
+            g2.setColor(VEHICLE_SHADOW);
             g2.fillOval(sx - 8, sy + 2, 16, 8);
 
             if (Main.TYPE_CAR.equals(type)) {
                 // Draw car (orange)
-                g2.setColor(new Color(0xFB923C));
+                g2.setColor(CAR_BODY);
                 g2.fillRoundRect(sx - 7, sy - 5, 14, 10, 6, 6);
                 // Wheels
-                g2.setColor(new Color(0x111827));
+                g2.setColor(WHEEL);
                 g2.fillOval(sx - 6, sy + 4, 4, 4);
                 g2.fillOval(sx + 2, sy + 4, 4, 4);
             } else if (Main.TYPE_TRUCK.equals(type)) {
                 // Draw truck (gray + yellow cargo)
-                g2.setColor(new Color(0x94A3B8));
+                g2.setColor(TRUCK_BODY);
                 g2.fillRoundRect(sx - 12, sy - 6, 24, 12, 4, 4);
-                g2.setColor(new Color(0xFDE68A));
+                g2.setColor(TRUCK_CARGO);
                 g2.fillRoundRect(sx + 2, sy - 6, 10, 12, 3, 3);
                 // Wheels
-                g2.setColor(new Color(0x111827));
+                g2.setColor(WHEEL);
                 g2.fillOval(sx - 10, sy + 5, 4, 4);
                 g2.fillOval(sx + 6, sy + 5, 4, 4);
             } else {
                 // Draw bus (yellow)
-                g2.setColor(new Color(0xFACC15));
+                g2.setColor(BUS_BODY);
                 g2.fillRoundRect(sx - 14, sy - 6, 28, 12, 6, 6);
                 // Wheels
-                g2.setColor(new Color(0x111827));
+                g2.setColor(WHEEL);
                 g2.fillOval(sx - 12, sy + 5, 4, 4);
                 g2.fillOval(sx + 8, sy + 5, 4, 4);
             }
         }
 
+        // Loader thread: the tile shows up in the next rebuilt layer.
+        private void onRoadTileLoaded() {
+            staticLayerStale = true;
+            repaint();
+        }
+
+        // Current view (zoom/rotation/pan), panel size, bounds and device scale (HiDPI) vs. the cached layer.
+        private boolean staticLayerValid(Bounds b, double scaleX, double scaleY) {
+            return staticLayer != null && !staticLayerStale
+                    && layerW == getWidth() && layerH == getHeight() && layerBounds == b
+                    && layerZoom == viewZoom && layerRotation == viewRotationRad
+                    && layerPanX == viewPanX && layerPanY == viewPanY
+                    && layerScaleX == scaleX && layerScaleY == scaleY;
+        }
+
+        // Rasterize background + roads + TLS markers at device resolution.
+        private void rebuildStaticLayer(Bounds b, double scaleX, double scaleY) {
+            int w = Math.max(1, getWidth()), h = Math.max(1, getHeight());
+            int pw = (int) Math.ceil(w * scaleX), ph = (int) Math.ceil(h * scaleY);
+            if (staticLayer == null || staticLayer.getWidth() != pw || staticLayer.getHeight() != ph) {
+                GraphicsConfiguration gc = getGraphicsConfiguration();
+                staticLayer = gc != null ? gc.createCompatibleImage(pw, ph, Transparency.OPAQUE)
+                        : new BufferedImage(pw, ph, BufferedImage.TYPE_INT_RGB);
+            }
+
+            staticLayerStale = false; // before drawing: a tile arriving meanwhile marks it stale again
+            Graphics2D lg = staticLayer.createGraphics();
+            try {
+                lg.scale(scaleX, scaleY);
+                lg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                drawBackground(lg);
+                drawRoads(lg, b);
+                drawTlsMarkers(lg, b);
+            } finally {
+                lg.dispose();
+            }
+
+            layerW = getWidth();
+            layerH = getHeight();
+            layerBounds = b;
+            layerZoom = viewZoom;
+            layerRotation = viewRotationRad;
+            layerPanX = viewPanX;
+            layerPanY = viewPanY;
+            layerScaleX = scaleX;
+            layerScaleY = scaleY;
+        }
+
         /**
          * The paint loop.
          * Swing uses double-buffering by default, so we draw to the Graphics object.
-         * Draw order: background -> roads -> TLS -> vehicles (ensures correct layering).
+         * Draw order: static layer (background -> roads -> TLS, cached) -> vehicles (ensures correct layering).
          */
         @Override protected void paintComponent(Graphics g) {
             super.paintComponent(g);
@@ -957,27 +943,75 @@ public final class MapVisualisation {
 
             Bounds b = getActiveBounds();
 
-            // Draw order matters.
-            drawBackground(g2);
-            drawRoads(g2, b);
-            drawTlsMarkers(g2, b);
+            // Roads only change with the view: reuse the cached raster unless zoom/pan/rotate/resize happened.
+            AffineTransform dev = g2.getTransform();
+            double scaleX = Math.hypot(dev.getScaleX(), dev.getShearY());
+            double scaleY = Math.hypot(dev.getShearX(), dev.getScaleY());
+            if (!staticLayerValid(b, scaleX, scaleY)) rebuildStaticLayer(b, scaleX, scaleY);
+            g2.drawImage(staticLayer, 0, 0, getWidth(), getHeight(), null);
+
+            // Draw vehicles from the latest published frame (owned by the EDT until the next acquire()).
+            VehicleSnapshotBuffer snapshots = vehicleSnapshots;
+            if (snapshots == null) return;
+            VehicleSnapshot frame = snapshots.acquire();
+
+            // World coordinates (meters) -> screen coordinates (pixels), all vehicles in one call.
+            int n = frame.count;
+            if (vehicleXY.length < n * 2) vehicleXY = new double[n * 2];
+            double[] xy = vehicleXY;
+            for (int i = 0; i < n; i++) {
+                xy[2 * i] = frame.x[i];
+                xy[2 * i + 1] = frame.y[i];
+            }
+            viewTransform(b).transform(xy, 0, xy, 0, n);
 
-            // Draw vehicles from live data (ConcurrentHashMap prevents crashes if data updates during drawing).
-            for (Map.Entry<String, Point2D.Double> e : vehicles.entrySet()) {
-                String id = e.getKey();
-                Point2D.Double p = e.getValue();
-                if (p == null) continue;
+            // Keep vehicles on screen that pass the filter (e.g., if "Show Cars" is unchecked, skip cars).
+            if (vehicleIdx.length < n) vehicleIdx = new int[n];
+            int[] idx = vehicleIdx;
+            int shown = 0;
+            int w = getWidth(), h = getHeight();
+            for (int i = 0; i < n; i++) {
+                double sx = xy[2 * i], sy = xy[2 * i + 1];
+                if (sx < -VEHICLE_MARGIN_PX || sy < -VEHICLE_MARGIN_PX || sx > w + VEHICLE_MARGIN_PX || sy > h + VEHICLE_MARGIN_PX) continue;
+                if (filter != null && !filter.allows(VehicleSnapshot.TYPE_NAMES[frame.type[i]], frame.speed[i])) continue;
+                idx[shown++] = i;
+            }
 
-                String type = vehicleTypes.getOrDefault(id, Main.TYPE_CAR);
-                double sp = vehicleSpeeds.getOrDefault(id, 0.0);
+            // Sprites only at full detail and for a moderate count; otherwise one dot per vehicle.
+            int tier = lodTier(currentScale(b));
+            if (tier == 0 && shown <= MAX_VEHICLE_SPRITES) {
+                for (int j = 0; j < shown; j++) {
+                    int i = idx[j];
+                    drawVehicle(g2, (int) Math.round(xy[2 * i]), (int) Math.round(xy[2 * i + 1]),
+                            VehicleSnapshot.TYPE_NAMES[frame.type[i]]);
+                }
+            } else {
+                plotVehicleDots(g2, frame, xy, idx, shown, LOD_VEHICLE_DOT_PX[tier]);
+            }
+        }
 
-                // Apply filter (e.g., if "Show Cars" is unchecked, skip drawing cars).
-                if (filter != null && !filter.allows(type, sp)) continue;
+        // Coarse LOD: dots written straight into an ARGB raster, then one drawImage for all vehicles.
+        private void plotVehicleDots(Graphics2D g2, VehicleSnapshot frame, double[] xy, int[] idx, int shown, int dot) {
+            int w = getWidth(), h = getHeight();
+            if (w <= 0 || h <= 0) return;
+            if (vehicleLayer == null || vehicleLayer.getWidth() != w || vehicleLayer.getHeight() != h) {
+                vehicleLayer = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+                vehiclePixels = ((DataBufferInt) vehicleLayer.getRaster().getDataBuffer()).getData();
+            } else {
+                Arrays.fill(vehiclePixels, 0);
+            }
 
-                // Convert world coordinates (meters) to screen coordinates (pixels).
-                Point s = worldToScreen(p.x, p.y, b);
-                drawVehicle(g2, s.x, s.y, type);
+            int[] px = vehiclePixels;
+            int half = dot / 2;
+            for (int j = 0; j < shown; j++) {
+                int i = idx[j];
+                int x0 = (int) Math.round(xy[2 * i]) - half, y0 = (int) Math.round(xy[2 * i + 1]) - half;
+                int argb = VEHICLE_DOT_ARGB[frame.type[i]];
+                for (int y = Math.max(0, y0); y < Math.min(h, y0 + dot); y++) {
+                    for (int x = Math.max(0, x0); x < Math.min(w, x0 + dot); x++) px[y * w + x] = argb;
+                }
             }
+            g2.drawImage(vehicleLayer, 0, 0, null);
         }
     }
 
@@ -0,0 +1,349 @@
+// ===================== NetCache.java =====================
+package org.example;
+
+import java.awt.geom.Point2D;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Compiled binary form of a parsed net.xml ("final.net.xml" -> "final.net.xml.netcache", same folder).
+ *
+ * Written after a NetXmlReader pass and memory-mapped on later starts: bounds, the EdgeTable arrays,
+ * connections, junction positions, the TLS -> junction mapping and the lane geometry, ordered by map tile
+ * with a tile index (see TileStore). Geometry is not materialized at load: the TileStore pulls tiles out of
+ * the mapping as the viewport needs them, so a large network costs no parsing and little heap.
+ *
+ * Valid only while size, mtime and CRC32C of the net.xml match the header and the payload CRC32C matches;
+ * otherwise the net is parsed again and the cache rewritten.
+ *
+ * Layout (big-endian): header (magic, version, net size, net mtime, net CRC, payload length, payload CRC),
+ * then payload: bounds, string table, edge table, connections, junctions, TLS, tile index, geom records
+ * (tile order), 4-byte aligned floats.
+ */
+final class NetCache {
+
+    private static final int MAGIC = 0x524E4331; // "RNC1"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8 + 8;
+    private static final int GEOM_RECORD_BYTES = 4 + 4 + 1 + 4 + 4 + 4; // edge, lane, internal, width, offset, points
+    private static final String SUFFIX = ".netcache";
+
+    private NetCache() {}
+
+    static File cacheFileFor(File netFile) {
+        return new File(netFile.getPath() + SUFFIX);
+    }
+
+    /** Mapped cache if it matches the net.xml; else one NetXmlReader pass (with shapes), then cached. Null if unreadable. */
+    static NetXmlReader.NetData loadOrParse(File netFile) {
+        if (netFile == null || !netFile.isFile()) return null;
+        File cacheFile = cacheFileFor(netFile);
+        try {
+            long netCrc = crcOf(netFile);
+            NetXmlReader.NetData net = load(cacheFile, netFile, netCrc);
+            if (net != null) return net;
+
+            net = NetXmlReader.read(netFile, true);
+            save(cacheFile, netFile, netCrc, net);
+
+            // Continue from the mapped file so the parsed geometry can be collected; keep it if that fails.
+            NetXmlReader.NetData mapped = load(cacheFile, netFile, netCrc);
+            if (mapped != null) return mapped;
+            net.tiles = TileStore.inMemory(net.lanes);
+            return net;
+        } catch (IOException ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Network load failed: " + netFile.getPath(), ex);
+            return null;
+        }
+    }
+
+    // ===================== Load =====================
+    static NetXmlReader.NetData load(File cacheFile, File netFile, long netCrc) {
+        if (!cacheFile.isFile()) return miss(cacheFile, "no cache yet");
+        long t0 = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            // Header is checked with a plain read: a stale file is never mapped (and stays replaceable on Windows).
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+            while (h.hasRemaining() && ch.read(h) > 0) { }
+            if (h.hasRemaining()) return miss(cacheFile, "truncated header");
+            h.flip();
+            if (h.getInt() != MAGIC || h.getInt() != VERSION) return miss(cacheFile, "format");
+            if (h.getLong() != netFile.length() || h.getLong() != netFile.lastModified() || h.getLong() != netCrc) {
+                return miss(cacheFile, "net.xml changed");
+            }
+            long len = h.getLong();
+            long crc = h.getLong();
+            if (len < 0 || HEADER_BYTES + len != ch.size()) return miss(cacheFile, "corrupt length");
+
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, len);
+            CRC32C c = new CRC32C();
+            c.update(buf.duplicate());
+            if (c.getValue() != crc) return miss(cacheFile, "CRC mismatch");
+
+            NetXmlReader.NetData net = readPayload(buf);
+            Logging.LOG.info(String.format(Locale.US,
+                    "Network cache hit: edges=%d tiles=%d in %.1f ms (%s, %d bytes mapped)",
+                    net.edges.size(), net.tiles.tileCount(), (System.nanoTime() - t0) / 1e6, cacheFile.getPath(), len));
+            return net;
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Network cache unreadable: " + cacheFile.getPath(), ex);
+            return null;
+        }
+    }
+
+    private static NetXmlReader.NetData miss(File f, String why) {
+        Logging.LOG.info("Network cache miss (" + why + "): " + f.getPath());
+        return null;
+    }
+
+    private static NetXmlReader.NetData readPayload(ByteBuffer buf) {
+        NetXmlReader.NetData net = new NetXmlReader.NetData();
+        if (buf.get() != 0) {
+            net.convBoundary = new MapVisualisation.Bounds(buf.getDouble(), buf.getDouble(), buf.getDouble(), buf.getDouble());
+        }
+
+        String[] str = new String[buf.getInt()];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < str.length; i++) {
+            int len = buf.getInt();
+            if (len > scratch.length) scratch = new byte[len];
+            buf.get(scratch, 0, len);
+            str[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        // Edge table
+        int n = buf.getInt();
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) ids[i] = str[buf.getInt()]; // one String per id, shared with the RoadGeoms
+        double[] length = doubles(buf, n), speed = doubles(buf, n);
+        double[] fromX = doubles(buf, n), fromY = doubles(buf, n), toX = doubles(buf, n), toY = doubles(buf, n);
+        byte[] classMask = bytes(buf, n);
+        int[] laneStart = ints(buf, n + 1);
+        byte[] laneMask = bytes(buf, buf.getInt());
+        net.edges = new EdgeTable(ids, length, speed, classMask, fromX, fromY, toX, toY, laneStart, laneMask);
+
+        // Connections
+        int c = buf.getInt();
+        net.connCount = c;
+        net.connFrom = ints(buf, c);
+        net.connTo = ints(buf, c);
+        net.connFromLane = ints(buf, c);
+        net.connToLane = ints(buf, c);
+
+        int junctions = buf.getInt();
+        for (int i = 0; i < junctions; i++) {
+            String id = str[buf.getInt()];
+            net.junctionPos.put(id, new Point2D.Double(buf.getDouble(), buf.getDouble()));
+        }
+        int tls = buf.getInt();
+        for (int i = 0; i < tls; i++) net.tlsToJunction.put(str[buf.getInt()], str[buf.getInt()]);
+
+        // Tile index
+        double originX = buf.getDouble(), originY = buf.getDouble(), tileSize = buf.getDouble();
+        int cols = buf.getInt(), rows = buf.getInt(), tiles = buf.getInt();
+        int[] geomStart = ints(buf, tiles), geomCount = ints(buf, tiles);
+        int[] coordStart = ints(buf, tiles), coordCount = ints(buf, tiles);
+        float[] box = new float[tiles * 4];
+        buf.asFloatBuffer().get(box);
+        buf.position(buf.position() + box.length * 4);
+        TileStore.Index index = new TileStore.Index(originX, originY, tileSize, cols, rows, tiles, geomStart, geomCount, box);
+        index.coordStart = coordStart;
+        index.coordCount = coordCount;
+
+        // Geom records and coordinates stay in the mapping (views only)
+        int geoms = buf.getInt();
+        ByteBuffer records = buf.slice();
+        records.limit(geoms * GEOM_RECORD_BYTES);
+        buf.position(align4(buf.position() + geoms * GEOM_RECORD_BYTES));
+        int floats = buf.getInt();
+        FloatBuffer coords = buf.slice().asFloatBuffer();
+        coords.limit(floats);
+        net.coords = coords;
+        net.tiles = TileStore.mapped(index, records, GEOM_RECORD_BYTES, coords, str, TileStore.defaultBudgetBytes());
+        return net;
+    }
+
+    private static double[] doubles(ByteBuffer buf, int n) {
+        double[] a = new double[n];
+        buf.asDoubleBuffer().get(a);
+        buf.position(buf.position() + n * 8);
+        return a;
+    }
+
+    private static int[] ints(ByteBuffer buf, int n) {
+        int[] a = new int[n];
+        buf.asIntBuffer().get(a);
+        buf.position(buf.position() + n * 4);
+        return a;
+    }
+
+    private static byte[] bytes(ByteBuffer buf, int n) {
+        byte[] a = new byte[n];
+        buf.get(a);
+        return a;
+    }
+
+    private static int align4(int pos) {
+        return (pos + 3) & ~3;
+    }
+
+    // ===================== Save =====================
+    // Temp file + atomic move (like VariantCache): a crash never leaves a half-written cache.
+    static void save(File cacheFile, File netFile, long netCrc, NetXmlReader.NetData net) {
+        try {
+            byte[] payload = writePayload(net);
+            CRC32C c = new CRC32C();
+            c.update(payload);
+
+            File parent = cacheFile.getAbsoluteFile().getParentFile();
+            File tmp = File.createTempFile("net", ".tmp", parent);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(netFile.length());
+                out.writeLong(netFile.lastModified());
+                out.writeLong(netCrc);
+                out.writeLong(payload.length);
+                out.writeLong(c.getValue());
+                out.write(payload);
+            }
+            Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Logging.LOG.info("Network cache written: " + cacheFile.getPath() + " (" + cacheFile.length() + " bytes)");
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Network cache write failed: " + cacheFile.getPath(), ex);
+        }
+    }
+
+    private static byte[] writePayload(NetXmlReader.NetData net) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        EdgeTable et = net.edges;
+        for (String id : et.ids) strings.putIfAbsent(id, strings.size());
+        for (String id : net.junctionPos.keySet()) strings.putIfAbsent(id, strings.size());
+        for (Map.Entry<String, String> e : net.tlsToJunction.entrySet()) {
+            strings.putIfAbsent(e.getKey(), strings.size());
+            strings.putIfAbsent(e.getValue(), strings.size());
+        }
+        for (MapVisualisation.RoadGeom rg : net.lanes) strings.putIfAbsent(rg.edgeId, strings.size());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        MapVisualisation.Bounds b = net.convBoundary;
+        out.writeByte(b != null ? 1 : 0);
+        if (b != null) {
+            out.writeDouble(b.minX);
+            out.writeDouble(b.minY);
+            out.writeDouble(b.maxX);
+            out.writeDouble(b.maxY);
+        }
+
+        out.writeInt(strings.size());
+        for (String s : strings.keySet()) {
+            byte[] u = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(u.length);
+            out.write(u);
+        }
+
+        int n = et.size();
+        out.writeInt(n);
+        for (String id : et.ids) out.writeInt(strings.get(id));
+        for (double[] a : new double[][]{et.length, et.speed, et.fromX, et.fromY, et.toX, et.toY}) {
+            for (double v : a) out.writeDouble(v);
+        }
+        out.write(et.classMask);
+        for (int v : et.laneStart) out.writeInt(v);
+        out.writeInt(et.laneMask.length);
+        out.write(et.laneMask);
+
+        int c = net.connCount;
+        out.writeInt(c);
+        for (int[] a : new int[][]{net.connFrom, net.connTo, net.connFromLane, net.connToLane}) {
+            for (int i = 0; i < c; i++) out.writeInt(a[i]);
+        }
+
+        out.writeInt(net.junctionPos.size());
+        for (Map.Entry<String, Point2D.Double> e : net.junctionPos.entrySet()) {
+            out.writeInt(strings.get(e.getKey()));
+            out.writeDouble(e.getValue().x);
+            out.writeDouble(e.getValue().y);
+        }
+        out.writeInt(net.tlsToJunction.size());
+        for (Map.Entry<String, String> e : net.tlsToJunction.entrySet()) {
+            out.writeInt(strings.get(e.getKey()));
+            out.writeInt(strings.get(e.getValue()));
+        }
+
+        // Lanes in tile order; each tile's floats end up contiguous
+        List<MapVisualisation.RoadGeom> lanes = net.lanes;
+        int[] order = new int[lanes.size()];
+        TileStore.Index index = TileStore.plan(lanes, order);
+        int[] offset = new int[order.length];
+        int floats = 0;
+        for (int j = 0; j < order.length; j++) {
+            offset[j] = floats;
+            floats += lanes.get(order[j]).points * 2;
+        }
+
+        out.writeDouble(index.originX);
+        out.writeDouble(index.originY);
+        out.writeDouble(index.tileSize);
+        out.writeInt(index.cols);
+        out.writeInt(index.rows);
+        out.writeInt(index.count);
+        for (int v : index.geomStart) out.writeInt(v);
+        for (int v : index.geomCount) out.writeInt(v);
+        for (int t = 0; t < index.count; t++) out.writeInt(offset[index.geomStart[t]]);
+        for (int t = 0; t < index.count; t++) {
+            int end = index.geomStart[t] + index.geomCount[t];
+            out.writeInt((end < order.length ? offset[end] : floats) - offset[index.geomStart[t]]);
+        }
+        for (float v : index.box) out.writeFloat(v);
+
+        out.writeInt(order.length);
+        for (int j = 0; j < order.length; j++) {
+            MapVisualisation.RoadGeom rg = lanes.get(order[j]);
+            out.writeInt(strings.get(rg.edgeId));
+            out.writeInt(rg.laneIndex);
+            out.writeByte(rg.internal ? 1 : 0);
+            out.writeFloat(rg.laneWidth);
+            out.writeInt(offset[j]);
+            out.writeInt(rg.points);
+        }
+        while ((out.size() & 3) != 0) out.writeByte(0);
+        out.writeInt(floats);
+        for (int j : order) {
+            MapVisualisation.RoadGeom rg = lanes.get(j);
+            for (int k = 0; k < rg.points; k++) {
+                out.writeFloat((float) rg.x(k));
+                out.writeFloat((float) rg.y(k));
+            }
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // ===================== Net fingerprint =====================
+    // CRC32C (hardware-accelerated) over the whole net.xml: milliseconds even for large files.
+    private static long crcOf(File f) throws IOException {
+        CRC32C c = new CRC32C();
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            while (ch.read(buf) > 0) {
+                buf.flip();
+                c.update(buf);
+                buf.clear();
+            }
+        }
+        return c.getValue();
+    }
+}
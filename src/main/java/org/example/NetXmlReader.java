@@ -0,0 +1,351 @@
+// ===================== NetXmlReader.java =====================
+package org.example;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.awt.geom.Point2D;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.*;
+
+/**
+ * Single streaming (StAX) pass over a SUMO .net.xml.
+ *
+ * Fills everything the app needs at once: convBoundary, lane shapes, junction positions, the EdgeTable,
+ * connections (for the RoutingGraph) and the TLS -> junction mapping. Nothing but the results is kept in
+ * memory (no DOM), and lane shapes are parsed straight from the attribute string into one flat float
+ * buffer shared by all RoadGeoms (the same layout NetCache maps from disk).
+ */
+final class NetXmlReader {
+
+    private NetXmlReader() {}
+
+    // ===================== Result =====================
+    static final class NetData {
+        MapVisualisation.Bounds convBoundary;                         // null if missing
+        final List<MapVisualisation.RoadGeom> lanes = new ArrayList<>(); // only if shapes were requested
+        FloatBuffer coords = FloatBuffer.allocate(0);                    // shared by all lanes
+        TileStore tiles;                                                 // set by NetCache (lanes stay empty on a cache hit)
+        final Map<String, Point2D.Double> junctionPos = new HashMap<>();
+        final Map<String, String> tlsToJunction = new LinkedHashMap<>(); // via connections, then tlLogic ids
+        EdgeTable edges;
+
+        // Connections between normal edges (edge indices of `edges`, lane indices)
+        int connCount;
+        int[] connFrom = new int[256], connTo = new int[256], connFromLane = new int[256], connToLane = new int[256];
+
+        private void addConnection(int from, int to, int fromLane, int toLane) {
+            if (connCount == connFrom.length) {
+                int cap = connCount * 2;
+                connFrom = Arrays.copyOf(connFrom, cap);
+                connTo = Arrays.copyOf(connTo, cap);
+                connFromLane = Arrays.copyOf(connFromLane, cap);
+                connToLane = Arrays.copyOf(connToLane, cap);
+            }
+            connFrom[connCount] = from;
+            connTo[connCount] = to;
+            connFromLane[connCount] = fromLane;
+            connToLane[connCount] = toLane;
+            connCount++;
+        }
+    }
+
+    // ===================== net.xml =====================
+    /** One pass over the network; shapes=false skips lane geometry (routing only). */
+    static NetData read(File netFile, boolean shapes) throws IOException {
+        long t0 = System.nanoTime();
+        NetData out = new NetData();
+        EdgeTable.Builder edges = new EdgeTable.Builder();
+        Map<String, String> edgeToNode = new HashMap<>();
+        List<String> tlLogicIds = new ArrayList<>();
+        ShapeParser shapeParser = new ShapeParser();
+        List<PendingLane> pending = new ArrayList<>();
+        float[] coords = new float[shapes ? 1 << 16 : 0];
+        int coordLen = 0;
+
+        String curEdge = null;
+        boolean curInternal = false;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(netFile), 1 << 16)) {
+            XMLStreamReader r = newFactory().createXMLStreamReader(in);
+            try {
+                while (r.hasNext()) {
+                    int ev = r.next();
+                    if (ev == XMLStreamConstants.END_ELEMENT) {
+                        if ("edge".equals(r.getLocalName())) {
+                            if (curEdge != null && !curInternal) edges.endEdge();
+                            curEdge = null;
+                        }
+                        continue;
+                    }
+                    if (ev != XMLStreamConstants.START_ELEMENT) continue;
+
+                    switch (r.getLocalName()) {
+                        case "location": {
+                            out.convBoundary = parseBounds(attr(r, "convBoundary"));
+                            break;
+                        }
+                        case "edge": {
+                            curEdge = attr(r, "id");
+                            curInternal = curEdge == null || curEdge.startsWith(":") || "internal".equalsIgnoreCase(attr(r, "function"));
+                            if (curEdge != null && !curInternal) {
+                                String to = attr(r, "to");
+                                edges.beginEdge(curEdge, attr(r, "from"), to);
+                                if (to != null && !to.isBlank()) edgeToNode.put(curEdge, to.trim());
+                            }
+                            break;
+                        }
+                        case "lane": {
+                            if (curEdge == null) break;
+                            int index = parseInt(attr(r, "index"), 0);
+                            if (!curInternal) {
+                                edges.addLane(index, parseDouble(attr(r, "length"), -1), parseDouble(attr(r, "speed"), -1),
+                                        attr(r, "allow"), attr(r, "disallow"));
+                            }
+                            if (shapes) {
+                                String shape = attr(r, "shape");
+                                int n = shape == null ? 0 : shapeParser.parse(shape);
+                                if (n >= 4) {
+                                    if (coordLen + n > coords.length) coords = Arrays.copyOf(coords, Math.max(coords.length * 2, coordLen + n));
+                                    for (int i = 0; i < n; i++) coords[coordLen + i] = (float) shapeParser.get(i);
+                                    float w = (float) parseDouble(attr(r, "width"), 3.2);
+                                    pending.add(new PendingLane(curEdge, index, curInternal, w, coordLen, n / 2));
+                                    coordLen += n;
+                                }
+                            }
+                            break;
+                        }
+                        case "junction": {
+                            String id = attr(r, "id");
+                            double x = parseDouble(attr(r, "x"), Double.NaN), y = parseDouble(attr(r, "y"), Double.NaN);
+                            if (id != null && !Double.isNaN(x) && !Double.isNaN(y)) out.junctionPos.put(id.trim(), new Point2D.Double(x, y));
+                            break;
+                        }
+                        case "connection": {
+                            String from = attr(r, "from");
+                            int a = edges.indexOf(from), b = edges.indexOf(attr(r, "to"));
+                            if (a >= 0 && b >= 0) {
+                                out.addConnection(a, b, parseInt(attr(r, "fromLane"), -1), parseInt(attr(r, "toLane"), -1));
+                            }
+                            // TLS -> junction (first connection of a TLS wins)
+                            String tl = attr(r, "tl");
+                            if (tl != null && !tl.isBlank() && from != null) {
+                                String jId = edgeToNode.get(from.trim());
+                                if (jId != null) out.tlsToJunction.putIfAbsent(tl.trim(), jId);
+                            }
+                            break;
+                        }
+                        case "tlLogic": {
+                            String id = attr(r, "id");
+                            if (id != null && !id.isBlank()) tlLogicIds.add(id.trim());
+                            break;
+                        }
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Bad net.xml: " + netFile.getPath(), ex);
+        }
+
+        // RoadGeoms view the final coordinate array (it grew while parsing)
+        out.coords = FloatBuffer.wrap(coords, 0, coordLen).slice();
+        for (PendingLane p : pending) {
+            out.lanes.add(new MapVisualisation.RoadGeom(p.edgeId, p.index, p.internal, p.width, out.coords, p.offset, p.points));
+        }
+
+        // tlLogic ids without a connection mapping (their junction usually has the same id)
+        for (String id : tlLogicIds) out.tlsToJunction.putIfAbsent(id, id);
+
+        Map<String, double[]> junctionXY = new HashMap<>(out.junctionPos.size() * 2);
+        for (Map.Entry<String, Point2D.Double> e : out.junctionPos.entrySet()) {
+            junctionXY.put(e.getKey(), new double[]{e.getValue().x, e.getValue().y});
+        }
+        out.edges = edges.build(junctionXY);
+
+        Logging.LOG.info(String.format(Locale.US,
+                "net.xml read in one pass: edges=%d connections=%d junctions=%d lanes=%d in %.0f ms (%s)",
+                out.edges.size(), out.connCount, out.junctionPos.size(), out.lanes.size(),
+                (System.nanoTime() - t0) / 1e6, netFile.getPath()));
+        return out;
+    }
+
+    // ===================== sumocfg =====================
+    /** value="" of the first <element> in a sumocfg (e.g. net-file, route-files); null if absent. */
+    static String readConfigValue(File sumocfg, String element) {
+        if (sumocfg == null || !sumocfg.isFile()) return null;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(sumocfg))) {
+            XMLStreamReader r = newFactory().createXMLStreamReader(in);
+            try {
+                while (r.hasNext()) {
+                    if (r.next() == XMLStreamConstants.START_ELEMENT && element.equals(r.getLocalName())) {
+                        String v = attr(r, "value");
+                        return v == null || v.isBlank() ? null : v.trim();
+                    }
+                }
+            } finally {
+                r.close();
+            }
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Failed reading " + element + " from " + sumocfg.getPath(), ex);
+        }
+        return null;
+    }
+
+    // ===================== Helpers =====================
+    // Same hardening as the former DOM parsers: no DTD, no external entities.
+    static XMLInputFactory newFactory() {
+        XMLInputFactory f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return f;
+    }
+
+    static String attr(XMLStreamReader r, String name) {
+        return r.getAttributeValue(null, name);
+    }
+
+    private static final class PendingLane {
+        final String edgeId;
+        final int index, offset, points;
+        final boolean internal;
+        final float width;
+
+        PendingLane(String edgeId, int index, boolean internal, float width, int offset, int points) {
+            this.edgeId = edgeId;
+            this.index = index;
+            this.internal = internal;
+            this.width = width;
+            this.offset = offset;
+            this.points = points;
+        }
+    }
+
+    private static MapVisualisation.Bounds parseBounds(String cb) {
+        if (cb == null || cb.isBlank()) return null;
+        String[] p = cb.split(",");
+        if (p.length != 4) return null;
+        try {
+            return new MapVisualisation.Bounds(Double.parseDouble(p[0].trim()), Double.parseDouble(p[1].trim()),
+                    Double.parseDouble(p[2].trim()), Double.parseDouble(p[3].trim()));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static int parseInt(String s, int def) {
+        if (s == null || s.isBlank()) return def;
+        try { return Integer.parseInt(s.trim()); } catch (NumberFormatException ex) { return def; }
+    }
+
+    private static double parseDouble(String s, double def) {
+        if (s == null || s.isBlank()) return def;
+        try { return Double.parseDouble(s.trim()); } catch (NumberFormatException ex) { return def; }
+    }
+
+    // ===================== Shape parsing =====================
+    /**
+     * "x1,y1 x2,y2 ..." -> x1, y1, x2, y2, ... without split() or boxed lists: one scan over the chars,
+     * plain decimals decoded inline (mantissa / 10^k is exact-rounded for the short numbers SUMO writes),
+     * anything unusual (exponent, long mantissa) goes through Double.parseDouble.
+     * Invalid pairs are skipped like before. Scratch buffer is reused; not thread-safe.
+     */
+    static final class ShapeParser {
+        private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+        private double[] buf = new double[64];
+        private int pos;        // cursor in the current string
+        private boolean failed; // last number was malformed
+
+        // Number of values parsed (2 per point); read them with get(i) before the next parse().
+        int parse(String s) {
+            int n = 0, len = s.length();
+            pos = 0;
+            while (true) {
+                skipSpaces(s, len);
+                if (pos >= len) break;
+
+                // One "x,y" token
+                double x = number(s, len);
+                boolean ok = !failed && pos < len && s.charAt(pos) == ',';
+                double y = 0;
+                if (ok) {
+                    pos++;
+                    y = number(s, len);
+                    ok = !failed && (pos >= len || isSpace(s.charAt(pos)));
+                }
+                if (!ok) {
+                    while (pos < len && !isSpace(s.charAt(pos))) pos++; // skip the invalid token
+                    continue;
+                }
+                if (n + 2 > buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+                buf[n++] = x;
+                buf[n++] = y;
+            }
+            return n;
+        }
+
+        double get(int i) { return buf[i]; }
+
+        private double number(String s, int len) {
+            failed = false;
+            int start = pos;
+            boolean neg = false;
+            if (pos < len && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) neg = s.charAt(pos++) == '-';
+
+            long mant = 0;
+            int digits = 0, frac = 0;
+            boolean dot = false;
+            while (pos < len) {
+                char c = s.charAt(pos);
+                if (c >= '0' && c <= '9') {
+                    mant = mant * 10 + (c - '0');
+                    digits++;
+                    if (dot) frac++;
+                } else if (c == '.' && !dot) {
+                    dot = true;
+                } else {
+                    break;
+                }
+                pos++;
+            }
+
+            char next = pos < len ? s.charAt(pos) : ' ';
+            if (next == 'e' || next == 'E' || digits > 15) {
+                // Rare: let the JDK handle it
+                while (pos < len && s.charAt(pos) != ',' && !isSpace(s.charAt(pos))) pos++;
+                try {
+                    return Double.parseDouble(s.substring(start, pos));
+                } catch (NumberFormatException ex) {
+                    failed = true;
+                    return 0;
+                }
+            }
+            if (digits == 0) {
+                failed = true;
+                return 0;
+            }
+            double v = frac == 0 ? mant : mant / POW10[frac];
+            return neg ? -v : v;
+        }
+
+        private void skipSpaces(String s, int len) {
+            while (pos < len && isSpace(s.charAt(pos))) pos++;
+        }
+
+        private static boolean isSpace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+        }
+    }
+}
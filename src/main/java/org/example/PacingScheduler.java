@@ -0,0 +1,123 @@
+// ===================== PacingScheduler.java =====================
+package org.example;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the simulation loop to a requested real-time factor (sim seconds per wall second).
+ *
+ * Each step gets an absolute wall-clock deadline derived from an anchor (wall time, sim time), so time
+ * spent in TraCI/metrics is absorbed instead of adding to a fixed sleep, and errors do not accumulate.
+ * If the loop falls more than MAX_LAG_SEC behind, the schedule is re-anchored (no burst to "catch up").
+ *
+ * The target ratio is set from the UI thread; everything else runs on the simulation thread.
+ */
+final class PacingScheduler {
+
+    // Ratio value meaning "as fast as SUMO allows" (no waiting at all)
+    static final double UNLIMITED = Double.POSITIVE_INFINITY;
+
+    // Catch-up bound: a larger backlog is dropped instead of being replayed at full speed
+    private static final double MAX_LAG_SEC = 0.25;
+
+    // Achieved ratio = EWMA over measurement windows of this wall length
+    private static final double MEASURE_WINDOW_SEC = 0.5;
+    private static final double EWMA_ALPHA = 0.3;
+
+    private volatile double targetRatio;
+
+    // ===================== Schedule (simulation thread only) =====================
+    private boolean anchored = false;
+    private double anchoredRatio;
+    private long anchorWallNanos;
+    private double anchorSimTime;
+
+    // ===================== Achieved ratio measurement =====================
+    private long sampleWallNanos = -1;
+    private double sampleSimTime;
+    private double achievedRatio = 0.0;
+    private boolean lagging = false;
+
+    PacingScheduler(double targetRatio) {
+        setTargetRatio(targetRatio);
+    }
+
+    // Called from the UI; picked up (with a fresh anchor) at the next step.
+    void setTargetRatio(double ratio) {
+        targetRatio = (ratio > 0) ? ratio : UNLIMITED;
+    }
+
+    double targetRatio() { return targetRatio; }
+
+    // Last measured sim-seconds per wall-second (0 before the first measurement window).
+    double achievedRatio() { return achievedRatio; }
+
+    // True if the last step missed its deadline (machine cannot keep up with the requested ratio).
+    boolean isLagging() { return lagging; }
+
+    // Forget the schedule, e.g. while paused, so resuming does not try to make up the pause.
+    void reset() {
+        anchored = false;
+        sampleWallNanos = -1;
+    }
+
+    /** Wait until simTime is due according to the requested ratio. Call once per step, after stepping. */
+    void pace(double simTime) throws InterruptedException {
+        double ratio = targetRatio;
+        long now = System.nanoTime();
+
+        if (!anchored || ratio != anchoredRatio) anchor(now, simTime, ratio);
+        measure(now, simTime);
+
+        if (Double.isInfinite(ratio)) {
+            lagging = false;
+            return;
+        }
+
+        long due = anchorWallNanos + (long) ((simTime - anchorSimTime) / ratio * 1e9);
+        long ahead = due - now;
+
+        if (ahead > 0) {
+            lagging = false;
+            // parkNanos may return early (spurious wakeups) => loop until the deadline.
+            while (ahead > 0) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                LockSupport.parkNanos(ahead);
+                ahead = due - System.nanoTime();
+            }
+        } else {
+            lagging = true;
+            if (-ahead > MAX_LAG_SEC * 1e9) anchor(now, simTime, ratio);
+        }
+    }
+
+    private void anchor(long now, double simTime, double ratio) {
+        anchored = true;
+        anchoredRatio = ratio;
+        anchorWallNanos = now;
+        anchorSimTime = simTime;
+    }
+
+    private void measure(long now, double simTime) {
+        if (sampleWallNanos < 0) {
+            sampleWallNanos = now;
+            sampleSimTime = simTime;
+            return;
+        }
+
+        double wallSec = (now - sampleWallNanos) / 1e9;
+        if (wallSec < MEASURE_WINDOW_SEC) return;
+
+        double inst = (simTime - sampleSimTime) / wallSec;
+        achievedRatio = (achievedRatio <= 0) ? inst : achievedRatio + EWMA_ALPHA * (inst - achievedRatio);
+        sampleWallNanos = now;
+        sampleSimTime = simTime;
+    }
+
+    // Display text for a ratio (e.g. "10x", "0.5x", "max").
+    static String format(double ratio) {
+        if (Double.isInfinite(ratio)) return "max";
+        if (ratio == Math.rint(ratio)) return String.format(java.util.Locale.US, "%.0fx", ratio);
+        return String.format(java.util.Locale.US, "%.1fx", ratio);
+    }
+}
@@ -0,0 +1,104 @@
+// ===================== PointGrid.java =====================
+package org.example;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Static uniform grid over named world points (TLS markers), built once at network load.
+ *
+ * Points are stored sorted by cell (CSR layout: cellStart[c] .. cellStart[c + 1] - 1), so a viewport
+ * query touches only the cells under the rectangle and its cost follows what is visible, not the
+ * network size. Immutable after build() => safe to query from any thread.
+ */
+final class PointGrid {
+
+    private static final int POINTS_PER_CELL = 4;
+
+    final String[] ids;
+    final double[] x, y;
+
+    private final double originX, originY, cellSize;
+    private final int cols, rows;
+    private final int[] cellStart;
+
+    private PointGrid(String[] ids, double[] x, double[] y, double originX, double originY, double cellSize,
+                      int cols, int rows, int[] cellStart) {
+        this.ids = ids;
+        this.x = x;
+        this.y = y;
+        this.originX = originX;
+        this.originY = originY;
+        this.cellSize = cellSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.cellStart = cellStart;
+    }
+
+    static PointGrid build(Map<String, Point2D.Double> points) {
+        int n = 0;
+        String[] id = new String[points.size()];
+        double[] px = new double[id.length], py = new double[id.length];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Map.Entry<String, Point2D.Double> e : points.entrySet()) {
+            Point2D.Double p = e.getValue();
+            if (p == null) continue;
+            id[n] = e.getKey();
+            px[n] = p.x;
+            py[n] = p.y;
+            minX = Math.min(minX, p.x); minY = Math.min(minY, p.y);
+            maxX = Math.max(maxX, p.x); maxY = Math.max(maxY, p.y);
+            n++;
+        }
+        if (n == 0) { minX = minY = 0; maxX = maxY = 1; }
+
+        double w = Math.max(1e-3, maxX - minX), h = Math.max(1e-3, maxY - minY);
+        double cellSize = Math.max(1e-3, Math.sqrt(w * h * POINTS_PER_CELL / Math.max(1, n)));
+        int cols = Math.max(1, Math.min(n + 1, (int) Math.ceil(w / cellSize)));
+        int rows = Math.max(1, Math.min(n + 1, (int) Math.ceil(h / cellSize)));
+        cellSize = Math.max(w / cols, h / rows);
+
+        // Counting sort by cell (stable: map order kept within a cell)
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            int c = Math.min(cols - 1, (int) ((px[i] - minX) / cellSize));
+            int r = Math.min(rows - 1, (int) ((py[i] - minY) / cellSize));
+            cellOf[i] = r * cols + c;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) cellStart[c + 1] += cellStart[c];
+        int[] next = Arrays.copyOf(cellStart, cols * rows);
+        String[] sid = new String[n];
+        double[] sx = new double[n], sy = new double[n];
+        for (int i = 0; i < n; i++) {
+            int j = next[cellOf[i]]++;
+            sid[j] = id[i];
+            sx[j] = px[i];
+            sy[j] = py[i];
+        }
+        return new PointGrid(sid, sx, sy, minX, minY, cellSize, cols, rows, cellStart);
+    }
+
+    int size() { return ids.length; }
+
+    /** Calls visit with the index (into ids / x / y) of every point inside the world rectangle. */
+    void query(double minX, double minY, double maxX, double maxY, IntConsumer visit) {
+        if (ids.length == 0 || maxX < minX || maxY < minY) return;
+        int c0 = cell(minX - originX, cols), c1 = cell(maxX - originX, cols);
+        int r0 = cell(minY - originY, rows), r1 = cell(maxY - originY, rows);
+        for (int r = r0; r <= r1; r++) {
+            for (int i = cellStart[r * cols + c0], end = cellStart[r * cols + c1 + 1]; i < end; i++) {
+                if (x[i] >= minX && x[i] <= maxX && y[i] >= minY && y[i] <= maxY) visit.accept(i);
+            }
+        }
+    }
+
+    // Cell index of an offset from the origin, clamped to the grid (the point test does the exact check).
+    private int cell(double offset, int limit) {
+        return (int) Math.max(0, Math.min(limit - 1, Math.floor(offset / cellSize)));
+    }
+}
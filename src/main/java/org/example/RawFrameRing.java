@@ -0,0 +1,71 @@
+// ===================== RawFrameRing.java =====================
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer / single-consumer ring of RawVehicleFrame
+ * (producer = TraCI thread, consumer = compute thread).
+ *
+ * Frames are filled in place and recycled, so steady state allocates nothing.
+ * A full ring makes the producer wait (back-pressure instead of dropping data);
+ * close() wakes both sides up for shutdown.
+ */
+final class RawFrameRing {
+
+    private static final long WAIT_NANOS = 100_000; // 0.1 ms between polls of the other side
+
+    private final RawVehicleFrame[] frames;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong(); // next frame to publish (producer)
+    private final AtomicLong tail = new AtomicLong(); // next frame to consume (consumer)
+    private volatile boolean closed = false;
+
+    RawFrameRing(int sizePow2, int vehicleCapacity) {
+        int n = Integer.highestOneBit(Math.max(2, sizePow2));
+        frames = new RawVehicleFrame[n];
+        for (int i = 0; i < n; i++) frames[i] = new RawVehicleFrame(vehicleCapacity);
+        mask = n - 1;
+    }
+
+    // ===================== Producer side (TraCI thread) =====================
+    // Next free frame (cleared), waiting while the ring is full; null once the ring is closed.
+    RawVehicleFrame claim() {
+        long h = head.get();
+        while (h - tail.get() == frames.length) {
+            if (closed) return null;
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        if (closed) return null;
+        RawVehicleFrame f = frames[(int) (h & mask)];
+        f.clear();
+        return f;
+    }
+
+    // Hand the claimed frame to the consumer.
+    void publish() {
+        head.set(head.get() + 1);
+    }
+
+    // ===================== Consumer side (compute thread) =====================
+    // Oldest published frame, waiting while the ring is empty; null once closed and drained.
+    RawVehicleFrame take() {
+        long t = tail.get();
+        while (head.get() == t) {
+            if (closed && head.get() == t) return null; // re-check: a last frame may precede close()
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        return frames[(int) (t & mask)];
+    }
+
+    // Give the frame returned by take() back to the producer.
+    void release() {
+        tail.set(tail.get() + 1);
+    }
+
+    void close() {
+        closed = true;
+    }
+}
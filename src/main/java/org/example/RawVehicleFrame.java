@@ -0,0 +1,70 @@
+// ===================== RawVehicleFrame.java =====================
+package org.example;
+
+/**
+ * Raw data pulled from TraCI for one collection point (struct-of-arrays, row i = one vehicle).
+ *
+ * Filled by the TraCI stage, read by the compute stage; everything else (metrics, filter,
+ * render snapshot) is derived from it without talking to libtraci. Recycled by RawFrameRing.
+ */
+final class RawVehicleFrame {
+
+    // ===================== Per-frame values =====================
+    double simTime;
+    int arrived;              // vehicles that left the network since the previous frame (counted per SUMO step)
+    boolean metricsDue;       // sample a MetricRow from this frame
+    boolean endOfStream;      // last frame: the compute stage shuts down after it
+
+    double requestedRatio, achievedRatio;
+    boolean lagging;
+    boolean ruleBasedTls;
+    int waitingToEnter;       // injected vehicles not yet in the network (engine queue + SUMO insertion backlog)
+    String tlsStatus;         // read on the TraCI thread (the status string needs TraCI calls)
+
+    // ===================== Per-vehicle rows =====================
+    int count;
+    int[] handle;
+    double[] x, y, speed, waitSec;
+    byte[] type;
+
+    RawVehicleFrame(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        handle = new int[cap];
+        x = new double[cap];
+        y = new double[cap];
+        speed = new double[cap];
+        waitSec = new double[cap];
+        type = new byte[cap];
+    }
+
+    void clear() {
+        count = 0;
+        arrived = 0;
+        metricsDue = false;
+        endOfStream = false;
+        lagging = false;
+        tlsStatus = null;
+    }
+
+    // Append one vehicle row (grows arrays only if needed).
+    void add(int h, double px, double py, double sp, double wait, byte typeCode) {
+        if (count == handle.length) grow();
+        int i = count++;
+        handle[i] = h;
+        x[i] = px;
+        y[i] = py;
+        speed[i] = sp;
+        waitSec[i] = wait;
+        type[i] = typeCode;
+    }
+
+    private void grow() {
+        int cap = handle.length * 2;
+        handle = java.util.Arrays.copyOf(handle, cap);
+        x = java.util.Arrays.copyOf(x, cap);
+        y = java.util.Arrays.copyOf(y, cap);
+        speed = java.util.Arrays.copyOf(speed, cap);
+        waitSec = java.util.Arrays.copyOf(waitSec, cap);
+        type = java.util.Arrays.copyOf(type, cap);
+    }
+}
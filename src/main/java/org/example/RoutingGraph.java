@@ -0,0 +1,375 @@
+// ===================== RoutingGraph.java =====================
+package org.example;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * In-process road graph built from the .net.xml (no TraCI): edges are nodes, connections are arcs.
+ *
+ * Everything is kept in primitive arrays (CSR adjacency + the EdgeTable attributes) so a route query
+ * is an A* over int indices. Edge cost is the free-flow travel time length / min(lane speed, vType max speed),
+ * which is what SUMO's findRoute uses on an empty network. VehicleInjection validates the answers against
+ * SUMO once after startup and falls back to TraCI if they disagree.
+ *
+ * Immutable after load; route() keeps its scratch arrays per thread.
+ */
+final class RoutingGraph {
+
+    // Lane lengths are shorter than the junction-to-junction distance (junction areas) => scale the
+    // straight-line bound down so A* stays admissible.
+    private static final double HEURISTIC_SCALE = 0.8;
+
+    // Diverse alternatives (penalty method): edges of every found path get their cost multiplied by
+    // PENALTY * (1 + jitter), accepted paths may share at most MAX_OVERLAP of their length with each other
+    // and be at most MAX_STRETCH times slower than the fastest route.
+    private static final double PENALTY = 1.6;
+    private static final double PENALTY_JITTER = 0.5;
+    private static final double MAX_OVERLAP = 0.75;
+    private static final double MAX_STRETCH = 3.0;
+    private static final int SEARCHES_PER_PATH = 4;
+
+    // ===================== Edge data (views of the EdgeTable arrays, index = edge) =====================
+    private final EdgeTable table;
+    private final String[] edgeIds;
+    private final double[] length;     // lane 0 length (m)
+    private final double[] speed;      // max lane speed (m/s)
+    private final byte[] classMask;    // union over lanes
+    private final double[] endX, endY; // "to" junction (NaN if unknown)
+    private final double[] startX, startY;
+
+    // ===================== Arcs (CSR) =====================
+    private final int[] arcStart;      // arcs of e: arcStart[e] .. arcStart[e + 1] - 1
+    private final int[] arcTo;
+    private final byte[] arcMask;      // classes allowed on at least one lane-to-lane connection
+
+    private final double maxSpeed;
+
+    private final ThreadLocal<Search> search;
+
+    private RoutingGraph(EdgeTable table, int[] arcStart, int[] arcTo, byte[] arcMask) {
+        this.table = table;
+        this.edgeIds = table.ids;
+        this.length = table.length;
+        this.speed = table.speed;
+        this.classMask = table.classMask;
+        this.startX = table.fromX;
+        this.startY = table.fromY;
+        this.endX = table.toX;
+        this.endY = table.toY;
+        this.arcStart = arcStart;
+        this.arcTo = arcTo;
+        this.arcMask = arcMask;
+
+        double vmax = 1.0;
+        for (double v : speed) vmax = Math.max(vmax, v);
+        this.maxSpeed = vmax;
+
+        this.search = ThreadLocal.withInitial(() -> new Search(edgeIds.length));
+    }
+
+    // ===================== Loading =====================
+    /** One NetXmlReader pass (no shapes) + fromNet; null if the file cannot be read. */
+    static RoutingGraph load(File netFile) {
+        if (netFile == null || !netFile.isFile()) return null;
+        try {
+            return fromNet(NetXmlReader.read(netFile, false));
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Routing graph load failed: " + netFile.getPath(), ex);
+            return null;
+        }
+    }
+
+    // Graph over the EdgeTable + connections of an already parsed network.
+    static RoutingGraph fromNet(NetXmlReader.NetData net) {
+        long t0 = System.nanoTime();
+        EdgeTable table = net.edges;
+        int n = table.size();
+
+        // Connections => arcs (deduplicated, class mask = union over lane pairs)
+        Map<Long, Byte> arcs = new HashMap<>();
+        for (int i = 0; i < net.connCount; i++) {
+            int a = net.connFrom[i], b = net.connTo[i];
+            byte m = (byte) (laneMaskOr(table, a, net.connFromLane[i]) & laneMaskOr(table, b, net.connToLane[i]));
+            if (m == 0) continue;
+            arcs.merge(((long) a << 32) | b, m, (x, y) -> (byte) (x | y));
+        }
+
+        int[] arcStart = new int[n + 1];
+        for (long key : arcs.keySet()) arcStart[(int) (key >>> 32) + 1]++;
+        for (int i = 0; i < n; i++) arcStart[i + 1] += arcStart[i];
+        int[] fill = Arrays.copyOf(arcStart, n);
+        int[] arcTo = new int[arcs.size()];
+        byte[] arcMask = new byte[arcs.size()];
+        for (Map.Entry<Long, Byte> en : arcs.entrySet()) {
+            int a = (int) (en.getKey() >>> 32);
+            int k = fill[a]++;
+            arcTo[k] = (int) (long) en.getKey();
+            arcMask[k] = en.getValue();
+        }
+
+        RoutingGraph g = new RoutingGraph(table, arcStart, arcTo, arcMask);
+        Logging.LOG.info(String.format(Locale.US, "Routing graph: %d edges, %d arcs in %.0f ms",
+                n, arcTo.length, (System.nanoTime() - t0) / 1e6));
+        return g;
+    }
+
+    // Unknown lane index => all classes (the connection itself is still valid)
+    private static byte laneMaskOr(EdgeTable t, int e, int laneIndex) {
+        return laneIndex >= 0 && laneIndex < t.laneCount(e) ? t.laneMask(e, laneIndex) : EdgeTable.CLASS_ALL;
+    }
+
+    EdgeTable edges() { return table; }
+
+    // Max speeds of our vTypes (see SumoLauncher.writeVTypesOnlyRoutesFile)
+    private static double vTypeMaxSpeed(String typeId) {
+        if (Main.TYPE_TRUCK.equals(typeId)) return 25.0;
+        if (Main.TYPE_BUS.equals(typeId)) return 22.0;
+        return 33.0;
+    }
+
+    // Everything that changes route answers (part of the variant cache key).
+    static String parameterTag() {
+        return "heur=" + HEURISTIC_SCALE + " pen=" + PENALTY + "/" + PENALTY_JITTER + " overlap=" + MAX_OVERLAP
+                + " stretch=" + MAX_STRETCH + " searches=" + SEARCHES_PER_PATH
+                + " vmax=" + vTypeMaxSpeed(Main.TYPE_CAR) + "/" + vTypeMaxSpeed(Main.TYPE_TRUCK) + "/" + vTypeMaxSpeed(Main.TYPE_BUS);
+    }
+
+    // ===================== Queries =====================
+    int edgeCount() { return edgeIds.length; }
+
+    boolean contains(String edgeId) { return table.contains(edgeId); }
+
+    /** Travel time of an edge list for the vType; NaN if an edge is unknown or two edges are not connected. */
+    double routeCost(List<String> edges, String typeId) {
+        if (edges == null || edges.isEmpty()) return Double.NaN;
+        byte bit = EdgeTable.classBitForType(typeId);
+        double vcap = vTypeMaxSpeed(typeId);
+        double sum = 0.0;
+        int prev = -1;
+        for (String id : edges) {
+            int e = table.indexOf(id);
+            if (e < 0) return Double.NaN;
+            if (prev >= 0 && !hasArc(prev, e, bit)) return Double.NaN;
+            sum += cost(e, vcap);
+            prev = e;
+        }
+        return sum;
+    }
+
+    /** Fastest route (A*, free-flow travel time) for the vType; null if unreachable or unknown. */
+    List<String> route(String fromEdge, String toEdge, String typeId) {
+        int s = table.indexOf(fromEdge), t = table.indexOf(toEdge);
+        if (s < 0 || t < 0) return null;
+        int[] p = search(s, t, EdgeTable.classBitForType(typeId), vTypeMaxSpeed(typeId), null);
+        return p == null ? null : names(p);
+    }
+
+    /**
+     * Up to k loopless, mutually diverse routes (penalty method), fastest first; empty if unreachable.
+     * Bounded by SEARCHES_PER_PATH * k A* runs and deterministic for a given seed.
+     */
+    List<List<String>> diverseRoutes(String fromEdge, String toEdge, String typeId, int k, long seed) {
+        List<List<String>> out = new ArrayList<>();
+        int s = table.indexOf(fromEdge), t = table.indexOf(toEdge);
+        if (s < 0 || t < 0 || k <= 0) return out;
+
+        byte bit = EdgeTable.classBitForType(typeId);
+        double vcap = vTypeMaxSpeed(typeId);
+        int[] fastest = search(s, t, bit, vcap, null);
+        if (fastest == null) return out;
+
+        double maxCost = pathCost(fastest, vcap) * MAX_STRETCH;
+        List<int[]> accepted = new ArrayList<>();
+        accepted.add(fastest);
+
+        Random rng = new Random(seed);
+        double[] penalty = new double[edgeIds.length];
+        Arrays.fill(penalty, 1.0);
+        addPenalty(penalty, fastest, rng);
+
+        for (int n = 0; n < SEARCHES_PER_PATH * k && accepted.size() < k; n++) {
+            int[] p = search(s, t, bit, vcap, penalty);
+            if (p == null) break;
+            addPenalty(penalty, p, rng);
+            if (pathCost(p, vcap) > maxCost) continue;
+
+            boolean diverse = true;
+            for (int[] a : accepted) {
+                if (overlap(p, a) > MAX_OVERLAP) { diverse = false; break; }
+            }
+            if (diverse) accepted.add(p);
+        }
+
+        for (int[] p : accepted) out.add(names(p));
+        return out;
+    }
+
+    // A* from s to t; penalty (nullable) multiplies edge costs (all >= 1 keeps the heuristic admissible).
+    private int[] search(int s, int t, byte bit, double vcap, double[] penalty) {
+        if ((classMask[s] & bit) == 0 || (classMask[t] & bit) == 0) return null;
+        if (s == t) return new int[]{s};
+
+        double hSpeed = Math.min(maxSpeed, vcap);
+        Search q = search.get();
+        q.begin();
+        q.relax(s, cost(s, vcap), -1, heuristic(s, t, hSpeed));
+
+        while (!q.heapEmpty()) {
+            int e = q.popMin();
+            if (e == t) return q.path(t);
+
+            double ge = q.g[e];
+            for (int k = arcStart[e]; k < arcStart[e + 1]; k++) {
+                if ((arcMask[k] & bit) == 0) continue;
+                int b = arcTo[k];
+                if ((classMask[b] & bit) == 0 || q.isClosed(b)) continue;
+                double cb = cost(b, vcap);
+                double gb = ge + (penalty == null ? cb : cb * penalty[b]);
+                if (!q.seen(b) || gb < q.g[b]) q.relax(b, gb, e, heuristic(b, t, hSpeed));
+            }
+        }
+        return null;
+    }
+
+    private void addPenalty(double[] penalty, int[] path, Random rng) {
+        // Endpoints are shared by every alternative; penalizing them only inflates costs.
+        for (int i = 1; i + 1 < path.length; i++) penalty[path[i]] *= PENALTY * (1.0 + PENALTY_JITTER * rng.nextDouble());
+    }
+
+    private double pathCost(int[] path, double vcap) {
+        double sum = 0.0;
+        for (int e : path) sum += cost(e, vcap);
+        return sum;
+    }
+
+    // Share of a's length that is also on b.
+    private double overlap(int[] a, int[] b) {
+        HashSet<Integer> inB = new HashSet<>(b.length * 2);
+        for (int e : b) inB.add(e);
+        double shared = 0.0, total = 0.0;
+        for (int e : a) {
+            total += length[e];
+            if (inB.contains(e)) shared += length[e];
+        }
+        return total > 0 ? shared / total : 1.0;
+    }
+
+    private List<String> names(int[] path) {
+        ArrayList<String> out = new ArrayList<>(path.length);
+        for (int e : path) out.add(edgeIds[e]);
+        return out;
+    }
+
+    private double cost(int e, double vcap) {
+        return length[e] / Math.min(speed[e], vcap);
+    }
+
+    private double heuristic(int e, int target, double hSpeed) {
+        if (e == target) return 0.0;
+        double dx = startX[target] - endX[e], dy = startY[target] - endY[e];
+        double d = Math.sqrt(dx * dx + dy * dy);
+        return Double.isNaN(d) ? 0.0 : HEURISTIC_SCALE * d / hSpeed;
+    }
+
+    private boolean hasArc(int a, int b, byte bit) {
+        for (int k = arcStart[a]; k < arcStart[a + 1]; k++) {
+            if (arcTo[k] == b && (arcMask[k] & bit) != 0) return true;
+        }
+        return false;
+    }
+
+    // ===================== Per-thread search state =====================
+    // Epoch stamps make a reset O(1); binary heap with lazy deletion over (f, edge).
+    private static final class Search {
+        final double[] g;
+        final int[] prev;
+        final int[] seenEpoch, closedEpoch;
+        int epoch = 0;
+
+        int[] heapEdge = new int[64];
+        double[] heapKey = new double[64];
+        int heapSize = 0;
+
+        Search(int n) {
+            g = new double[n];
+            prev = new int[n];
+            seenEpoch = new int[n];
+            closedEpoch = new int[n];
+        }
+
+        void begin() {
+            epoch++;
+            heapSize = 0;
+        }
+
+        boolean seen(int e) { return seenEpoch[e] == epoch; }
+        boolean isClosed(int e) { return closedEpoch[e] == epoch; }
+        boolean heapEmpty() { return heapSize == 0; }
+
+        void relax(int e, double ge, int from, double h) {
+            g[e] = ge;
+            prev[e] = from;
+            seenEpoch[e] = epoch;
+            push(e, ge + h);
+        }
+
+        // Pops the next unsettled edge (stale heap entries are skipped); -1 if none.
+        int popMin() {
+            while (heapSize > 0) {
+                int e = heapEdge[0];
+                heapSize--;
+                if (heapSize > 0) {
+                    heapEdge[0] = heapEdge[heapSize];
+                    heapKey[0] = heapKey[heapSize];
+                    siftDown(0);
+                }
+                if (closedEpoch[e] == epoch) continue;
+                closedEpoch[e] = epoch;
+                return e;
+            }
+            return -1;
+        }
+
+        int[] path(int t) {
+            int n = 0;
+            for (int e = t; e >= 0; e = prev[e]) n++;
+            int[] out = new int[n];
+            for (int e = t; e >= 0; e = prev[e]) out[--n] = e;
+            return out;
+        }
+
+        private void push(int e, double key) {
+            if (heapSize == heapEdge.length) {
+                heapEdge = Arrays.copyOf(heapEdge, heapSize * 2);
+                heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (heapKey[p] <= key) break;
+                heapEdge[i] = heapEdge[p];
+                heapKey[i] = heapKey[p];
+                i = p;
+            }
+            heapEdge[i] = e;
+            heapKey[i] = key;
+        }
+
+        private void siftDown(int i) {
+            int e = heapEdge[i];
+            double key = heapKey[i];
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= heapSize) break;
+                if (c + 1 < heapSize && heapKey[c + 1] < heapKey[c]) c++;
+                if (heapKey[c] >= key) break;
+                heapEdge[i] = heapEdge[c];
+                heapKey[i] = heapKey[c];
+                i = c;
+            }
+            heapEdge[i] = e;
+            heapKey[i] = key;
+        }
+    }
+}
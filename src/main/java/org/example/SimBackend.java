@@ -0,0 +1,73 @@
+// ===================== SimBackend.java =====================
+package org.example;
+
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+/**
+ * The simulation calls the headless loop and VehicleCollector step through.
+ *
+ * TraciBackend forwards them to libtraci (SUMO). Tests plug in a scripted stand-in, so the loop and
+ * the MetricRow output can be checked without a SUMO installation or native libraries.
+ */
+interface SimBackend {
+
+    double deltaT();
+
+    double currentTime();
+
+    // Advance until the simulation time reaches targetTime (several SUMO steps may run internally).
+    void step(double targetTime);
+
+    // Vehicles in the network plus those still waiting to be inserted.
+    int minExpectedNumber();
+
+    // Vehicles that left the network during the last SUMO step.
+    int arrivedNumber();
+
+    /**
+     * Advance to targetTime one SUMO step at a time and return how many vehicles arrived on the way.
+     * The arrived number/list only covers the last step, so one multi-step call would miss vehicles that
+     * arrive earlier in the chunk. afterEachStep (may be null) gets the sim time after every step, e.g. for
+     * TLS control that has to switch on its own timing rather than on chunk boundaries.
+     */
+    default int stepCountingArrivals(double targetTime, DoubleConsumer afterEachStep) {
+        double from = currentTime(), dt = deltaT();
+        long steps = Math.max(1, (long) Math.ceil((targetTime - from) / dt - 1e-9));
+        int arrived = 0;
+        for (long k = 1; k <= steps; k++) {
+            step(k == steps ? targetTime : from + k * dt);
+            arrived += arrivedNumber();
+            if (afterEachStep != null) afterEachStep.accept(currentTime());
+        }
+        return arrived;
+    }
+
+    // ===================== Vehicle lists (last step only) =====================
+    List<String> departedIds();
+
+    List<String> arrivedIds(); // null => not available in this SUMO version
+
+    List<String> vehicleIds();
+
+    // ===================== Per-vehicle reads (polling path) =====================
+    void position(String vehId, double[] xy);
+
+    double speed(String vehId);
+
+    double waitingTimeSec(String vehId); // NaN => not available
+
+    // ===================== Subscriptions (VehicleCollector's bulk path) =====================
+    /** One subscribed vehicle: x/y NaN => no position, waitSec NaN => not available, vTypeId may be null. */
+    interface SubscribedVehicles {
+        void accept(String vehId, double x, double y, double speed, double waitSec, String vTypeId);
+    }
+
+    default boolean supportsSubscriptions() { return false; }
+
+    // Subscribe a vehicle to position, speed, waiting time and type; false if it already left the network.
+    default boolean subscribe(String vehId) { throw new UnsupportedOperationException("no subscriptions"); }
+
+    // Results of every subscribed vehicle for the last step, in one round-trip (arrived vehicles drop out).
+    default void readSubscribed(SubscribedVehicles out) { throw new UnsupportedOperationException("no subscriptions"); }
+}
@@ -0,0 +1,68 @@
+// ===================== SimCadence.java =====================
+package org.example;
+
+import java.awt.*;
+
+/**
+ * The three loop cadences, decoupled:
+ * - stepping : how much sim time one loop iteration advances (several SUMO steps at high ratios)
+ * - render   : how often vehicles are collected for the map (wall clock, display refresh rate)
+ * - metrics  : how often a MetricRow is sampled (sim clock)
+ *
+ * Collection then costs once per rendered frame / metric sample instead of once per SUMO step.
+ */
+final class SimCadence {
+
+    static final double DEFAULT_RENDER_HZ = 60.0;
+
+    // Upper bound for one chunk of sim time between two loop iterations; bounds how late UI commands,
+    // injections and pacing react at "max" speed (TLS control and arrivals run per SUMO step inside a chunk)
+    static final double DEFAULT_MAX_CHUNK_SIM_SEC = 5.0;
+
+    final double renderHz;
+    final double maxChunkSimSec;
+    final double metricsEverySimSec;
+
+    SimCadence(double renderHz, double maxChunkSimSec, double metricsEverySimSec) {
+        this.renderHz = renderHz > 0 ? renderHz : DEFAULT_RENDER_HZ;
+        this.maxChunkSimSec = maxChunkSimSec;
+        this.metricsEverySimSec = metricsEverySimSec;
+    }
+
+    // Render cadence follows the refresh rate of the default screen (60 Hz if unknown or headless).
+    static SimCadence forDisplay(double metricsEverySimSec) {
+        double hz = DEFAULT_RENDER_HZ;
+        try {
+            if (!GraphicsEnvironment.isHeadless()) {
+                int r = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+                if (r != DisplayMode.REFRESH_RATE_UNKNOWN && r > 0) hz = r;
+            }
+        } catch (Exception ex) {
+            Logging.LOG.fine("Display refresh rate unavailable, using " + DEFAULT_RENDER_HZ + " Hz");
+        }
+        return new SimCadence(hz, DEFAULT_MAX_CHUNK_SIM_SEC, metricsEverySimSec);
+    }
+
+    long renderIntervalNanos() {
+        return (long) (1e9 / renderHz);
+    }
+
+    // Sim time for the next step call: one display frame worth of sim time at the requested ratio,
+    // rounded to whole SUMO steps (at least one, at most maxChunkSimSec).
+    double nextStepTarget(double simTime, double deltaT, double ratio) {
+        double chunk = Double.isInfinite(ratio) ? maxChunkSimSec : ratio / renderHz;
+        chunk = Math.max(deltaT, Math.min(maxChunkSimSec, chunk));
+        long steps = Math.max(1, Math.round(chunk / deltaT));
+        return simTime + steps * deltaT;
+    }
+
+    boolean metricsDue(double simTime, double lastSampleSimTime) {
+        return lastSampleSimTime < 0 || (simTime - lastSampleSimTime) >= metricsEverySimSec;
+    }
+
+    @Override public String toString() {
+        return String.format(java.util.Locale.US, "render=%.0f Hz, maxChunk=%.1f s, metrics every %.2f s",
+                renderHz, maxChunkSimSec, metricsEverySimSec);
+    }
+}
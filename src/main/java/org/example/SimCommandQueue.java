@@ -0,0 +1,90 @@
+// ===================== SimCommandQueue.java =====================
+package org.example;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TraCI writes requested by the UI (injection, TLS force/reset, ...) executed on the simulation thread.
+ *
+ * libtraci is one non-thread-safe connection: calling it from the EDT while the simulation thread is inside
+ * Simulation.step() is a race, and long calls freeze the window. UI code therefore only submits commands
+ * (lock-free, never blocks); the simulation thread drains them between steps in bounded batches and
+ * completes the returned futures.
+ */
+final class SimCommandQueue {
+
+    // Per drain: at most this many commands / this much wall time, the rest waits for the next step.
+    private static final int MAX_COMMANDS_PER_DRAIN = 64;
+    private static final long DRAIN_BUDGET_NANOS = 5_000_000L;
+
+    private static final class Entry<T> {
+        final String name;
+        final Callable<T> action;
+        final CompletableFuture<T> done = new CompletableFuture<>();
+
+        Entry(String name, Callable<T> action) {
+            this.name = name;
+            this.action = action;
+        }
+
+        void execute() {
+            try {
+                done.complete(action.call());
+            } catch (Throwable t) {
+                Logging.LOG.log(java.util.logging.Level.WARNING, "Sim command failed: " + name, t);
+                done.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Entry<?>> queue = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed = false;
+
+    // ===================== Producer side (any thread, usually the EDT) =====================
+    <T> CompletableFuture<T> submit(String name, Callable<T> action) {
+        Entry<T> e = new Entry<>(name, action);
+        if (closed) {
+            e.done.completeExceptionally(new CancellationException("Simulation stopped"));
+            return e.done;
+        }
+        queue.add(e);
+        // close() may have drained the queue concurrently => make sure nothing is left hanging.
+        if (closed && queue.remove(e)) e.done.completeExceptionally(new CancellationException("Simulation stopped"));
+        return e.done;
+    }
+
+    CompletableFuture<Void> run(String name, Runnable action) {
+        return submit(name, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    boolean isEmpty() { return queue.isEmpty(); }
+
+    // ===================== Consumer side (simulation thread) =====================
+    // Execute queued commands in FIFO order (bounded batch); returns how many ran.
+    int drain() {
+        long deadline = System.nanoTime() + DRAIN_BUDGET_NANOS;
+        int n = 0;
+        Entry<?> e;
+        while (n < MAX_COMMANDS_PER_DRAIN && (e = queue.poll()) != null) {
+            e.execute();
+            n++;
+            if (System.nanoTime() - deadline > 0) break;
+        }
+        return n;
+    }
+
+    // Simulation thread is going away: reject new commands and cancel everything still queued.
+    void close() {
+        closed = true;
+        Entry<?> e;
+        while ((e = queue.poll()) != null) {
+            e.done.completeExceptionally(new CancellationException("Simulation stopped"));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+// ===================== StepAggregator.java =====================
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass step metrics.
+ * Walks the collected vehicle set ONCE per step and produces all per-step metrics together
+ * (active/stopped, mean speed, mean wait, filter result + visible counts per type).
+ *
+ * Extra per-vehicle work (e.g. building the render snapshot) plugs in as an Accumulator,
+ * so a new metric never needs another loop over the vehicles.
+ */
+final class StepAggregator {
+
+    // Speed below this (m/s) counts as "stopped" for the congestion index.
+    static final double STOPPED_SPEED_MPS = 0.1;
+
+    /** Hook for additional per-vehicle computations inside the same pass. */
+    interface Accumulator {
+        // Called before the first vehicle of a step.
+        void begin();
+
+        // Called once per vehicle (row i of the frame); visible = result of the current filter for this vehicle.
+        void accept(RawVehicleFrame f, int i, boolean visible);
+
+        // Called after the last vehicle of a step.
+        default void end() {}
+    }
+
+    private final MapVisualisation.Filter filter;
+    private final List<Accumulator> accumulators = new ArrayList<>();
+
+    // ===================== Results of the last aggregate() call =====================
+    int active;
+    int stopped;
+    double congestion;      // stopped / active
+    double meanSpeedMps;
+    double avgWaitSec;      // -1 => waiting time not available from this SUMO version
+
+    int visible;
+    int visibleCars, visibleTrucks, visibleBuses;
+
+    StepAggregator(MapVisualisation.Filter filter) {
+        this.filter = filter;
+    }
+
+    void addAccumulator(Accumulator acc) {
+        if (acc != null) accumulators.add(acc);
+    }
+
+    void aggregate(RawVehicleFrame f) {
+        int n = f.count;
+        int stoppedCnt = 0;
+        double speedSum = 0.0;
+        double waitSum = 0.0;
+        int waitCnt = 0;
+        int vis = 0, visCar = 0, visTruck = 0, visBus = 0;
+
+        for (int a = 0; a < accumulators.size(); a++) accumulators.get(a).begin();
+
+        for (int i = 0; i < n; i++) {
+            double sp = f.speed[i];
+
+            speedSum += sp;
+            if (sp < STOPPED_SPEED_MPS) stoppedCnt++;
+
+            double w = f.waitSec[i];
+            if (!Double.isNaN(w) && !Double.isInfinite(w)) {
+                waitSum += w;
+                waitCnt++;
+            }
+
+            // Filter check: should this vehicle be "visible/countable" under current filter settings?
+            byte type = f.type[i];
+            boolean allowed = filter == null || filter.allows(VehicleSnapshot.TYPE_NAMES[type], sp);
+            if (allowed) {
+                vis++;
+                if (type == VehicleSnapshot.TYPE_CAR) visCar++;
+                else if (type == VehicleSnapshot.TYPE_TRUCK) visTruck++;
+                else if (type == VehicleSnapshot.TYPE_BUS) visBus++;
+            }
+
+            for (int a = 0; a < accumulators.size(); a++) accumulators.get(a).accept(f, i, allowed);
+        }
+
+        for (int a = 0; a < accumulators.size(); a++) accumulators.get(a).end();
+
+        active = n;
+        stopped = stoppedCnt;
+        congestion = n > 0 ? (double) stoppedCnt / n : 0.0;
+        meanSpeedMps = n > 0 ? speedSum / n : 0.0;
+        if (n == 0) avgWaitSec = 0.0;
+        else avgWaitSec = (waitCnt == 0) ? -1.0 : waitSum / waitCnt;
+
+        visible = vis;
+        visibleCars = visCar;
+        visibleTrucks = visTruck;
+        visibleBuses = visBus;
+    }
+}
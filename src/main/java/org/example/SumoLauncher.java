@@ -0,0 +1,92 @@
+// ===================== SumoLauncher.java =====================
+package org.example;
+
+import org.eclipse.sumo.libtraci.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Builds SUMO command lines and opens the libtraci connection.
+// Shared by the interactive GUI run (sumo-gui) and the headless batch run (plain sumo).
+final class SumoLauncher {
+
+    private SumoLauncher() {}
+
+    // Temp route file with our vTypes only (no trips/vehicles): needed for manual injection.
+    static String writeVTypesOnlyRoutesFile() throws IOException {
+        File tmp = File.createTempFile("manual_only_", ".rou.xml");
+        tmp.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"))) {
+            pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            pw.println("<routes xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"");
+            pw.println("        xsi:noNamespaceSchemaLocation=\"http://sumo.dlr.de/xsd/routes_file.xsd\">");
+            pw.println("  <!-- Manual injection only (no trips/vehicles here) -->");
+            pw.println("  <vType id=\"car\"   vClass=\"passenger\" length=\"5.0\"  accel=\"2.6\" decel=\"4.5\" maxSpeed=\"33\"/>");
+            pw.println("  <vType id=\"truck\" vClass=\"truck\"     length=\"8.0\"  accel=\"1.3\" decel=\"4.0\" maxSpeed=\"25\"/>");
+            pw.println("  <vType id=\"bus\"   vClass=\"bus\"       length=\"12.0\" accel=\"1.1\" decel=\"4.0\" maxSpeed=\"22\"/>");
+            pw.println("</routes>");
+        }
+        Logging.LOG.info("Temp manual routes file: " + tmp.getAbsolutePath());
+        return tmp.getAbsolutePath();
+    }
+
+    // ===================== Command lines =====================
+    // Plain lists (the native StringVector is only built in start()), so they can be built and checked anywhere.
+
+    // GUI run: the cfg's route files are replaced by the vTypes-only file (vehicles come from manual injection).
+    static List<String> guiCommand(String sumocfgPath, String vTypesRouteFile) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("sumo-gui");
+        cmd.add("-c"); cmd.add(sumocfgPath);
+        cmd.add("--route-files"); cmd.add(vTypesRouteFile);
+        cmd.add("--start");
+        cmd.add("--quit-on-end");
+        return cmd;
+    }
+
+    // Headless run: keep the cfg's own demand, add our vTypes on top; seed < 0 => SUMO default seed.
+    static List<String> headlessCommand(String sumocfgPath, String vTypesRouteFile, long seed) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("sumo");
+        cmd.add("-c"); cmd.add(sumocfgPath);
+        cmd.add("--additional-files"); cmd.add(mergedAdditionalFiles(sumocfgPath, vTypesRouteFile));
+        if (seed >= 0) {
+            cmd.add("--seed"); cmd.add(Long.toString(seed));
+        }
+        cmd.add("--no-step-log");
+        cmd.add("--quit-on-end");
+        return cmd;
+    }
+
+    // A command-line --additional-files replaces the cfg's list, so pass ours first, then the cfg's own files
+    // (vTypes are loaded before anything that may reference them). Relative cfg entries are resolved against
+    // the cfg directory, since on the command line they would be relative to the working directory.
+    static String mergedAdditionalFiles(String sumocfgPath, String vTypesRouteFile) {
+        StringBuilder sb = new StringBuilder(vTypesRouteFile);
+        String own = NetXmlReader.readConfigValue(new File(sumocfgPath), "additional-files");
+        if (own == null) return sb.toString();
+
+        File cfgDir = new File(sumocfgPath).getAbsoluteFile().getParentFile();
+        for (String p : own.split("[,\\s]+")) {
+            if (p.isEmpty()) continue;
+            File f = new File(p);
+            if (!f.isAbsolute() && cfgDir != null) f = new File(cfgDir, p);
+            sb.append(',').append(f.getPath());
+        }
+        return sb.toString();
+    }
+
+    // Load native libraries and connect (libtraci start is a static call).
+    static void start(List<String> cmd) {
+        Simulation.preloadLibraries();
+
+        StringVector args = new StringVector();
+        for (String a : cmd) args.add(a);
+        Logging.LOG.info("Starting SUMO: " + cmd);
+        Simulation.start(args);
+
+        Logging.LOG.info("SUMO started.");
+        TraciCapabilities.logProbe();
+    }
+}
@@ -0,0 +1,61 @@
+// ===================== ThroughputWindow.java =====================
+package org.example;
+
+/**
+ * Sliding-window event counter over simulation time with 1 s resolution.
+ *
+ * Keeps a fixed ring of cumulative counts (one slot per simulated second), so recording events and
+ * asking "how many in the last W seconds" are both O(1) for any W up to the ring length,
+ * and memory stays constant no matter how many vehicles arrive.
+ *
+ * Not thread-safe, single owner: SUMO-Compute-Thread in the GUI pipeline (LiveConnectionSumo stage 2,
+ * fed with the arrival counts carried in RawVehicleFrame), the runner thread in headless mode.
+ * The TraCI/simulation thread must not call it.
+ */
+final class ThroughputWindow {
+
+    private final long[] cumulativeAt; // total events up to the end of second s, at index s % length
+    private long total = 0;
+    private long currentSec = -1;     // last second written (-1 => nothing recorded yet)
+    private long firstSec = -1;
+
+    ThroughputWindow(double maxWindowSec) {
+        this.cumulativeAt = new long[(int) Math.ceil(Math.max(1.0, maxWindowSec)) + 1];
+    }
+
+    // Record n events that happened at simTime (seconds). Time never moves backwards here.
+    void record(double simTime, int n) {
+        long sec = Math.max((long) Math.floor(simTime), currentSec);
+        if (firstSec < 0) firstSec = sec;
+
+        // Seconds without events carry the previous total forward (bounded by the ring length).
+        long from = Math.max(currentSec + 1, sec - cumulativeAt.length + 1);
+        for (long s = from; s < sec; s++) cumulativeAt[slot(s)] = total;
+
+        total += n;
+        cumulativeAt[slot(sec)] = total;
+        currentSec = sec;
+    }
+
+    // Events in the last windowSec seconds (clamped to the ring length).
+    long countInLast(double windowSec) {
+        if (currentSec < 0) return 0;
+        long w = Math.min((long) Math.ceil(windowSec), cumulativeAt.length - 1);
+        long baseSec = currentSec - w;
+        long before = (baseSec < firstSec) ? 0 : cumulativeAt[slot(baseSec)];
+        return total - before;
+    }
+
+    // Events per hour over the last windowSec seconds.
+    double ratePerHour(double windowSec) {
+        double windowHours = windowSec / 3600.0;
+        if (windowHours <= 1e-9) return 0.0;
+        return countInLast(windowSec) / windowHours;
+    }
+
+    long total() { return total; }
+
+    private int slot(long sec) {
+        return (int) (sec % cumulativeAt.length);
+    }
+}
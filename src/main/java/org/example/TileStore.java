@@ -0,0 +1,290 @@
+// ===================== TileStore.java =====================
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lane geometry split into square world tiles, loaded on demand for the viewport and evicted LRU under a
+ * heap budget, so the viewer does not need every RoadGeom of a city-scale network in memory.
+ *
+ * A lane belongs to the tile of its bounding-box center; each tile keeps the union box of its lanes. A
+ * static grid (cell -> tiles whose box overlaps it) limits a viewport query to the tiles under it, and
+ * within those only lanes whose own box intersects the viewport are returned. Backing store is the memory-mapped NetCache (tile-ordered geom
+ * records + coordinates, copied into the heap per tile on a loader thread) or, when no cache could be
+ * written, the parsed lanes themselves.
+ *
+ * Threading: visible() on the EDT, loads on the "Map-Tile-Loader" thread; state guarded by `this`.
+ */
+final class TileStore {
+
+    private static final int LANES_PER_TILE = 2000;
+    private static final double MIN_TILE_SIZE = 250.0;
+    // Heap estimate per loaded lane besides its coordinates and paths (RoadGeom + path array + array slot)
+    private static final int GEOM_OVERHEAD_BYTES = 112;
+
+    // Heap for loaded tiles: a quarter of -Xmx, at most 256 MB
+    static long defaultBudgetBytes() {
+        return Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Map-Tile-Loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // ===================== Index (shared with NetCache) =====================
+    static final class Index {
+        final double originX, originY, tileSize;
+        final int cols, rows;
+        final int count;                 // non-empty tiles
+        final int[] geomStart, geomCount; // range in the tile-ordered lane list
+        final float[] box;               // minX, minY, maxX, maxY per tile
+        int[] coordStart, coordCount;    // mapped backing: the tile's floats are contiguous
+
+        Index(double originX, double originY, double tileSize, int cols, int rows,
+              int count, int[] geomStart, int[] geomCount, float[] box) {
+            this.originX = originX;
+            this.originY = originY;
+            this.tileSize = tileSize;
+            this.cols = cols;
+            this.rows = rows;
+            this.count = count;
+            this.geomStart = geomStart;
+            this.geomCount = geomCount;
+            this.box = box;
+        }
+    }
+
+    /** Tile grid for the lanes; `order` receives the lane indices sorted by tile. */
+    static Index plan(List<MapVisualisation.RoadGeom> lanes, int[] order) {
+        int n = lanes.size();
+        float[] laneBox = new float[n * 4];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            MapVisualisation.RoadGeom rg = lanes.get(i);
+            laneBox[i * 4] = rg.minX; laneBox[i * 4 + 1] = rg.minY; laneBox[i * 4 + 2] = rg.maxX; laneBox[i * 4 + 3] = rg.maxY;
+            minX = Math.min(minX, rg.minX); minY = Math.min(minY, rg.minY);
+            maxX = Math.max(maxX, rg.maxX); maxY = Math.max(maxY, rg.maxY);
+        }
+        if (n == 0) { minX = minY = 0; maxX = maxY = 1; }
+
+        double w = Math.max(1e-3, maxX - minX), h = Math.max(1e-3, maxY - minY);
+        double tileSize = Math.max(MIN_TILE_SIZE, Math.sqrt(w * h * LANES_PER_TILE / Math.max(1, n)));
+        int cols = Math.max(1, (int) Math.ceil(w / tileSize));
+        int rows = Math.max(1, (int) Math.ceil(h / tileSize));
+
+        // Counting sort by cell (stable: lanes of an edge stay together)
+        int[] cellOf = new int[n];
+        int[] cellCount = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            double cx = (laneBox[i * 4] + laneBox[i * 4 + 2]) * 0.5, cy = (laneBox[i * 4 + 1] + laneBox[i * 4 + 3]) * 0.5;
+            int c = Math.min(cols - 1, Math.max(0, (int) ((cx - minX) / tileSize)));
+            int r = Math.min(rows - 1, Math.max(0, (int) ((cy - minY) / tileSize)));
+            cellOf[i] = r * cols + c;
+            cellCount[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) cellCount[c + 1] += cellCount[c];
+        int[] next = Arrays.copyOf(cellCount, cols * rows);
+        for (int i = 0; i < n; i++) order[next[cellOf[i]]++] = i;
+
+        // Non-empty cells => tiles
+        int count = 0;
+        for (int c = 0; c < cols * rows; c++) if (cellCount[c + 1] > cellCount[c]) count++;
+        int[] geomStart = new int[count], geomCount = new int[count];
+        float[] box = new float[count * 4];
+        int t = 0;
+        for (int c = 0; c < cols * rows; c++) {
+            int from = cellCount[c], to = cellCount[c + 1];
+            if (to == from) continue;
+            geomStart[t] = from;
+            geomCount[t] = to - from;
+            float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+            float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+            for (int j = from; j < to; j++) {
+                int i = order[j];
+                x0 = Math.min(x0, laneBox[i * 4]); y0 = Math.min(y0, laneBox[i * 4 + 1]);
+                x1 = Math.max(x1, laneBox[i * 4 + 2]); y1 = Math.max(y1, laneBox[i * 4 + 3]);
+            }
+            box[t * 4] = x0; box[t * 4 + 1] = y0; box[t * 4 + 2] = x1; box[t * 4 + 3] = y1;
+            t++;
+        }
+        return new Index(minX, minY, tileSize, cols, rows, count, geomStart, geomCount, box);
+    }
+
+    // ===================== Backing stores =====================
+    private interface Loader {
+        MapVisualisation.RoadGeom[] load(int tile);
+    }
+
+    /**
+     * Tiles over NetCache's mapped sections. records: fixed-size geom records in tile order,
+     * coords: all floats (a tile's floats are contiguous, offsets in the records are absolute).
+     */
+    static TileStore mapped(Index index, ByteBuffer records, int recordBytes, FloatBuffer coords, String[] strings, long budgetBytes) {
+        return new TileStore(index, tile -> {
+            int start = index.coordStart[tile];
+            float[] xy = new float[index.coordCount[tile]];
+            coords.get(start, xy, 0, xy.length); // absolute bulk get: no shared position
+            FloatBuffer local = FloatBuffer.wrap(xy);
+
+            MapVisualisation.RoadGeom[] out = new MapVisualisation.RoadGeom[index.geomCount[tile]];
+            for (int j = 0; j < out.length; j++) {
+                int p = (index.geomStart[tile] + j) * recordBytes;
+                out[j] = new MapVisualisation.RoadGeom(strings[records.getInt(p)], records.getInt(p + 4),
+                        records.get(p + 8) != 0, records.getFloat(p + 9), local, records.getInt(p + 13) - start,
+                        records.getInt(p + 17));
+            }
+            return out;
+        }, budgetBytes);
+    }
+
+    /** Fallback without a cache file: all lanes stay in memory, the tiles only drive the viewport query. */
+    static TileStore inMemory(List<MapVisualisation.RoadGeom> lanes) {
+        int[] order = new int[lanes.size()];
+        Index index = plan(lanes, order);
+        MapVisualisation.RoadGeom[] sorted = new MapVisualisation.RoadGeom[order.length];
+        for (int j = 0; j < order.length; j++) sorted[j] = lanes.get(order[j]);
+        return new TileStore(index, tile -> Arrays.copyOfRange(sorted, index.geomStart[tile],
+                index.geomStart[tile] + index.geomCount[tile]), Long.MAX_VALUE);
+    }
+
+    // ===================== Runtime state =====================
+    private static final class Tile {
+        final MapVisualisation.RoadGeom[] geoms;
+        final long bytes;
+
+        Tile(MapVisualisation.RoadGeom[] geoms) {
+            this.geoms = geoms;
+            long floats = 0, pathBytes = 0;
+            for (MapVisualisation.RoadGeom rg : geoms) {
+                pathBytes += rg.buildPaths(); // built here on the loader thread, not during the first frame
+                floats += rg.points * 2L;
+            }
+            this.bytes = floats * 4 + pathBytes + (long) geoms.length * GEOM_OVERHEAD_BYTES;
+        }
+    }
+
+    private final Index index;
+    private final Loader loader;
+    private final long budgetBytes;
+
+    // Static grid over the tile boxes (same cells as the tile plan): tiles of cell c are
+    // cellTiles[cellStart[c] .. cellStart[c + 1] - 1]; a box spanning several cells is listed in each.
+    private final int[] cellStart, cellTiles;
+    private final int[] seenStamp; // per tile: query that last saw it (dedupe across cells)
+    private int stamp = 0;
+
+    private final LinkedHashMap<Integer, Tile> resident = new LinkedHashMap<>(64, 0.75f, true); // LRU order
+    private final Set<Integer> pending = new HashSet<>();
+    private Set<Integer> pinned = Collections.emptySet(); // tiles of the last viewport: never evicted
+    private long residentBytes = 0;
+
+    private TileStore(Index index, Loader loader, long budgetBytes) {
+        this.index = index;
+        this.loader = loader;
+        this.budgetBytes = budgetBytes;
+
+        // Two passes over the tile boxes: count per cell, then fill
+        int cells = index.cols * index.rows;
+        int[] start = new int[cells + 1];
+        for (int t = 0; t < index.count; t++) {
+            for (int r = row(index.box[t * 4 + 1]); r <= row(index.box[t * 4 + 3]); r++) {
+                for (int c = col(index.box[t * 4]); c <= col(index.box[t * 4 + 2]); c++) start[r * index.cols + c + 1]++;
+            }
+        }
+        for (int c = 0; c < cells; c++) start[c + 1] += start[c];
+        int[] tiles = new int[start[cells]];
+        int[] next = Arrays.copyOf(start, cells);
+        for (int t = 0; t < index.count; t++) {
+            for (int r = row(index.box[t * 4 + 1]); r <= row(index.box[t * 4 + 3]); r++) {
+                for (int c = col(index.box[t * 4]); c <= col(index.box[t * 4 + 2]); c++) tiles[next[r * index.cols + c]++] = t;
+            }
+        }
+        this.cellStart = start;
+        this.cellTiles = tiles;
+        this.seenStamp = new int[index.count];
+    }
+
+    // Grid cell of a world coordinate, clamped (boxes are tested exactly afterwards).
+    private int col(double x) {
+        return (int) Math.max(0, Math.min(index.cols - 1, Math.floor((x - index.originX) / index.tileSize)));
+    }
+
+    private int row(double y) {
+        return (int) Math.max(0, Math.min(index.rows - 1, Math.floor((y - index.originY) / index.tileSize)));
+    }
+
+    int tileCount() { return index.count; }
+
+    /**
+     * Lanes intersecting the world rectangle, from the loaded tiles under it. Missing tiles are queued on
+     * the loader thread; onLoaded runs there after each one arrives (e.g. repaint), so they show up on the
+     * next frame.
+     */
+    synchronized List<MapVisualisation.RoadGeom> visible(double minX, double minY, double maxX, double maxY, Runnable onLoaded) {
+        List<MapVisualisation.RoadGeom> out = new ArrayList<>();
+        Set<Integer> inView = new HashSet<>();
+        float[] box = index.box;
+        stamp++;
+        int c0 = col(minX), c1 = col(maxX), r0 = row(minY), r1 = row(maxY);
+        for (int r = r0; r <= r1; r++) {
+            for (int i = cellStart[r * index.cols + c0], end = cellStart[r * index.cols + c1 + 1]; i < end; i++) {
+                int t = cellTiles[i];
+                if (seenStamp[t] == stamp) continue;
+                seenStamp[t] = stamp;
+                if (box[t * 4] > maxX || box[t * 4 + 2] < minX || box[t * 4 + 1] > maxY || box[t * 4 + 3] < minY) continue;
+                inView.add(t);
+                Tile tile = resident.get(t); // also marks it most recently used
+                if (tile == null) {
+                    if (pending.add(t)) LOADER.execute(() -> load(t, onLoaded));
+                } else if (box[t * 4] >= minX && box[t * 4 + 2] <= maxX && box[t * 4 + 1] >= minY && box[t * 4 + 3] <= maxY) {
+                    Collections.addAll(out, tile.geoms); // tile entirely inside
+                } else {
+                    for (MapVisualisation.RoadGeom rg : tile.geoms) {
+                        if (rg.intersects(minX, minY, maxX, maxY)) out.add(rg);
+                    }
+                }
+            }
+        }
+        pinned = inView;
+        return out;
+    }
+
+    private void load(int t, Runnable onLoaded) {
+        Tile tile = null;
+        try {
+            tile = new Tile(loader.load(t));
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Map tile " + t + " failed to load", ex);
+        }
+        synchronized (this) {
+            pending.remove(t);
+            if (tile == null) return;
+            resident.put(t, tile);
+            residentBytes += tile.bytes;
+            evictOverBudget();
+        }
+        if (onLoaded != null) onLoaded.run();
+    }
+
+    // Oldest first, skipping the tiles on screen (the budget is exceeded rather than dropping visible roads).
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Integer, Tile>> it = resident.entrySet().iterator();
+        while (residentBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<Integer, Tile> e = it.next();
+            if (pinned.contains(e.getKey())) continue;
+            residentBytes -= e.getValue().bytes;
+            it.remove();
+        }
+    }
+
+    synchronized long residentBytes() { return residentBytes; }
+
+    synchronized int residentTiles() { return resident.size(); }
+}
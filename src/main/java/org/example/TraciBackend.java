@@ -0,0 +1,93 @@
+// ===================== TraciBackend.java =====================
+package org.example;
+
+import org.eclipse.sumo.libtraci.*;
+
+import java.util.List;
+import java.util.Map;
+
+// SimBackend over the static libtraci connection opened by SumoLauncher.start.
+final class TraciBackend implements SimBackend {
+
+    static final TraciBackend INSTANCE = new TraciBackend();
+
+    // TraCI variable ids (protocol constants, stable across SUMO versions)
+    private static final int VAR_SPEED = 0x40;
+    private static final int VAR_POSITION = 0x42;
+    private static final int VAR_TYPE = 0x4f;
+    private static final int VAR_WAITING_TIME = 0x7a;
+
+    private IntVector subscribedVars; // built on first subscribe (native type => only after SumoLauncher.start)
+
+    private TraciBackend() {}
+
+    @Override public double deltaT() { return Simulation.getDeltaT(); }
+
+    @Override public double currentTime() { return Simulation.getCurrentTime(); }
+
+    @Override public void step(double targetTime) { Simulation.step(targetTime); }
+
+    @Override public int minExpectedNumber() { return Simulation.getMinExpectedNumber(); }
+
+    @Override public int arrivedNumber() { return Simulation.getArrivedNumber(); }
+
+    @Override public List<String> departedIds() { return Simulation.getDepartedIDList(); }
+
+    @Override public List<String> arrivedIds() { return TraciCapabilities.arrivedIds(); }
+
+    @Override public List<String> vehicleIds() { return Vehicle.getIDList(); }
+
+    @Override public void position(String vehId, double[] xy) {
+        TraCIPosition pos = Vehicle.getPosition(vehId);
+        xy[0] = pos.getX();
+        xy[1] = pos.getY();
+    }
+
+    @Override public double speed(String vehId) { return Vehicle.getSpeed(vehId); }
+
+    @Override public double waitingTimeSec(String vehId) { return TraciCapabilities.vehicleWaitingTimeSec(vehId); }
+
+    @Override public boolean supportsSubscriptions() { return true; }
+
+    @Override public boolean subscribe(String vehId) {
+        if (subscribedVars == null) {
+            IntVector vars = new IntVector();
+            vars.add(VAR_POSITION);
+            vars.add(VAR_SPEED);
+            vars.add(VAR_WAITING_TIME);
+            vars.add(VAR_TYPE);
+            subscribedVars = vars;
+        }
+        try {
+            Vehicle.subscribe(vehId, subscribedVars);
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    @Override public void readSubscribed(SubscribedVehicles out) {
+        SubscriptionResults all = Vehicle.getAllSubscriptionResults();
+
+        for (Map.Entry<String, TraCIResults> e : all.entrySet()) {
+            TraCIResults r = e.getValue();
+            if (r == null || r.isEmpty()) continue;
+
+            double x = Double.NaN, y = Double.NaN;
+            TraCIResult pos = r.get(VAR_POSITION);
+            if (pos != null) {
+                TraCIPosition p = TraCIPosition.cast(pos);
+                x = p.getX();
+                y = p.getY();
+            }
+
+            TraCIResult sp = r.get(VAR_SPEED);
+            TraCIResult w = r.get(VAR_WAITING_TIME);
+            TraCIResult t = r.get(VAR_TYPE);
+            out.accept(e.getKey(), x, y,
+                    (sp != null) ? TraCIDouble.cast(sp).getValue() : 0.0,
+                    (w != null) ? TraCIDouble.cast(w).getValue() : Double.NaN,
+                    t != null ? TraCIString.cast(t).getValue() : null);
+        }
+    }
+}
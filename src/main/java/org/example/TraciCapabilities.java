@@ -0,0 +1,235 @@
+// ===================== TraciCapabilities.java =====================
+package org.example;
+
+import org.eclipse.sumo.libtraci.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Capability table for the libtraci build on the classpath.
+ *
+ * libtraci method names/signatures differ between SUMO versions, so optional calls used to go through
+ * Class.getMethod + Method.invoke on every call (many of them per vehicle per step).
+ * This class probes each optional method ONCE when it is loaded and caches it as a MethodHandle.
+ * Hot paths then call the typed wrappers below: no reflection lookup, and a missing method is
+ * a null check instead of a swallowed NoSuchMethodException.
+ */
+final class TraciCapabilities {
+
+    private TraciCapabilities() {}
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    // ===================== Resolved handles (null => not available in this SUMO version) =====================
+    // (String vehId) -> double : getWaitingTime, else getAccumulatedWaitingTime
+    private static final MethodHandle VEH_WAITING_TIME = firstOf(
+            resolve(Vehicle.class, "getWaitingTime", MethodType.methodType(double.class, String.class)),
+            resolve(Vehicle.class, "getAccumulatedWaitingTime", MethodType.methodType(double.class, String.class)));
+
+    // () -> StringVector
+    private static final MethodHandle SIM_ARRIVED_IDS =
+            resolve(Simulation.class, "getArrivedIDList", MethodType.methodType(StringVector.class));
+
+    // (String tlsId) -> StringVector
+    private static final MethodHandle TLS_CONTROLLED_LANES =
+            resolve(TrafficLight.class, "getControlledLanes", MethodType.methodType(StringVector.class, String.class));
+
+    // (String laneId) -> int : halting vehicles, else all vehicles on the lane
+    private static final MethodHandle LANE_DEMAND = firstOf(
+            resolve(Lane.class, "getLastStepHaltingNumber", MethodType.methodType(int.class, String.class)),
+            resolve(Lane.class, "getLastStepVehicleNumber", MethodType.methodType(int.class, String.class)));
+
+    // (String laneId) -> StringVector
+    private static final MethodHandle LANE_ALLOWED =
+            resolve(Lane.class, "getAllowed", MethodType.methodType(StringVector.class, String.class));
+
+    // (String laneId) -> double
+    private static final MethodHandle LANE_LENGTH =
+            resolve(Lane.class, "getLength", MethodType.methodType(double.class, String.class));
+
+    // (String from, String to, String vType) -> StringVector   (result edges already extracted)
+    private static final MethodHandle FIND_ROUTE_3 =
+            resolveFindRoute(String.class, String.class, String.class);
+
+    // (String from, String to, String vType, double depart) -> StringVector
+    private static final MethodHandle FIND_ROUTE_4 =
+            resolveFindRoute(String.class, String.class, String.class, double.class);
+
+    // (vehId, routeId, typeId, depart, departLane, departPos, departSpeed) -> void, all as SUMO value strings
+    private static final MethodHandle VEH_ADD_STR =
+            resolve(Vehicle.class, "add", MethodType.methodType(void.class,
+                    String.class, String.class, String.class, String.class, String.class, String.class, String.class));
+
+    // () -> StringVector : vehicles loaded but not yet inserted into the network
+    private static final MethodHandle SIM_PENDING =
+            resolve(Simulation.class, "getPendingVehicles", MethodType.methodType(StringVector.class));
+
+    // (String edgeId) -> int
+    private static final MethodHandle EDGE_LANE_NUMBER =
+            resolve(Edge.class, "getLaneNumber", MethodType.methodType(int.class, String.class));
+
+    // (vehId, routeId, typeId, depart, departLane, departPos, departSpeed) -> void
+    private static final MethodHandle VEH_ADD_FULL =
+            resolve(Vehicle.class, "add", MethodType.methodType(void.class,
+                    String.class, String.class, String.class, double.class, String.class, double.class, double.class));
+
+    // ===================== Startup probe =====================
+    // Class loading already resolved everything; this only reports the table once.
+    static void logProbe() {
+        Logging.LOG.info("libtraci capabilities: "
+                + "waitingTime=" + has(VEH_WAITING_TIME)
+                + " arrivedIDs=" + has(SIM_ARRIVED_IDS)
+                + " controlledLanes=" + has(TLS_CONTROLLED_LANES)
+                + " laneDemand=" + has(LANE_DEMAND)
+                + " laneAllowed=" + has(LANE_ALLOWED)
+                + " laneLength=" + has(LANE_LENGTH)
+                + " findRoute3=" + has(FIND_ROUTE_3)
+                + " findRoute4=" + has(FIND_ROUTE_4)
+                + " vehicleAddFull=" + has(VEH_ADD_FULL)
+                + " vehicleAddStr=" + has(VEH_ADD_STR)
+                + " pendingVehicles=" + has(SIM_PENDING)
+                + " edgeLaneNumber=" + has(EDGE_LANE_NUMBER));
+    }
+
+    // ===================== Typed wrappers (hot paths) =====================
+    // Failures below are real TraCI errors (e.g. vehicle already gone), not version detection.
+
+    static double vehicleWaitingTimeSec(String vehId) {
+        if (VEH_WAITING_TIME == null) return Double.NaN;
+        try { return (double) VEH_WAITING_TIME.invokeExact(vehId); }
+        catch (Throwable t) { return Double.NaN; }
+    }
+
+    static StringVector arrivedIds() {
+        if (SIM_ARRIVED_IDS == null) return null;
+        try { return (StringVector) SIM_ARRIVED_IDS.invokeExact(); }
+        catch (Throwable t) { return null; }
+    }
+
+    static StringVector controlledLanes(String tlsId) {
+        if (TLS_CONTROLLED_LANES == null) return null;
+        try { return (StringVector) TLS_CONTROLLED_LANES.invokeExact(tlsId); }
+        catch (Throwable t) { return null; }
+    }
+
+    // Halting (or, on old versions, total) vehicles on a lane; -1 if unavailable.
+    static int laneDemand(String laneId) {
+        if (LANE_DEMAND == null) return -1;
+        try { return (int) LANE_DEMAND.invokeExact(laneId); }
+        catch (Throwable t) { return -1; }
+    }
+
+    static StringVector laneAllowed(String laneId) {
+        if (LANE_ALLOWED == null) return null;
+        try { return (StringVector) LANE_ALLOWED.invokeExact(laneId); }
+        catch (Throwable t) { return null; }
+    }
+
+    // Lane length in meters; NaN if unavailable.
+    static double laneLength(String laneId) {
+        if (LANE_LENGTH == null) return Double.NaN;
+        try { return (double) LANE_LENGTH.invokeExact(laneId); }
+        catch (Throwable t) { return Double.NaN; }
+    }
+
+    static StringVector findRoute(String fromEdge, String toEdge, String vTypeId) {
+        if (FIND_ROUTE_3 == null) return null;
+        try { return (StringVector) FIND_ROUTE_3.invokeExact(fromEdge, toEdge, vTypeId); }
+        catch (Throwable t) { return null; }
+    }
+
+    static StringVector findRoute(String fromEdge, String toEdge, String vTypeId, double depart) {
+        if (FIND_ROUTE_4 == null) return null;
+        try { return (StringVector) FIND_ROUTE_4.invokeExact(fromEdge, toEdge, vTypeId, depart); }
+        catch (Throwable t) { return null; }
+    }
+
+    // Returns false if the full add signature does not exist or failed (caller falls back to simple add).
+    static boolean addVehicleFull(String vehId, String routeId, String typeId,
+                                  double depart, String departLane, double departPos, double departSpeed) {
+        if (VEH_ADD_FULL == null) return false;
+        try {
+            VEH_ADD_FULL.invokeExact(vehId, routeId, typeId, depart, departLane, departPos, departSpeed);
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    // Vehicle.add with SUMO value strings (depart "12.5", departLane "1", ...); false if unavailable or failed.
+    static boolean addVehicle(String vehId, String routeId, String typeId,
+                              String depart, String departLane, String departPos, String departSpeed) {
+        if (VEH_ADD_STR == null) return false;
+        try {
+            VEH_ADD_STR.invokeExact(vehId, routeId, typeId, depart, departLane, departPos, departSpeed);
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    // Vehicles waiting for insertion inside SUMO; -1 if unavailable.
+    static int pendingVehicleCount() {
+        if (SIM_PENDING == null) return -1;
+        try { return ((StringVector) SIM_PENDING.invokeExact()).size(); }
+        catch (Throwable t) { return -1; }
+    }
+
+    // Number of lanes of an edge; -1 if unavailable.
+    static int edgeLaneCount(String edgeId) {
+        if (EDGE_LANE_NUMBER == null) return -1;
+        try { return (int) EDGE_LANE_NUMBER.invokeExact(edgeId); }
+        catch (Throwable t) { return -1; }
+    }
+
+    // ===================== Resolution helpers (run once) =====================
+    private static String has(MethodHandle mh) { return mh != null ? "yes" : "no"; }
+
+    private static MethodHandle firstOf(MethodHandle a, MethodHandle b) { return a != null ? a : b; }
+
+    // Find a public static method by name + parameter types and adapt it to the wanted type
+    // (boxing/widening of the return value). Returns null if this libtraci version does not have it.
+    private static MethodHandle resolve(Class<?> clazz, String name, MethodType wanted) {
+        try {
+            Method m = clazz.getMethod(name, wanted.parameterArray());
+            return LOOKUP.unreflect(m).asType(wanted);
+        } catch (Exception | LinkageError ex) {
+            return null;
+        }
+    }
+
+    // findRoute returns StringVector on some versions and a TraCIStage (getEdges/getEdgeList) on others.
+    // Resolve the accessor once from the declared return type and fold it into the handle.
+    private static MethodHandle resolveFindRoute(Class<?>... params) {
+        try {
+            Method m = Simulation.class.getMethod("findRoute", params);
+            MethodHandle call = LOOKUP.unreflect(m).asType(MethodType.methodType(Object.class, params));
+
+            MethodHandle edges;
+            if (StringVector.class.isAssignableFrom(m.getReturnType())) {
+                edges = MethodHandles.identity(Object.class)
+                        .asType(MethodType.methodType(StringVector.class, Object.class));
+            } else {
+                Method getter = findEdgeGetter(m.getReturnType());
+                if (getter == null) return null;
+                edges = LOOKUP.unreflect(getter).asType(MethodType.methodType(StringVector.class, Object.class));
+            }
+            return MethodHandles.filterReturnValue(call, edges);
+        } catch (Exception | LinkageError ex) {
+            return null;
+        }
+    }
+
+    private static Method findEdgeGetter(Class<?> stageType) {
+        for (String name : new String[]{"getEdges", "getEdgeList"}) {
+            try {
+                Method m = stageType.getMethod(name);
+                if (StringVector.class.isAssignableFrom(m.getReturnType())) return m;
+            } catch (Exception ignore) {}
+        }
+        return null;
+    }
+}
@@ -4,7 +4,6 @@ package org.example;
 import org.eclipse.sumo.libtraci.*;
 
 import javax.swing.*;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -61,6 +60,9 @@ public class TrafficControl {
     private final Map<String, String> ruleOriginalPrograms = new ConcurrentHashMap<>();
     private final Set<String> ruleTouchedTls = ConcurrentHashMap.newKeySet();
 
+    // Controlled lanes per TLS (static topology => read once, not every step)
+    private final ConcurrentHashMap<String, StringVector> controlledLanesCache = new ConcurrentHashMap<>();
+
     public TrafficControl(JComboBox<TlsItem> tlComboRef, JLabel tlStateLabel) {
         this.tlComboRef = tlComboRef;
         this.tlStateLabel = tlStateLabel;
@@ -69,7 +71,7 @@ public class TrafficControl {
     public boolean isRuleBasedTlsEnabled() { return ruleBasedTlsEnabled; }
     public void setSelectedTls(String tlsId) { this.selectedTlsId = tlsId; }
 
-    // Checkbox ON/OFF: OFF => rule-based se touched TLS restore
+    // Checkbox ON/OFF: OFF => rule-based se touched TLS restore (TraCI writes => simulation thread only)
     public void setRuleBasedTlsEnabled(boolean enabled) {
         this.ruleBasedTlsEnabled = enabled;
         if (!enabled) restoreRuleBasedToAuto();
@@ -133,6 +135,7 @@ public class TrafficControl {
         applyManualOverrideIfNeeded();
     }
 
+    // ===================== TraCI writes (simulation thread only: the UI submits them via SimCommandQueue) =====================
     public void forceTrafficLightRed(String tlsId) {
         forceManual(tlsId, ManualTlsMode.FORCE_RED, 'r', "RED");
     }
@@ -279,40 +282,22 @@ public class TrafficControl {
         if (lanes == null || lanes.size() == 0) return 0;
 
         int sum = 0;
-        int any = 0;
-
         for (int i = 0; i < lanes.size(); i++) {
-            String laneId = lanes.get(i);
-
-            Integer h = tryInvokeInt(Lane.class, "getLastStepHaltingNumber",
-                    new Class<?>[]{String.class}, new Object[]{laneId});
-            if (h != null) { sum += h; any++; continue; }
-
-            Integer v = tryInvokeInt(Lane.class, "getLastStepVehicleNumber",
-                    new Class<?>[]{String.class}, new Object[]{laneId});
-            if (v != null) { sum += v; any++; }
+            // Halting count (old SUMO: vehicle count); -1 => API missing or lane read failed
+            int d = TraciCapabilities.laneDemand(lanes.get(i));
+            if (d > 0) sum += d;
         }
-
-        return (any == 0) ? 0 : sum;
+        return sum;
     }
 
-    // Some SUMO libs may miss method => reflection try
+    // Some SUMO libs may miss the method => capability table returns null (not cached, retried later)
     private StringVector safeGetControlledLanes(String tlsId) {
-        try {
-            Method m = TrafficLight.class.getMethod("getControlledLanes", String.class);
-            Object o = m.invoke(null, tlsId);
-            if (o instanceof StringVector) return (StringVector) o;
-        } catch (Exception ignore) {}
-        return null;
-    }
+        StringVector cached = controlledLanesCache.get(tlsId);
+        if (cached != null) return cached;
 
-    private static Integer tryInvokeInt(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            Object o = m.invoke(null, args);
-            if (o instanceof Number) return ((Number) o).intValue();
-        } catch (Exception ignored) {}
-        return null;
+        StringVector lanes = TraciCapabilities.controlledLanes(tlsId);
+        if (lanes != null) controlledLanesCache.put(tlsId, lanes);
+        return lanes;
     }
 
     // Force TLS state by repeating char for each signal position
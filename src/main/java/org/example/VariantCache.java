@@ -0,0 +1,162 @@
+// ===================== VariantCache.java =====================
+package org.example;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of computed route variants ("scenarioBaseId|typeId" -> variants).
+ *
+ * The file is keyed by a SHA-256 over the net.xml bytes, the trip scenarios and the generation parameters;
+ * any mismatch, truncation or CRC error makes load() return null and the caller recomputes.
+ *
+ * Layout: magic, version, key[32], payload length, payload, CRC32(payload).
+ * Payload: edge-id string table, then per entry the key and its variants (edges as table indices).
+ */
+final class VariantCache {
+
+    private static final int MAGIC = 0x52564331; // "RVC1"
+    private static final int VERSION = 1;
+
+    private VariantCache() {}
+
+    // ===================== Key =====================
+    static byte[] key(File netFile, Collection<VehicleInjection.RouteDef> trips, String params) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new BufferedInputStream(new FileInputStream(netFile))) {
+                byte[] buf = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
+            }
+            StringBuilder sb = new StringBuilder(params).append('\n');
+            for (VehicleInjection.RouteDef rd : trips) {
+                sb.append(rd.baseId).append('|').append(rd.fromEdge).append('|').append(rd.toEdge).append('|')
+                        .append(String.join(" ", rd.viaEdges)).append('\n');
+            }
+            md.update(sb.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            return md.digest();
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Variant cache key failed (cache disabled)", ex);
+            return null;
+        }
+    }
+
+    // ===================== Load =====================
+    /** Entries of the file if it exists and matches the key; null otherwise (caller recomputes). */
+    static Map<String, List<VehicleInjection.RouteVariant>> load(File f, byte[] key) {
+        if (key == null || !f.isFile()) return null;
+        long t0 = System.nanoTime();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return miss(f, "format");
+            byte[] fileKey = new byte[32];
+            in.readFully(fileKey);
+            if (!MessageDigest.isEqual(fileKey, key)) return miss(f, "network/trips/parameters changed");
+
+            int len = in.readInt();
+            if (len < 0 || len > f.length()) return miss(f, "corrupt length");
+            byte[] payload = new byte[len];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (in.readLong() != crc.getValue()) return miss(f, "CRC mismatch");
+
+            Map<String, List<VehicleInjection.RouteVariant>> out = readPayload(payload);
+            Logging.LOG.info(String.format(Locale.US, "Variant cache hit: %d entries from %s in %.1f ms",
+                    out.size(), f.getPath(), (System.nanoTime() - t0) / 1e6));
+            return out;
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Variant cache unreadable: " + f.getPath(), ex);
+            return null;
+        }
+    }
+
+    private static Map<String, List<VehicleInjection.RouteVariant>> miss(File f, String why) {
+        Logging.LOG.info("Variant cache miss (" + why + "): " + f.getPath());
+        return null;
+    }
+
+    private static Map<String, List<VehicleInjection.RouteVariant>> readPayload(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String[] table = new String[in.readInt()];
+        for (int i = 0; i < table.length; i++) table[i] = in.readUTF();
+
+        int entries = in.readInt();
+        Map<String, List<VehicleInjection.RouteVariant>> out = new HashMap<>(entries * 2);
+        for (int i = 0; i < entries; i++) {
+            String key = in.readUTF();
+            int nv = in.readInt();
+            List<VehicleInjection.RouteVariant> vars = new ArrayList<>(nv);
+            for (int v = 0; v < nv; v++) {
+                String routeId = in.readUTF();
+                String label = in.readUTF();
+                double score = in.readDouble();
+                int ne = in.readInt();
+                List<String> edges = new ArrayList<>(ne);
+                for (int e = 0; e < ne; e++) edges.add(table[in.readInt()]);
+                vars.add(new VehicleInjection.RouteVariant(routeId, label, edges, score));
+            }
+            out.put(key, vars);
+        }
+        return out;
+    }
+
+    // ===================== Save =====================
+    // Written to a temp file and moved into place, so a crash never leaves a half-written cache.
+    static void save(File f, byte[] key, Map<String, List<VehicleInjection.RouteVariant>> entries) {
+        if (key == null) return;
+        try {
+            byte[] payload = writePayload(entries);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            File parent = f.getAbsoluteFile().getParentFile();
+            File tmp = File.createTempFile("variants", ".tmp", parent);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(key);
+                out.writeInt(payload.length);
+                out.write(payload);
+                out.writeLong(crc.getValue());
+            }
+            Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Logging.LOG.info("Variant cache written: " + entries.size() + " entries, " + f.length() + " bytes");
+        } catch (Exception ex) {
+            Logging.LOG.log(java.util.logging.Level.WARNING, "Variant cache write failed: " + f.getPath(), ex);
+        }
+    }
+
+    private static byte[] writePayload(Map<String, List<VehicleInjection.RouteVariant>> entries) throws IOException {
+        Map<String, Integer> index = new LinkedHashMap<>();
+        for (List<VehicleInjection.RouteVariant> vars : entries.values()) {
+            for (VehicleInjection.RouteVariant v : vars) {
+                for (String e : v.edges) index.putIfAbsent(e, index.size());
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(index.size());
+        for (String e : index.keySet()) out.writeUTF(e);
+
+        out.writeInt(entries.size());
+        for (Map.Entry<String, List<VehicleInjection.RouteVariant>> en : entries.entrySet()) {
+            out.writeUTF(en.getKey());
+            out.writeInt(en.getValue().size());
+            for (VehicleInjection.RouteVariant v : en.getValue()) {
+                out.writeUTF(v.routeId);
+                out.writeUTF(v.label);
+                out.writeDouble(v.score);
+                out.writeInt(v.edges.size());
+                for (String e : v.edges) out.writeInt(index.get(e));
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
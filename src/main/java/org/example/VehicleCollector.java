@@ -0,0 +1,274 @@
+// ===================== VehicleCollector.java =====================
+package org.example;
+
+import java.util.*;
+
+// Reads per-vehicle data (position, speed, waiting time, type) once per simulation step.
+// Default path: subscribe each vehicle when it departs, then read everything with ONE
+// getAllSubscriptionResults call per step instead of ~5 TraCI round-trips per vehicle.
+//
+// Vehicles are tracked by dense int handles (VehicleHandleRegistry): the departed/arrived lists
+// acquire/release handles, and per-vehicle data lives in plain arrays indexed by handle.
+// If several SUMO steps ran since the last call, those lists only cover the last step; the live set
+// is then reconciled against Vehicle.getIDList instead.
+//
+// All TraCI calls (lists, subscriptions, per-vehicle reads) go through a SimBackend.
+final class VehicleCollector {
+
+    // How often (in collected steps) the average collection latency is written to the log
+    private static final int LATENCY_LOG_EVERY_STEPS = 500;
+
+    private final SimBackend sim;
+    private boolean useSubscriptions;
+    private final SimBackend.SubscribedVehicles subscribedSink = this::acceptSubscribed;
+
+    private final VehicleHandleRegistry registry = new VehicleHandleRegistry(256);
+
+    // ===================== Per-handle data (read by StepAggregator) =====================
+    double[] x, y;
+    double[] speed;
+    double[] waitSec;     // NaN => waiting time not available
+    byte[] type;          // VehicleSnapshot.TYPE_*
+    private long[] seenStep;
+    private int[] livePos; // index of the handle inside liveHandles
+
+    // Dense list of live handles (iteration order for one step)
+    private int[] liveHandles;
+    private int liveCount = 0;
+
+    private long stepCounter = 0;
+    private int arrivedLastStep = 0;
+    private boolean arrivedListAvailable = true;
+
+    // Latency stats for comparing subscription vs polling path
+    private long latencyNanosSum = 0;
+    private int latencySteps = 0;
+
+    VehicleCollector(boolean useSubscriptions) {
+        this(TraciBackend.INSTANCE, useSubscriptions);
+    }
+
+    VehicleCollector(SimBackend sim, boolean useSubscriptions) {
+        this.sim = sim;
+        this.useSubscriptions = useSubscriptions && sim.supportsSubscriptions();
+        ensureCapacity(registry.capacity());
+    }
+
+    boolean usesSubscriptions() { return useSubscriptions; }
+
+    // ===================== Results of the last collect() call =====================
+    int liveCount() { return liveCount; }
+
+    // k-th live handle, 0 <= k < liveCount()
+    int handleAt(int k) { return liveHandles[k]; }
+
+    String idOf(int handle) { return registry.idOf(handle); }
+
+    // Vehicles that left the network since the previous collect() (used for throughput).
+    int arrivedLastStep() { return arrivedLastStep; }
+
+    // Copy the live vehicles of the last collect() into a frame (rows in live-list order).
+    // f.arrived is not set here: the stepping loop counts arrivals on every SUMO step (SimBackend.stepCountingArrivals).
+    void copyTo(RawVehicleFrame f) {
+        for (int k = 0; k < liveCount; k++) {
+            int h = liveHandles[k];
+            f.add(h, x[h], y[h], speed[h], waitSec[h], type[h]);
+        }
+    }
+
+    /** Collect data for all live vehicles after exactly one simulation step. */
+    void collect() {
+        collect(false);
+    }
+
+    /**
+     * Collect data for all live vehicles.
+     * @param multiStep true if more than one SUMO step ran since the previous call
+     */
+    void collect(boolean multiStep) {
+        long t0 = System.nanoTime();
+        stepCounter++;
+        arrivedLastStep = 0;
+
+        if (useSubscriptions) {
+            try {
+                collectBySubscription(multiStep);
+            } catch (Exception ex) {
+                // Subscription API missing/broken in this libtraci build => keep running with polling.
+                Logging.LOG.log(java.util.logging.Level.WARNING,
+                        "Vehicle subscriptions failed; falling back to per-vehicle polling", ex);
+                useSubscriptions = false;
+                collectByPolling();
+            }
+        } else {
+            collectByPolling();
+        }
+
+        recordLatency(System.nanoTime() - t0);
+    }
+
+    // ===================== Subscription path =====================
+    private void collectBySubscription(boolean multiStep) {
+        if (multiStep) {
+            reconcileWithIdList();
+        } else {
+            applyDepartedArrived();
+        }
+
+        // One round-trip for every subscribed (= live) vehicle; arrived vehicles drop out automatically.
+        sim.readSubscribed(subscribedSink);
+
+        // Old SUMO without getArrivedIDList: whatever was not reported this step has left.
+        if (!multiStep && !arrivedListAvailable) releaseNotSeen();
+    }
+
+    // Results are keyed by vehicle id, so one registry lookup per vehicle remains here.
+    private void acceptSubscribed(String id, double px, double py, double sp, double wait, String vTypeId) {
+        int h = registry.handleOf(id);
+        if (h < 0) h = track(id);
+
+        if (!Double.isNaN(px)) {
+            x[h] = px;
+            y[h] = py;
+        }
+        speed[h] = sp;
+        waitSec[h] = wait;
+        type[h] = classifyType(vTypeId, id);
+        seenStep[h] = stepCounter;
+    }
+
+    // Single step: the departed/arrived lists are exact.
+    private void applyDepartedArrived() {
+        // Subscribe vehicles that entered the network during the last step and give them a handle.
+        List<String> departed = sim.departedIds();
+        for (int i = 0; i < departed.size(); i++) {
+            String id = departed.get(i);
+            if (!sim.subscribe(id)) continue; // departed and already gone again (teleport/arrival within one step)
+            track(id);
+        }
+
+        // Vehicles that left the network free their handle for reuse.
+        List<String> arrived = sim.arrivedIds();
+        arrivedListAvailable = arrived != null;
+        if (arrived != null) {
+            for (int i = 0; i < arrived.size(); i++) {
+                arrivedLastStep++;
+                int h = registry.release(arrived.get(i));
+                if (h >= 0) untrack(h);
+            }
+        }
+    }
+
+    // Several steps: departures/arrivals of the earlier steps are not in the lists => diff the live set
+    // against the current id list (one TraCI call, one registry lookup per vehicle).
+    private void reconcileWithIdList() {
+        List<String> ids = sim.vehicleIds();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            int h = registry.handleOf(id);
+            if (h < 0) {
+                if (!sim.subscribe(id)) continue;
+                h = track(id);
+            }
+            seenStep[h] = stepCounter;
+        }
+        releaseNotSeen();
+    }
+
+    // ===================== Polling path (previous behaviour, kept for comparison/fallback) =====================
+    private void collectByPolling() {
+        List<String> vIds = sim.vehicleIds();
+        double[] xy = new double[2];
+
+        for (int i = 0; i < vIds.size(); i++) {
+            String id = vIds.get(i);
+            int h = registry.handleOf(id);
+            if (h < 0) h = track(id);
+
+            sim.position(id, xy);
+            x[h] = xy[0];
+            y[h] = xy[1];
+
+            double sp = 0.0; // default speed is 0
+            try { sp = sim.speed(id); } catch (Exception ignore) {}
+            speed[h] = sp;
+
+            waitSec[h] = sim.waitingTimeSec(id);
+            type[h] = classifyType(null, id);
+
+            seenStep[h] = stepCounter;
+        }
+
+        releaseNotSeen();
+    }
+
+    // ===================== Handle bookkeeping =====================
+    private int track(String id) {
+        int h = registry.acquire(id);
+        ensureCapacity(registry.capacity());
+
+        waitSec[h] = Double.NaN;
+        type[h] = VehicleSnapshot.TYPE_CAR;
+        seenStep[h] = -1;
+        livePos[h] = liveCount;
+        liveHandles[liveCount++] = h;
+        return h;
+    }
+
+    // O(1) swap-remove from the dense live list.
+    private void untrack(int h) {
+        int k = livePos[h];
+        int last = liveHandles[--liveCount];
+        liveHandles[k] = last;
+        livePos[last] = k;
+    }
+
+    private void releaseNotSeen() {
+        for (int k = liveCount - 1; k >= 0; k--) {
+            int h = liveHandles[k];
+            if (seenStep[h] == stepCounter) continue;
+            registry.release(registry.idOf(h));
+            untrack(h);
+            arrivedLastStep++;
+        }
+    }
+
+    // Per-handle arrays follow the registry capacity (grows only when the fleet exceeds its previous maximum).
+    private void ensureCapacity(int cap) {
+        if (x != null && x.length >= cap) return;
+        x = x == null ? new double[cap] : Arrays.copyOf(x, cap);
+        y = y == null ? new double[cap] : Arrays.copyOf(y, cap);
+        speed = speed == null ? new double[cap] : Arrays.copyOf(speed, cap);
+        waitSec = waitSec == null ? new double[cap] : Arrays.copyOf(waitSec, cap);
+        type = type == null ? new byte[cap] : Arrays.copyOf(type, cap);
+        seenStep = seenStep == null ? new long[cap] : Arrays.copyOf(seenStep, cap);
+        livePos = livePos == null ? new int[cap] : Arrays.copyOf(livePos, cap);
+        liveHandles = liveHandles == null ? new int[cap] : Arrays.copyOf(liveHandles, cap);
+    }
+
+    // Map SUMO vType id to our type codes; IDs from manual injection (inj_<type>_<n>) carry the type.
+    static byte classifyType(String vTypeId, String vehId) {
+        if (Main.TYPE_CAR.equals(vTypeId)) return VehicleSnapshot.TYPE_CAR;
+        if (Main.TYPE_TRUCK.equals(vTypeId)) return VehicleSnapshot.TYPE_TRUCK;
+        if (Main.TYPE_BUS.equals(vTypeId)) return VehicleSnapshot.TYPE_BUS;
+
+        int off = vehId.startsWith(InjectionEngine.ID_PREFIX) ? InjectionEngine.ID_PREFIX.length() : 0;
+        if (vehId.startsWith("car_", off)) return VehicleSnapshot.TYPE_CAR;
+        if (vehId.startsWith("truck_", off)) return VehicleSnapshot.TYPE_TRUCK;
+        if (vehId.startsWith("bus_", off)) return VehicleSnapshot.TYPE_BUS;
+        return VehicleSnapshot.TYPE_CAR;
+    }
+
+    private void recordLatency(long nanos) {
+        latencyNanosSum += nanos;
+        latencySteps++;
+        if (latencySteps < LATENCY_LOG_EVERY_STEPS) return;
+
+        double avgMs = latencyNanosSum / 1e6 / latencySteps;
+        Logging.LOG.fine(String.format(Locale.US,
+                "Vehicle collect (%s): avg %.3f ms/step over %d steps, vehicles=%d",
+                useSubscriptions ? "subscription" : "polling", avgMs, latencySteps, liveCount));
+        latencyNanosSum = 0;
+        latencySteps = 0;
+    }
+}
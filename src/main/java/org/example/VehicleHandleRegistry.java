@@ -0,0 +1,144 @@
+// ===================== VehicleHandleRegistry.java =====================
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Dense int handles for SUMO vehicle IDs.
+ *
+ * A vehicle gets a handle when it departs and gives it back when it arrives; freed handles are reused,
+ * so handles stay in [0, capacity) and all per-vehicle data can live in plain arrays indexed by handle.
+ * The String -> handle lookup is an open-addressing table (no boxing, no per-lookup allocation).
+ *
+ * Not thread-safe: owned by the simulation thread.
+ */
+final class VehicleHandleRegistry {
+
+    // ===================== handle -> id =====================
+    private String[] idByHandle;
+    private int highWater = 0;   // handles [0, highWater) have been used at least once
+    private int live = 0;
+
+    // Stack of freed handles (reused before growing highWater)
+    private int[] freeHandles;
+    private int freeTop = 0;
+
+    // ===================== id -> handle (linear probing) =====================
+    private String[] keys;
+    private int[] values;
+    private int mask;
+
+    VehicleHandleRegistry(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        idByHandle = new String[cap];
+        freeHandles = new int[cap];
+
+        int tableSize = Integer.highestOneBit(cap * 2 - 1) << 1;
+        keys = new String[tableSize];
+        values = new int[tableSize];
+        mask = tableSize - 1;
+    }
+
+    int liveCount() { return live; }
+
+    // Upper bound for handle values; per-handle arrays must be at least this long.
+    int capacity() { return idByHandle.length; }
+
+    String idOf(int handle) { return idByHandle[handle]; }
+
+    // Handle for this id, or -1 if the vehicle is not registered.
+    int handleOf(String id) {
+        int i = indexFor(id);
+        while (true) {
+            String k = keys[i];
+            if (k == null) return -1;
+            if (k.equals(id)) return values[i];
+            i = (i + 1) & mask;
+        }
+    }
+
+    // Register a departed vehicle (idempotent) and return its handle.
+    int acquire(String id) {
+        int existing = handleOf(id);
+        if (existing >= 0) return existing;
+
+        int h;
+        if (freeTop > 0) {
+            h = freeHandles[--freeTop];
+        } else {
+            if (highWater == idByHandle.length) growHandles();
+            h = highWater++;
+        }
+        idByHandle[h] = id;
+        live++;
+
+        if (live * 2 > keys.length) growTable();
+        insert(id, h);
+        return h;
+    }
+
+    // Unregister an arrived vehicle; returns its freed handle or -1 if it was unknown.
+    int release(String id) {
+        int i = indexFor(id);
+        while (true) {
+            String k = keys[i];
+            if (k == null) return -1;
+            if (k.equals(id)) break;
+            i = (i + 1) & mask;
+        }
+
+        int h = values[i];
+        deleteSlot(i);
+        idByHandle[h] = null;
+        freeHandles[freeTop++] = h;
+        live--;
+        return h;
+    }
+
+    // ===================== Internals =====================
+    private int indexFor(String id) {
+        int hc = id.hashCode();
+        return (hc ^ (hc >>> 16)) & mask;
+    }
+
+    private void insert(String id, int handle) {
+        int i = indexFor(id);
+        while (keys[i] != null) i = (i + 1) & mask;
+        keys[i] = id;
+        values[i] = handle;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones.
+    private void deleteSlot(int hole) {
+        keys[hole] = null;
+        int i = (hole + 1) & mask;
+        while (keys[i] != null) {
+            int home = indexFor(keys[i]);
+            boolean movable = (hole <= i) ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (movable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                keys[i] = null;
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void growHandles() {
+        int cap = idByHandle.length * 2;
+        idByHandle = Arrays.copyOf(idByHandle, cap);
+        freeHandles = Arrays.copyOf(freeHandles, cap);
+    }
+
+    private void growTable() {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+}
@@ -4,15 +4,12 @@ package org.example;
 import org.eclipse.sumo.libtraci.*;
 
 import javax.swing.*;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import java.io.File;
-import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-
-import org.w3c.dom.*;
+import java.util.concurrent.ForkJoinPool;
 
 public final class VehicleInjection {
 
@@ -57,6 +54,10 @@ public final class VehicleInjection {
     private static final ConcurrentHashMap<String, java.util.List<RouteVariant>> variantsByScenarioType = new ConcurrentHashMap<>();
     private static final ArrayList<String> viaPool = new ArrayList<>();
 
+    // Parallel variant precompute (graph routing only) + per-scenario readiness, keyed by baseId
+    private static final ForkJoinPool VARIANT_POOL = ForkJoinPool.commonPool();
+    private static final ConcurrentHashMap<String, CompletableFuture<Void>> scenarioReady = new ConcurrentHashMap<>();
+
     // Branch probabilities: 30/40/20/10 for A/B/C/D
     private static final double[] BRANCH_P = new double[]{0.30, 0.40, 0.20, 0.10};
 
@@ -65,40 +66,38 @@ public final class VehicleInjection {
     private static final int PREFIX_EDGES_FOR_SPLIT = 4;
     private static final boolean DISALLOW_EDGE_REPEATS = true;
 
+    // Graph variants: candidates per scenario/type, rank bonus for long ones, base seed (see setVariantSeed)
+    private static final int VARIANT_CANDIDATES = 6;
+    private static final double LONG_ROUTE_BONUS = 1e6;
+    private static volatile long variantSeed = 0x5EEDL;
+
     private static volatile boolean ready = false;
 
+    // In-memory routing (null => every route query goes to SUMO via findRoute)
+    private static volatile RoutingGraph graph;
+
+    // Edge attributes from the net.xml (null => per-edge TraCI lookups); kept even if the graph is disabled
+    private static volatile EdgeTable edgeTable;
+
+    // Validation against SUMO: random edge pairs on top of the trip scenarios; below this agreement, use TraCI.
+    private static final int GRAPH_VALIDATION_RANDOM_PAIRS = 40;
+    private static final double GRAPH_MIN_AGREEMENT = 0.9;
+
     public static boolean isReady() { return ready; }
 
+    // Seed for the graph-based variants (same seed => same variants); call before the first build.
+    static void setVariantSeed(long seed) { variantSeed = seed; }
+
     // ===================== SUMOCFG PARSING =====================
     private static String readRouteFilesFromSumocfg(String sumocfgPath) {
-        try {
-            File f = new File(sumocfgPath);
-            if (!f.exists()) return null;
-
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            dbf.setExpandEntityReferences(false);
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(f);
-            doc.getDocumentElement().normalize();
-
-            NodeList list = doc.getElementsByTagName("route-files");
-            if (list.getLength() > 0) {
-                Element e = (Element) list.item(0);
-                String v = e.getAttribute("value");
-                if (v != null && !v.isBlank()) return v.trim();
-            }
-        } catch (Exception ex) {
-            Logging.LOG.log(java.util.logging.Level.WARNING, "Failed reading route-files from sumocfg", ex);
-        }
-        return null;
+        return NetXmlReader.readConfigValue(new File(sumocfgPath), "route-files");
     }
 
-    private static File resolveRelativeToSumocfg(String pathMaybeRelative) {
+    private static File resolveRelativeToSumocfg(String sumocfgPath, String pathMaybeRelative) {
         File f = new File(pathMaybeRelative);
         if (f.exists()) return f;
 
-        File cfg = new File(Main.SUMOCFG_PATH);
+        File cfg = new File(sumocfgPath);
         File baseDir = cfg.getParentFile();
         if (baseDir == null) baseDir = new File(".");
         File alt = new File(baseDir, pathMaybeRelative);
@@ -113,10 +112,11 @@ public final class VehicleInjection {
     }
 
     // ===================== LOAD TRIPS FROM ROU =====================
-    public static void loadTripRoutesFromRou() {
+    // Trips of the route files referenced by the sumocfg (GUI: Main.SUMOCFG_PATH, headless: --cfg).
+    public static void loadTripRoutesFromRou(String sumocfgPath) {
         TRIP_ROUTES.clear();
 
-        String routeFiles = readRouteFilesFromSumocfg(Main.SUMOCFG_PATH);
+        String routeFiles = readRouteFilesFromSumocfg(sumocfgPath);
         if (routeFiles == null || routeFiles.isBlank()) {
             Logging.LOG.warning("sumocfg has no <route-files>. Put your final.rou.xml there.");
             return;
@@ -125,7 +125,7 @@ public final class VehicleInjection {
         String[] parts = routeFiles.split("[,\\s]+");
         for (String p : parts) {
             if (p == null || p.isBlank()) continue;
-            File rou = resolveRelativeToSumocfg(p.trim());
+            File rou = resolveRelativeToSumocfg(sumocfgPath, p.trim());
             if (!rou.exists()) {
                 Logging.LOG.warning("Route file not found: " + rou.getPath());
                 continue;
@@ -142,28 +142,18 @@ public final class VehicleInjection {
      * 2) Completeness: We need full route definitions even before the simulation starts.
      */
     private static void parseTrips(File rouFile) {
-        try {
-            // Standard Java DOM parsing to read .rou.xml files.
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
-            // Security: Disable DTD loading to prevent XXE attacks and speed up parsing.
-            dbf.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            dbf.setExpandEntityReferences(false);
-
-            DocumentBuilder db = dbf.newDocumentBuilder();
-            Document doc = db.parse(rouFile);
-            doc.getDocumentElement().normalize();
-
-            NodeList trips = doc.getElementsByTagName("trip");
-            for (int i = 0; i < trips.getLength(); i++) {
-                Node n = trips.item(i);
-                if (!(n instanceof Element)) continue;
-                Element t = (Element) n;
-
-                String from = t.getAttribute("from");
-                String to   = t.getAttribute("to");
-                String via  = t.getAttribute("via");
-                String id   = t.getAttribute("id");
+        // Streaming StAX pass (same reader setup as the net.xml: no DTD, no external entities).
+        try (java.io.InputStream in = new java.io.BufferedInputStream(new java.io.FileInputStream(rouFile))) {
+            javax.xml.stream.XMLStreamReader t = NetXmlReader.newFactory().createXMLStreamReader(in);
+            int i = -1;
+            while (t.hasNext()) {
+                if (t.next() != javax.xml.stream.XMLStreamConstants.START_ELEMENT || !"trip".equals(t.getLocalName())) continue;
+                i++;
+
+                String from = NetXmlReader.attr(t, "from");
+                String to   = NetXmlReader.attr(t, "to");
+                String via  = NetXmlReader.attr(t, "via");
+                String id   = NetXmlReader.attr(t, "id");
 
                 if (from == null || from.isBlank() || to == null || to.isBlank()) continue;
 
@@ -181,38 +171,80 @@ public final class VehicleInjection {
                 String label = "TRIP: " + from + " -> " + to;
                 TRIP_ROUTES.put(from, new RouteDef(baseId, label, from.trim(), to.trim(), viaEdges));
             }
+            t.close();
         } catch (Exception ex) {
             Logging.LOG.log(java.util.logging.Level.WARNING, "Failed parsing rou file: " + rouFile.getPath(), ex);
         }
     }
 
-    // ===================== Reflection helpers =====================
+    // ===================== In-memory routing graph =====================
+    // Build the edge table + graph from a net.xml (no TraCI needed; NetCache when valid).
+    public static void loadRoutingGraph(File netFile) {
+        loadRoutingGraph(NetCache.loadOrParse(netFile));
+    }
 
-    // Using Reflection (Method.invoke) is crucial here. libtraci versions can differ across machines.
-    // Reflection prevents NoSuchMethodError crashes if the API signature changes slightly.
-    private static Object tryInvokeRet(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            return m.invoke(null, args);
-        } catch (Exception ignored) { return null; }
+    // Same from a network the map already loaded (null => no graph, TraCI fallbacks stay active).
+    static void loadRoutingGraph(NetXmlReader.NetData net) {
+        edgeTable = net != null ? net.edges : null;
+        graph = net != null ? RoutingGraph.fromNet(net) : null;
     }
 
-    private static Double tryInvokeDouble(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            Object o = m.invoke(null, args);
-            if (o instanceof Number) return ((Number) o).doubleValue();
-        } catch (Exception ignored) {}
-        return null;
+    static EdgeTable edgeTable() { return edgeTable; }
+
+    /**
+     * Compare graph routes with SUMO's findRoute (simulation thread, after SUMO started).
+     * A pair agrees if both find no route, or SUMO's route is valid in the graph and ours is not slower
+     * by our cost model (ties may pick different edges). Too many disagreements => graph disabled.
+     */
+    static void validateRoutingGraph() {
+        RoutingGraph g = graph;
+        if (g == null) return;
+
+        java.util.List<String[]> pairs = new ArrayList<>();
+        for (RouteDef rd : TRIP_ROUTES.values()) pairs.add(new String[]{rd.fromEdge, rd.toEdge});
+        java.util.List<String> edges = new ArrayList<>(Arrays.asList(g.edges().ids));
+        Random r = new Random(42);
+        for (int i = 0; i < GRAPH_VALIDATION_RANDOM_PAIRS && edges.size() > 1; i++) {
+            pairs.add(new String[]{edges.get(r.nextInt(edges.size())), edges.get(r.nextInt(edges.size()))});
+        }
+
+        int agree = 0, identical = 0;
+        long graphNanos = 0;
+        for (String[] p : pairs) {
+            java.util.List<String> sumo = toList(findRouteEdges(p[0], p[1], Main.TYPE_CAR));
+            long t0 = System.nanoTime();
+            java.util.List<String> ours = g.route(p[0], p[1], Main.TYPE_CAR);
+            graphNanos += System.nanoTime() - t0;
+
+            boolean ok;
+            if (sumo == null || ours == null) {
+                ok = sumo == null && ours == null;
+            } else {
+                double sumoCost = g.routeCost(sumo, Main.TYPE_CAR);
+                ok = !Double.isNaN(sumoCost) && g.routeCost(ours, Main.TYPE_CAR) <= sumoCost * 1.001 + 1e-6;
+                if (ours.equals(sumo)) identical++;
+            }
+            if (ok) agree++;
+            else Logging.LOG.fine("Routing graph disagrees with SUMO: " + p[0] + " -> " + p[1]
+                    + " sumo=" + (sumo == null ? "none" : sumo.size() + " edges")
+                    + " graph=" + (ours == null ? "none" : ours.size() + " edges"));
+        }
+
+        double rate = pairs.isEmpty() ? 1.0 : agree / (double) pairs.size();
+        Logging.LOG.info(String.format(Locale.US,
+                "Routing graph validation: %d/%d agree (%d identical), %.2f ms per graph query",
+                agree, pairs.size(), identical, pairs.isEmpty() ? 0.0 : graphNanos / 1e6 / pairs.size()));
+        if (rate < GRAPH_MIN_AGREEMENT) {
+            graph = null;
+            Logging.LOG.warning("Routing graph disabled (agreement " + Math.round(rate * 100) + "%), using SUMO findRoute.");
+        }
     }
 
-    private static Integer tryInvokeInt(Class<?> clazz, String methodName, Class<?>[] sig, Object[] args) {
-        try {
-            Method m = clazz.getMethod(methodName, sig);
-            Object o = m.invoke(null, args);
-            if (o instanceof Number) return ((Number) o).intValue();
-        } catch (Exception ignored) {}
-        return null;
+    // Edge list of the fastest route (graph if available, else SUMO); null if none.
+    private static java.util.List<String> routeEdges(String fromEdge, String toEdge, String typeId) {
+        RoutingGraph g = graph;
+        if (g != null) return g.route(fromEdge, toEdge, typeId);
+        return toList(findRouteEdges(fromEdge, toEdge, typeId));
     }
 
     // ===================== Long-route building helpers =====================
@@ -225,9 +257,9 @@ public final class VehicleInjection {
             addEdgeToPool(pool, rd.toEdge);
             if (rd.viaEdges != null) for (String v : rd.viaEdges) addEdgeToPool(pool, v);
         }
-        java.util.List<MapVisualisation.RoadGeom> geoms = MapVisualisation.getRoadGeoms();
-        if (geoms != null) {
-            for (MapVisualisation.RoadGeom rg : geoms) addEdgeToPool(pool, rg.edgeId);
+        EdgeTable table = edgeTable;
+        if (table != null) {
+            for (String id : table.ids) addEdgeToPool(pool, id);
         }
 
         viaPool.addAll(pool);
@@ -255,58 +287,31 @@ public final class VehicleInjection {
         return out.isEmpty() ? null : out;
     }
 
-    private static StringVector extractEdgesFromFindRouteResult(Object obj) {
-        if (obj == null) return null;
-        if (obj instanceof StringVector) return (StringVector) obj;
-
-        try {
-            Method m = obj.getClass().getMethod("getEdges");
-            Object edges = m.invoke(obj);
-            if (edges instanceof StringVector) return (StringVector) edges;
-        } catch (Exception ignored) {}
-
-        try {
-            Method m = obj.getClass().getMethod("getEdgeList");
-            Object edges = m.invoke(obj);
-            if (edges instanceof StringVector) return (StringVector) edges;
-        } catch (Exception ignored) {}
-
-        return null;
-    }
-
+    // findRoute signature/result type differ across libtraci versions; TraciCapabilities resolved them once.
     private static StringVector findRouteEdges(String fromEdge, String toEdge, String vTypeId) {
-        Object r2 = tryInvokeRet(Simulation.class, "findRoute",
-                new Class<?>[]{String.class, String.class, String.class},
-                new Object[]{fromEdge, toEdge, vTypeId});
-        StringVector sv = extractEdgesFromFindRouteResult(r2);
+        StringVector sv = TraciCapabilities.findRoute(fromEdge, toEdge, vTypeId);
         if (sv != null && sv.size() > 0) return sv;
 
-        Object r3 = tryInvokeRet(Simulation.class, "findRoute",
-                new Class<?>[]{String.class, String.class, String.class, double.class},
-                new Object[]{fromEdge, toEdge, vTypeId, Simulation.getCurrentTime()});
-        sv = extractEdgesFromFindRouteResult(r3);
+        sv = TraciCapabilities.findRoute(fromEdge, toEdge, vTypeId, Simulation.getCurrentTime());
         if (sv != null && sv.size() > 0) return sv;
 
         return null;
     }
 
     private static boolean edgeAllowsVType(String edgeId, String vTypeId) {
+        EdgeTable t = edgeTable;
+        if (t != null) return t.allows(edgeId, vTypeId); // array read; unknown edge => true
         try {
             int ln = Edge.getLaneNumber(edgeId);
             if (ln <= 0) return true;
 
             String laneId = edgeId + "_0";
-            Method m = Lane.class.getMethod("getAllowed", String.class);
-            Object allowedObj = m.invoke(null, laneId);
-
-            if (!(allowedObj instanceof StringVector)) return true;
-            StringVector allowed = (StringVector) allowedObj;
+            StringVector allowed = TraciCapabilities.laneAllowed(laneId);
+            if (allowed == null) return true;
 
             if (allowed.size() == 0) return true;
 
-            String want = "passenger";
-            if (Main.TYPE_TRUCK.equals(vTypeId)) want = "truck";
-            if (Main.TYPE_BUS.equals(vTypeId)) want = "bus";
+            String want = vClassFor(vTypeId);
 
             for (int i = 0; i < allowed.size(); i++) {
                 if (want.equalsIgnoreCase(allowed.get(i))) return true;
@@ -319,11 +324,14 @@ public final class VehicleInjection {
     }
 
     private static double safeEdgeLengthMeters(String edgeId) {
-        try {
-            String lane0 = edgeId + "_0";
-            Double len = tryInvokeDouble(Lane.class, "getLength", new Class<?>[]{String.class}, new Object[]{lane0});
-            if (len != null && len > 0 && Double.isFinite(len)) return len;
-        } catch (Exception ignore) {}
+        EdgeTable t = edgeTable;
+        if (t != null) {
+            double tl = t.length(edgeId);
+            return tl > 0 ? tl : 5.0; // array read, no TraCI (may run off the simulation thread)
+        }
+
+        double len = TraciCapabilities.laneLength(edgeId + "_0");
+        if (len > 0 && Double.isFinite(len)) return len;
         return 5.0;
     }
 
@@ -372,19 +380,105 @@ public final class VehicleInjection {
         // Route calculation (Dijkstra/A*) can be CPU intensive, so cache results.
         String key = rd.baseId + "|" + typeId;
         java.util.List<RouteVariant> cached = variantsByScenarioType.get(key);
-        if (cached != null && cached.size() >= 4) return cached;
+        // Graph variants are deterministic => fewer than 4 is final; sampled ones are retried.
+        if (cached != null && (cached.size() >= 4 || (graph != null && !cached.isEmpty()))) return cached;
+
+        java.util.List<RouteVariant> top = computeVariants(rd, typeId);
+        installVariants(rd, typeId, top);
+        return top;
+    }
 
+    /**
+     * Compute the top 4 variants without installing them. With the routing graph this touches no TraCI state
+     * (graph lookups only), so it may run on any thread; without it, only on the simulation thread.
+     */
+    private static java.util.List<RouteVariant> computeVariants(RouteDef rd, String typeId) {
         if (!edgeAllowsVType(rd.fromEdge, typeId) || !edgeAllowsVType(rd.toEdge, typeId)) {
             return Collections.emptyList();
         }
 
-        buildViaPoolOnce();
+        long buildStart = System.nanoTime();
+        RoutingGraph g = graph;
 
-        java.util.List<String> base = toList(findRouteEdges(rd.fromEdge, rd.toEdge, typeId));
+        java.util.List<String> base = routeEdges(rd.fromEdge, rd.toEdge, typeId);
         if (base == null || base.size() < 6) {
             if (base == null) base = new ArrayList<>();
         }
 
+        // 2) Candidates: diverse k-shortest paths on the graph (deterministic), else random via-points over TraCI
+        ArrayList<RouteVariant> best = (g != null)
+                ? diverseVariants(g, rd, typeId)
+                : sampleViaVariants(rd, typeId, base);
+
+        // Final fallback: use base route if we have one.
+        if (best.isEmpty() && base != null && base.size() >= 2) {
+            String sig = String.join(">", base);
+            String rid = rd.baseId + "_BASE_" + typeId + "_" + Math.abs(sig.hashCode());
+            best.add(new RouteVariant(rid, "BASE", new ArrayList<>(base), scoreRouteEdges(base)));
+        }
+
+        // Pick top 4 => A/B/C/D
+        best.sort((a, b) -> Double.compare(b.score, a.score));
+        ArrayList<RouteVariant> top = new ArrayList<>();
+        String[] names = new String[]{"A", "B", "C", "D"};
+        for (int i = 0; i < Math.min(4, best.size()); i++) {
+            RouteVariant v = best.get(i);
+            String rid = rd.baseId + "_V" + (i + 1) + "_" + typeId;
+            top.add(new RouteVariant(rid, "Variant " + names[i], v.edges, v.score));
+        }
+
+        if (!top.isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Built ").append(top.size()).append(" long variants for ").append(rd.name)
+                    .append(" type=").append(typeId).append(" (dest=").append(rd.toEdge).append(")")
+                    .append(String.format(Locale.US, " in %.0f ms", (System.nanoTime() - buildStart) / 1e6))
+                    .append(g != null ? " [graph]" : " [traci]");
+            for (RouteVariant v : top) sb.append(" | ").append(v.label).append(":edges=").append(v.edges.size());
+            Logging.LOG.info(sb.toString());
+        }
+
+        // Returns top 4 distinct route variants (A, B, C, D).
+        return top;
+    }
+
+    // Simulation thread: Route.add the variants, then publish them in the cache (never cache uninstalled ids).
+    private static void installVariants(RouteDef rd, String typeId, java.util.List<RouteVariant> top) {
+        for (RouteVariant v : top) {
+            if (installedRoutes.contains(v.routeId)) continue;
+            try {
+                StringVector sv = new StringVector();
+                for (String e : v.edges) sv.add(e);
+                Route.add(v.routeId, sv);
+                installedRoutes.add(v.routeId);
+            } catch (Exception ex) {
+                Logging.LOG.warning("Route.add failed for " + v.routeId + " (" + v.label + "): " + ex.getMessage());
+            }
+        }
+
+        variantsByScenarioType.put(rd.baseId + "|" + typeId, top);
+    }
+
+    /**
+     * Penalty-based k-shortest diverse paths on the routing graph: no sampling, bounded number of A* runs,
+     * same variants for the same scenario/type/seed. Long routes (>= LONG_MIN_EDGES) rank first.
+     */
+    private static ArrayList<RouteVariant> diverseVariants(RoutingGraph g, RouteDef rd, String typeId) {
+        long seed = variantSeed ^ ((long) rd.baseId.hashCode() << 32) ^ typeId.hashCode();
+        ArrayList<RouteVariant> best = new ArrayList<>();
+        for (java.util.List<String> edges : g.diverseRoutes(rd.fromEdge, rd.toEdge, typeId, VARIANT_CANDIDATES, seed)) {
+            if (edges.size() < 2) continue;
+            double sc = scoreRouteEdges(edges) + (edges.size() >= LONG_MIN_EDGES ? LONG_ROUTE_BONUS : 0.0);
+            String sig = String.join(">", edges);
+            best.add(new RouteVariant(rd.baseId + "_K_" + typeId + "_" + Math.abs(sig.hashCode()), "V", edges, sc));
+        }
+        best.sort((a, b) -> Double.compare(b.score, a.score));
+        return best;
+    }
+
+    // Random via-point sampling over SUMO findRoute (used when the routing graph is unavailable).
+    private static ArrayList<RouteVariant> sampleViaVariants(RouteDef rd, String typeId, java.util.List<String> base) {
+        buildViaPoolOnce();
+
         int splitIndex = Math.min(Math.max(1, PREFIX_EDGES_FOR_SPLIT - 1), Math.max(1, base.size() - 3));
         java.util.List<String> prefix = new ArrayList<>();
         if (base.size() > 0) {
@@ -401,7 +495,7 @@ public final class VehicleInjection {
             Logging.LOG.warning("Via pool very small (" + poolN + "). Long route variety may be limited.");
         }
 
-        // 2) The "via-point" algorithm
+        // The "via-point" algorithm
         // Try building a path: start -> via1 -> via2 -> end.
         // Random via points push SUMO to compute alternative routes.
         for (int t = 0; t < LONG_TRIES; t++) {
@@ -418,15 +512,14 @@ public final class VehicleInjection {
 
             if (!edgeAllowsVType(via1, typeId) || !edgeAllowsVType(via2, typeId)) continue;
 
-            // 3) Ask SUMO for sub-paths using Simulation.findRoute()
-            // This ensures the resulting route is connected and valid.
-            java.util.List<String> seg1 = toList(findRouteEdges(splitEdge, via1, typeId));
+            // Sub-paths from SUMO's findRoute: this ensures the resulting route is connected and valid.
+            java.util.List<String> seg1 = routeEdges(splitEdge, via1, typeId);
             if (seg1 == null || seg1.size() < 2) continue;
 
-            java.util.List<String> seg2 = toList(findRouteEdges(via1, via2, typeId));
+            java.util.List<String> seg2 = routeEdges(via1, via2, typeId);
             if (seg2 == null || seg2.size() < 2) continue;
 
-            java.util.List<String> seg3 = toList(findRouteEdges(via2, rd.toEdge, typeId));
+            java.util.List<String> seg3 = routeEdges(via2, rd.toEdge, typeId);
             if (seg3 == null || seg3.size() < 2) continue;
 
             ArrayList<String> combined = new ArrayList<>(prefix.size() + seg1.size() + seg2.size() + seg3.size());
@@ -448,7 +541,7 @@ public final class VehicleInjection {
                 continue;
             }
 
-            // 4) Scoring
+            // Scoring
             // Score based on length; prefer longer routes but avoid repeats/loops.
             double sc = scoreRouteEdges(combined);
             String rid = rd.baseId + "_LONG_" + typeId + "_" + Math.abs(sig.hashCode());
@@ -473,10 +566,10 @@ public final class VehicleInjection {
                 if (via1.equals(splitEdge) || via1.equals(rd.toEdge)) continue;
                 if (!edgeAllowsVType(via1, typeId)) continue;
 
-                java.util.List<String> seg1 = toList(findRouteEdges(splitEdge, via1, typeId));
+                java.util.List<String> seg1 = routeEdges(splitEdge, via1, typeId);
                 if (seg1 == null || seg1.size() < 2) continue;
 
-                java.util.List<String> seg2 = toList(findRouteEdges(via1, rd.toEdge, typeId));
+                java.util.List<String> seg2 = routeEdges(via1, rd.toEdge, typeId);
                 if (seg2 == null || seg2.size() < 2) continue;
 
                 ArrayList<String> combined = new ArrayList<>();
@@ -500,52 +593,11 @@ public final class VehicleInjection {
             }
         }
 
-        // Final fallback: use base route if we have one.
-        if (best.isEmpty() && base != null && base.size() >= 2) {
-            String sig = String.join(">", base);
-            String rid = rd.baseId + "_BASE_" + typeId + "_" + Math.abs(sig.hashCode());
-            best.add(new RouteVariant(rid, "BASE", new ArrayList<>(base), scoreRouteEdges(base)));
-        }
-
-        // Pick top 4 => A/B/C/D
-        best.sort((a, b) -> Double.compare(b.score, a.score));
-        ArrayList<RouteVariant> top = new ArrayList<>();
-        String[] names = new String[]{"A", "B", "C", "D"};
-        for (int i = 0; i < Math.min(4, best.size()); i++) {
-            RouteVariant v = best.get(i);
-            String rid = rd.baseId + "_V" + (i + 1) + "_" + typeId;
-            top.add(new RouteVariant(rid, "Variant " + names[i], v.edges, v.score));
-        }
-
-        // Install the routes into SUMO (Route.add)
-        for (RouteVariant v : top) {
-            if (installedRoutes.contains(v.routeId)) continue;
-            try {
-                StringVector sv = new StringVector();
-                for (String e : v.edges) sv.add(e);
-                Route.add(v.routeId, sv);
-                installedRoutes.add(v.routeId);
-            } catch (Exception ex) {
-                Logging.LOG.warning("Route.add failed for " + v.routeId + " (" + v.label + "): " + ex.getMessage());
-            }
-        }
-
-        variantsByScenarioType.put(key, top);
-
-        if (!top.isEmpty()) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Built ").append(top.size()).append(" long variants for ").append(rd.name)
-                    .append(" type=").append(typeId).append(" (dest=").append(rd.toEdge).append(")");
-            for (RouteVariant v : top) sb.append(" | ").append(v.label).append(":edges=").append(v.edges.size());
-            Logging.LOG.info(sb.toString());
-        }
-
-        // Returns top 4 distinct route variants (A, B, C, D).
-        return top;
+        return best;
     }
 
-    private static int pickVariantIndex() {
-        double r = RNG.nextDouble();
+    private static int pickVariantIndex(Random rng) {
+        double r = rng.nextDouble();
         double acc = 0.0;
         for (int i = 0; i < BRANCH_P.length; i++) {
             acc += BRANCH_P[i];
@@ -554,12 +606,31 @@ public final class VehicleInjection {
         return BRANCH_P.length - 1;
     }
 
+    // Variant for one vehicle (BRANCH_P weights); vars must not be empty. Manual injection: shared unseeded RNG.
+    static RouteVariant pickVariant(java.util.List<RouteVariant> vars) {
+        return pickVariant(vars, RNG);
+    }
+
+    // Same, drawing from the caller's generator (seeded OD demand => reproducible route split).
+    static RouteVariant pickVariant(java.util.List<RouteVariant> vars, Random rng) {
+        int idx = pickVariantIndex(rng);
+        if (idx >= vars.size()) idx = vars.size() - 1;
+        return vars.get(idx);
+    }
+
+    // Simulation thread: long variants for a scenario/type (built and installed on first use).
+    static java.util.List<RouteVariant> variantsFor(RouteDef rd, String typeId) {
+        return buildAndInstallLongVariants(rd, typeId);
+    }
+
     // ===================== Build dropdown scenarios (called after SUMO starts) =====================
-    public static void rebuildAllowedRoutesAndDropdown(JComboBox<RouteDef> routeCombo) {
+    public static void rebuildAllowedRoutesAndDropdown(JComboBox<RouteDef> routeCombo, SimCommandQueue commands) {
         ALLOWED_ROUTES.clear();
+        scenarioReady.clear();
+        validateRoutingGraph();
 
         for (RouteDef rd : TRIP_ROUTES.values()) {
-            java.util.List<String> base = toList(findRouteEdges(rd.fromEdge, rd.toEdge, Main.TYPE_CAR));
+            java.util.List<String> base = routeEdges(rd.fromEdge, rd.toEdge, Main.TYPE_CAR);
             if (base != null && !base.isEmpty()) ALLOWED_ROUTES.add(rd);
             else Logging.LOG.warning("Dropping invalid trip route (car can't route): " + rd.name);
         }
@@ -575,77 +646,155 @@ public final class VehicleInjection {
             else ALLOWED_ROUTES.get(i).name = "Route " + (i + 1);
         }
 
-        SwingUtilities.invokeLater(() -> {
-            DefaultComboBoxModel<RouteDef> model = new DefaultComboBoxModel<>();
-            for (RouteDef rd : ALLOWED_ROUTES) model.addElement(rd);
-            routeCombo.setModel(model);
-            routeCombo.setEnabled(model.getSize() > 0);
-            if (model.getSize() > 0) routeCombo.setSelectedIndex(0);
-        });
+        // Dropdown starts empty and fills in as scenarios become ready.
+        publishReadyScenarios(routeCombo);
 
         // Prebuild variants for all allowed routes and vehicle types.
+        long t0 = System.nanoTime();
+        RoutingGraph g = graph;
+        String[] types = {Main.TYPE_CAR, Main.TYPE_TRUCK, Main.TYPE_BUS};
+        java.util.List<CompletableFuture<Void>> all = new ArrayList<>();
+
+        // Warm start: graph variants are deterministic => reuse the on-disk cache if net/trips/parameters match.
+        File cacheFile = new File(Main.VARIANT_CACHE_PATH);
+        byte[] cacheKey = g == null ? null : VariantCache.key(MapVisualisation.netFileFromSumocfg(),
+                TRIP_ROUTES.values(), variantParameterTag());
+        Map<String, java.util.List<RouteVariant>> fromDisk = VariantCache.load(cacheFile, cacheKey);
+        boolean[] computed = {false};
+
         for (RouteDef rd : ALLOWED_ROUTES) {
-            buildAndInstallLongVariants(rd, Main.TYPE_CAR);
-            buildAndInstallLongVariants(rd, Main.TYPE_TRUCK);
-            buildAndInstallLongVariants(rd, Main.TYPE_BUS);
+            CompletableFuture<Void> done = scenarioReady(rd);
+            done.whenComplete((x, err) -> {
+                if (err == null) ready = true;
+                else Logging.LOG.log(java.util.logging.Level.WARNING, "Variant precompute failed for " + rd.name, err);
+                publishReadyScenarios(routeCombo);
+            });
+            all.add(done);
+
+            if (fromDisk != null && hasAllTypes(fromDisk, rd, types)) {
+                // Cache hit: only Route.add left to do (we are on the simulation thread).
+                for (String type : types) installVariants(rd, type, fromDisk.get(rd.baseId + "|" + type));
+                done.complete(null);
+                continue;
+            }
+            computed[0] = true;
+
+            if (g == null) {
+                // TraCI routing: has to stay on this thread, one scenario after the other.
+                for (String type : types) buildAndInstallLongVariants(rd, type);
+                done.complete(null);
+                continue;
+            }
+
+            // Graph routing: one fork-join task per (scenario, type), each with its own seeded RNG stream
+            // (see diverseVariants); Route.add goes back to the simulation thread through the command queue.
+            java.util.List<CompletableFuture<java.util.List<RouteVariant>>> perType = new ArrayList<>();
+            for (String type : types) {
+                perType.add(CompletableFuture.supplyAsync(() -> computeVariants(rd, type), VARIANT_POOL));
+            }
+            CompletableFuture.allOf(perType.toArray(new CompletableFuture<?>[0]))
+                    .thenCompose(x -> commands.run("install variants " + rd.name, () -> {
+                        for (int i = 0; i < types.length; i++) installVariants(rd, types[i], perType.get(i).join());
+                    }))
+                    .whenComplete((x, err) -> {
+                        if (err == null) done.complete(null);
+                        else done.completeExceptionally(err);
+                    });
         }
 
-        ready = !ALLOWED_ROUTES.isEmpty();
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).whenComplete((x, err) -> {
+            Logging.LOG.info(String.format(Locale.US, "Variants ready: scenarios=%d in %.0f ms (%s)",
+                    ALLOWED_ROUTES.size(), (System.nanoTime() - t0) / 1e6,
+                    !computed[0] ? "from cache" : g != null ? "parallelism " + VARIANT_POOL.getParallelism() : "sequential TraCI"));
+            if (err != null || !computed[0] || cacheKey == null) return;
+
+            Map<String, java.util.List<RouteVariant>> snapshot = new LinkedHashMap<>();
+            for (RouteDef rd : ALLOWED_ROUTES) {
+                for (String type : types) {
+                    java.util.List<RouteVariant> vars = variantsByScenarioType.get(rd.baseId + "|" + type);
+                    if (vars != null) snapshot.put(rd.baseId + "|" + type, vars);
+                }
+            }
+            CompletableFuture.runAsync(() -> VariantCache.save(cacheFile, cacheKey, snapshot), VARIANT_POOL);
+        });
         Logging.LOG.info("Dropdown built. Scenarios=" + ALLOWED_ROUTES.size());
     }
 
+    private static boolean hasAllTypes(Map<String, java.util.List<RouteVariant>> m, RouteDef rd, String[] types) {
+        for (String type : types) if (!m.containsKey(rd.baseId + "|" + type)) return false;
+        return true;
+    }
+
+    // Generation parameters that change the variants (part of the cache key).
+    private static String variantParameterTag() {
+        return "cand=" + VARIANT_CANDIDATES + " long=" + LONG_MIN_EDGES + " bonus=" + LONG_ROUTE_BONUS
+                + " seed=" + variantSeed + " " + RoutingGraph.parameterTag();
+    }
+
+    /** Completes once the car/truck/bus variants of the scenario are installed in SUMO. */
+    static CompletableFuture<Void> scenarioReady(RouteDef rd) {
+        return scenarioReady.computeIfAbsent(rd.baseId, k -> new CompletableFuture<>());
+    }
+
+    // Dropdown = allowed scenarios that are ready, in ALLOWED_ROUTES order (selection kept).
+    private static void publishReadyScenarios(JComboBox<RouteDef> routeCombo) {
+        SwingUtilities.invokeLater(() -> {
+            Object selected = routeCombo.getSelectedItem();
+            DefaultComboBoxModel<RouteDef> model = new DefaultComboBoxModel<>();
+            synchronized (ALLOWED_ROUTES) {
+                for (RouteDef rd : ALLOWED_ROUTES) {
+                    CompletableFuture<Void> f = scenarioReady.get(rd.baseId);
+                    if (f != null && f.isDone() && !f.isCompletedExceptionally()) model.addElement(rd);
+                }
+            }
+            routeCombo.setModel(model);
+            routeCombo.setEnabled(model.getSize() > 0);
+            if (selected != null && model.getIndexOf(selected) >= 0) routeCombo.setSelectedItem(selected);
+            else if (model.getSize() > 0) routeCombo.setSelectedIndex(0);
+        });
+    }
+
     // ===================== Vehicle injection =====================
     /**
-     * Robust injection:
-     * Tries a complex "add" method first, falls back to a simple "add" if the API is older.
-     * This ensures compatibility across different SUMO versions.
+     * Queue an injection of n vehicles (called on the EDT, never blocks).
+     * Variant building and scheduling run on the simulation thread via the command queue; the vehicles are
+     * then handed to SUMO by the InjectionEngine, departures spread evenly over spreadSec of sim time.
+     * The future completes with the number of vehicles scheduled.
      */
-    private static void addVehicleRobust(String vehId, String routeId, String typeId) throws Exception {
-        boolean used = false;
-        try {
-            // Attempt to call the complex "add" method (with departPos, departSpeed, etc.).
-            Method m = Vehicle.class.getMethod("add",
-                    String.class, String.class, String.class,
-                    double.class, String.class, double.class, double.class);
-            m.invoke(null, vehId, routeId, typeId,
-                    Simulation.getCurrentTime(),
-                    "best", 0.0, -1.0);
-            used = true;
-        } catch (Exception ignored) {}
-
-        // Fallback: simple addition.
-        // If the complex method doesn't exist (older API), use the simple one.
-        if (!used) Vehicle.add(vehId, routeId, typeId);
-    }
-
-    public static void injectVehicles(JFrame owner, String typeId, RouteDef rd, int n) {
+    public static CompletableFuture<Integer> injectVehicles(JFrame owner, SimCommandQueue commands, InjectionEngine engine,
+                                                            String typeId, RouteDef rd, int n, double spreadSec) {
         if (!ready) {
             JOptionPane.showMessageDialog(owner, "Not ready yet. Press Start Simulation first.",
                     "Not Ready", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
-        if (rd == null) return;
-
-        java.util.List<RouteVariant> vars = buildAndInstallLongVariants(rd, typeId);
-        if (vars == null || vars.isEmpty()) {
-            JOptionPane.showMessageDialog(owner,
-                    "Could not build long routes for this scenario/type.\nTry another scenario.",
-                    "No Long Routes", JOptionPane.ERROR_MESSAGE);
-            return;
+            return CompletableFuture.completedFuture(0);
         }
+        if (rd == null) return CompletableFuture.completedFuture(0);
+
+        return commands.submit("inject " + n + " " + typeId + " on " + rd.name, () -> {
+            java.util.List<RouteVariant> vars = buildAndInstallLongVariants(rd, typeId);
+            if (vars == null || vars.isEmpty()) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(owner,
+                        "Could not build long routes for this scenario/type.\nTry another scenario.",
+                        "No Long Routes", JOptionPane.ERROR_MESSAGE));
+                return 0;
+            }
 
-        for (int i = 0; i < n; i++) {
-            int idx = pickVariantIndex();
-            if (idx >= vars.size()) idx = vars.size() - 1;
-            RouteVariant chosen = vars.get(idx);
-
-            String vehId = typeId + "_" + (System.nanoTime() & 0x7FFFFFFF);
-            try {
-                addVehicleRobust(vehId, chosen.routeId, typeId);
-            } catch (Exception ex) {
-                Logging.LOG.log(java.util.logging.Level.SEVERE,
-                        "Vehicle.add failed for " + vehId + " route=" + chosen.routeId, ex);
+            double now = Simulation.getCurrentTime();
+            double spread = Math.max(0.0, spreadSec);
+            for (int i = 0; i < n; i++) {
+                RouteVariant chosen = pickVariant(vars);
+                String firstEdge = chosen.edges.isEmpty() ? null : chosen.edges.get(0);
+                engine.schedule(chosen.routeId, typeId, firstEdge, now + spread * i / n);
             }
-        }
+            Logging.LOG.info(String.format(Locale.US, "Scheduled %d %s on %s over %.1f s", n, typeId, rd.name, spread));
+            return n;
+        });
+    }
+
+    // SUMO vehicle class for our vType ids
+    static String vClassFor(String typeId) {
+        if (Main.TYPE_TRUCK.equals(typeId)) return "truck";
+        if (Main.TYPE_BUS.equals(typeId)) return "bus";
+        return "passenger";
     }
 }
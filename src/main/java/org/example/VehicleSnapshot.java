@@ -0,0 +1,54 @@
+// ===================== VehicleSnapshot.java =====================
+package org.example;
+
+/**
+ * Columnar (struct-of-arrays) vehicle frame handed from the simulation thread to the map painter.
+ * Row i = one vehicle: slot[i], x[i], y[i], speed[i], type[i].
+ *
+ * Arrays only grow (doubling) when the fleet gets bigger than ever before; in steady state
+ * writing a frame allocates nothing. Instances are recycled by VehicleSnapshotBuffer.
+ */
+final class VehicleSnapshot {
+
+    // Compact type codes (index into TYPE_NAMES)
+    static final byte TYPE_CAR = 0;
+    static final byte TYPE_TRUCK = 1;
+    static final byte TYPE_BUS = 2;
+    static final String[] TYPE_NAMES = {Main.TYPE_CAR, Main.TYPE_TRUCK, Main.TYPE_BUS};
+
+    int count;
+    long seq; // publish sequence number (0 = never published)
+
+    int[] slot;
+    double[] x, y, speed;
+    byte[] type;
+
+    VehicleSnapshot(int initialCapacity) {
+        int cap = Math.max(16, initialCapacity);
+        slot = new int[cap];
+        x = new double[cap];
+        y = new double[cap];
+        speed = new double[cap];
+        type = new byte[cap];
+    }
+
+    // Append one vehicle row (grows arrays only if needed).
+    void add(int slotId, double px, double py, double sp, byte typeCode) {
+        if (count == slot.length) grow();
+        int i = count++;
+        slot[i] = slotId;
+        x[i] = px;
+        y[i] = py;
+        speed[i] = sp;
+        type[i] = typeCode;
+    }
+
+    private void grow() {
+        int cap = slot.length * 2;
+        slot = java.util.Arrays.copyOf(slot, cap);
+        x = java.util.Arrays.copyOf(x, cap);
+        y = java.util.Arrays.copyOf(y, cap);
+        speed = java.util.Arrays.copyOf(speed, cap);
+        type = java.util.Arrays.copyOf(type, cap);
+    }
+}
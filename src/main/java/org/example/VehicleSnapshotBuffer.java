@@ -0,0 +1,50 @@
+// ===================== VehicleSnapshotBuffer.java =====================
+package org.example;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free triple buffer for VehicleSnapshot (one writer = simulation thread, one reader = EDT painter).
+ *
+ * - back   : owned by the writer, filled in place
+ * - middle : last published frame, exchanged with a single atomic swap
+ * - front  : owned by the reader, stays untouched while it is being painted
+ *
+ * The painter therefore always sees one complete, consistent frame (never half-updated),
+ * and neither side blocks or allocates.
+ */
+final class VehicleSnapshotBuffer {
+
+    private final AtomicReference<VehicleSnapshot> middle;
+    private VehicleSnapshot back;   // writer only
+    private VehicleSnapshot front;  // reader only
+    private long seq = 0;           // writer only
+
+    VehicleSnapshotBuffer(int initialCapacity) {
+        back = new VehicleSnapshot(initialCapacity);
+        front = new VehicleSnapshot(initialCapacity);
+        middle = new AtomicReference<>(new VehicleSnapshot(initialCapacity));
+    }
+
+    // ===================== Writer side (simulation thread) =====================
+    // Start a new frame: returns the (cleared) back buffer to fill.
+    VehicleSnapshot beginWrite() {
+        back.count = 0;
+        return back;
+    }
+
+    // Publish the back buffer; the writer continues with whatever frame was in the middle slot.
+    void publish() {
+        back.seq = ++seq;
+        back = middle.getAndSet(back);
+    }
+
+    // ===================== Reader side (EDT) =====================
+    // Latest published frame; valid until the next acquire() call from the same (single) reader.
+    VehicleSnapshot acquire() {
+        if (middle.get().seq > front.seq) {
+            front = middle.getAndSet(front);
+        }
+        return front;
+    }
+}
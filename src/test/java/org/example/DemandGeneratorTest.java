@@ -0,0 +1,56 @@
+// ===================== DemandGeneratorTest.java =====================
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DemandGeneratorTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void sameSeedSchedulesSameRoutesTypesAndTimes() throws IOException {
+        File od = tmp.resolve("od.csv").toFile();
+        Files.writeString(od.toPath(), "from_edge,to_edge,type,veh_per_hour\n"
+                + "a,b,car,1200\n"
+                + "a,c,truck,300\n"
+                + "b,c,bus,120\n", StandardCharsets.UTF_8);
+
+        List<String> first = schedule(od, 7);
+        List<String> second = schedule(od, 7);
+
+        assertTrue(first.size() > 100);
+        assertEquals(first, second);
+        assertNotEquals(first, schedule(od, 8));
+    }
+
+    // 10 min of demand in 1 s windows (like the headless loop), as "route type depart" in release order
+    private static List<String> schedule(File od, long seed) throws IOException {
+        DemandGenerator demand = DemandGenerator.load(od, null, seed);
+        demand.prepare(DemandGeneratorTest::fixedVariants);
+        InjectionEngine engine = new InjectionEngine();
+        for (int t = 0; t < 600; t++) demand.generate(t, t + 1, engine);
+        return engine.scheduledInOrder();
+    }
+
+    // Four variants per OD pair (A..D, picked with the BRANCH_P weights)
+    private static List<VehicleInjection.RouteVariant> fixedVariants(VehicleInjection.RouteDef rd, String typeId) {
+        List<VehicleInjection.RouteVariant> vars = new ArrayList<>();
+        for (String label : new String[] {"A", "B", "C", "D"}) {
+            String routeId = rd.baseId + "_" + typeId + "_" + label;
+            vars.add(new VehicleInjection.RouteVariant(routeId, label, List.of(rd.fromEdge, rd.toEdge), 0.0));
+        }
+        return vars;
+    }
+}
@@ -0,0 +1,155 @@
+// ===================== FakeSimBackend.java =====================
+package org.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Scripted stand-in for SUMO: fixed trips (depart/arrive time, constant speed and waiting time),
+// stepped with SUMO semantics (step(target) runs whole deltaT steps; departed/arrived cover the last one).
+// Every SimBackend call counts as one TraCI round-trip (calls) and can be given a modelled latency.
+final class FakeSimBackend implements SimBackend {
+
+    static final class Trip {
+        final String id;
+        final double depart, arrive, speed, waitSec;
+
+        Trip(String id, double depart, double arrive, double speed, double waitSec) {
+            this.id = id;
+            this.depart = depart;
+            this.arrive = arrive;
+            this.speed = speed;
+            this.waitSec = waitSec;
+        }
+    }
+
+    private final double deltaT;
+    private final List<Trip> trips;
+    private final Map<String, Trip> byId = new HashMap<>();
+    private final List<Trip> live = new ArrayList<>();
+    private final Set<String> subscribed = new HashSet<>();
+    private boolean subscriptions = true;
+    private long steps = 0;
+    private int nextDepart = 0; // trips sorted by depart time
+    private final List<String> departed = new ArrayList<>();
+    private final List<String> arrived = new ArrayList<>();
+
+    // Every target passed to step(), in call order
+    final List<Double> stepTargets = new ArrayList<>();
+
+    // Round-trips so far, and the modelled latency of one (busy wait; 0 => none)
+    long calls = 0;
+    long roundTripNanos = 0;
+
+    FakeSimBackend(double deltaT, List<Trip> trips) {
+        this.deltaT = deltaT;
+        this.trips = new ArrayList<>(trips);
+        this.trips.sort((a, b) -> Double.compare(a.depart, b.depart));
+        for (Trip trip : trips) byId.put(trip.id, trip);
+    }
+
+    // Behave like a libtraci build without the subscription API
+    FakeSimBackend withoutSubscriptions() {
+        subscriptions = false;
+        return this;
+    }
+
+    @Override public double deltaT() { roundTrip(); return deltaT; }
+
+    @Override public double currentTime() { roundTrip(); return now(); }
+
+    @Override public void step(double targetTime) {
+        roundTrip();
+        stepTargets.add(targetTime);
+        do {
+            departed.clear();
+            arrived.clear();
+            steps++;
+            double t = now();
+            for (int k = live.size() - 1; k >= 0; k--) {
+                Trip trip = live.get(k);
+                if (trip.arrive > t) continue;
+                arrived.add(trip.id);
+                subscribed.remove(trip.id);
+                live.set(k, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+            }
+            while (nextDepart < trips.size() && trips.get(nextDepart).depart <= t) {
+                Trip trip = trips.get(nextDepart++);
+                departed.add(trip.id);
+                if (trip.arrive > t) live.add(trip);
+                else arrived.add(trip.id); // in and out within one step
+            }
+        } while (now() < targetTime - 1e-9);
+    }
+
+    @Override public int minExpectedNumber() {
+        roundTrip();
+        return live.size() + trips.size() - nextDepart;
+    }
+
+    @Override public int arrivedNumber() { roundTrip(); return arrived.size(); }
+
+    @Override public List<String> departedIds() { roundTrip(); return new ArrayList<>(departed); }
+
+    @Override public List<String> arrivedIds() { roundTrip(); return new ArrayList<>(arrived); }
+
+    @Override public List<String> vehicleIds() {
+        roundTrip();
+        List<String> ids = new ArrayList<>(live.size());
+        for (Trip trip : live) ids.add(trip.id);
+        return ids;
+    }
+
+    @Override public void position(String vehId, double[] xy) {
+        roundTrip();
+        Trip trip = trip(vehId);
+        xy[0] = x(trip);
+        xy[1] = y(trip);
+    }
+
+    @Override public double speed(String vehId) { roundTrip(); return trip(vehId).speed; }
+
+    @Override public double waitingTimeSec(String vehId) { roundTrip(); return trip(vehId).waitSec; }
+
+    @Override public boolean supportsSubscriptions() { return subscriptions; }
+
+    @Override public boolean subscribe(String vehId) {
+        roundTrip();
+        Trip trip = byId.get(vehId);
+        if (trip == null || trip.depart > now() || trip.arrive <= now()) return false;
+        subscribed.add(vehId);
+        return true;
+    }
+
+    @Override public void readSubscribed(SubscribedVehicles out) {
+        roundTrip();
+        for (Trip trip : live) {
+            if (subscribed.contains(trip.id)) out.accept(trip.id, x(trip), y(trip), trip.speed, trip.waitSec, null);
+        }
+    }
+
+    private double now() { return steps * deltaT; }
+
+    private double x(Trip trip) { return trip.speed * (now() - trip.depart); }
+
+    private double y(Trip trip) { return trip.id.hashCode() % 1000; }
+
+    private Trip trip(String vehId) {
+        Trip trip = byId.get(vehId);
+        if (trip == null || trip.depart > now() || trip.arrive <= now()) {
+            throw new IllegalArgumentException("Vehicle not in the network: " + vehId);
+        }
+        return trip;
+    }
+
+    private void roundTrip() {
+        calls++;
+        if (roundTripNanos <= 0) return;
+        long until = System.nanoTime() + roundTripNanos;
+        while (System.nanoTime() < until) Thread.onSpinWait();
+    }
+}
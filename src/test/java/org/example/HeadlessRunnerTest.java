@@ -0,0 +1,150 @@
+// ===================== HeadlessRunnerTest.java =====================
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Headless loop against FakeSimBackend: no SUMO installation or native libtraci needed.
+class HeadlessRunnerTest {
+
+    @TempDir
+    Path tmp;
+
+    // car from 1 s on (moving), truck 3..5 s and bus from 4 s on (both stopped),
+    // plus a car that enters and leaves between two samples (5..6 s: never collected, still an arrival)
+    private static FakeSimBackend backend() {
+        return new FakeSimBackend(1.0, List.of(
+                new FakeSimBackend.Trip("car_0", 1.0, 100.0, 10.0, 0.0),
+                new FakeSimBackend.Trip("truck_1", 3.0, 5.0, 0.0, 2.0),
+                new FakeSimBackend.Trip("bus_2", 4.0, 100.0, 0.0, 4.0),
+                new FakeSimBackend.Trip("car_3", 5.0, 6.0, 10.0, 0.0)));
+    }
+
+    @Test
+    void samplesEveryIntervalAndStopsAtDuration() throws Exception {
+        HeadlessRunner.Options opt = HeadlessRunner.Options.parse(
+                new String[] {"--headless", "--duration", "7", "--sample", "2"});
+        FakeSimBackend sim = backend();
+
+        List<LiveConnectionSumo.MetricRow> rows = HeadlessRunner.simulate(opt, sim, null);
+
+        // One sample every 2 s, stepped per SUMO step; the last window is cut at --duration
+        // although vehicles are still in the network
+        assertEquals(List.of(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0), sim.stepTargets);
+        assertEquals(4, rows.size());
+        assertEquals(7.0, rows.get(3).simTime, 1e-9);
+
+        File csv = tmp.resolve("metrics.csv").toFile();
+        LiveConnectionSumo.writeMetricsCsv(csv, rows, "", 0.0);
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).startsWith("export_local_time,sim_time,active_vehicles,"));
+
+        // sim_time, active, stopped, congestion, avg_wait, mean_speed, throughput, speed_factor (0 = unlimited)
+        assertRow(lines.get(1), "2.00", "1", "0", "0.0000", "0.000", "10.000", "0.00", "0.00");
+        assertRow(lines.get(2), "4.00", "3", "2", "0.6667", "2.000", "3.333", "0.00", "0.00");
+        // truck_1 and car_3 arrived: 2 in the 300 s window => 24 veh/h
+        assertRow(lines.get(3), "6.00", "2", "1", "0.5000", "2.000", "5.000", "24.00", "0.00");
+        assertRow(lines.get(4), "7.00", "2", "1", "0.5000", "2.000", "5.000", "24.00", "0.00");
+
+        // visible_vehicles, visible_cars, visible_trucks, visible_buses (no filter => all visible)
+        assertArrayEquals(new String[] {"3", "1", "1", "1"}, columns(lines.get(2), 10, 14));
+        assertArrayEquals(new String[] {"2", "1", "0", "1"}, columns(lines.get(3), 10, 14));
+    }
+
+    @Test
+    void endsEarlyWhenNetworkIsEmpty() throws Exception {
+        HeadlessRunner.Options opt = HeadlessRunner.Options.parse(new String[] {"--sample", "2"});
+        FakeSimBackend sim = new FakeSimBackend(1.0, List.of(
+                new FakeSimBackend.Trip("car_0", 1.0, 5.0, 10.0, 0.0)));
+
+        List<LiveConnectionSumo.MetricRow> rows = HeadlessRunner.simulate(opt, sim, null);
+
+        assertEquals(3600.0, opt.durationSec, 0.0);
+        assertEquals(List.of(1.0, 2.0, 3.0, 4.0, 5.0, 6.0), sim.stepTargets);
+        assertEquals(3, rows.size());
+        assertEquals(0, rows.get(2).activeVehicles);
+    }
+
+    @Test
+    void pollingGivesTheSameRowsAsSubscriptions() throws Exception {
+        String[] args = {"--duration", "7", "--sample", "1"};
+        HeadlessRunner.Options subscribed = HeadlessRunner.Options.parse(args);
+        HeadlessRunner.Options polling = HeadlessRunner.Options.parse(
+                new String[] {"--duration", "7", "--sample", "1", "--polling"});
+        assertTrue(subscribed.useSubscriptions);
+        assertFalse(polling.useSubscriptions);
+
+        FakeSimBackend subscribedSim = backend();
+        FakeSimBackend pollingSim = backend();
+        List<String> expected = csvWithoutTimestamps(HeadlessRunner.simulate(subscribed, subscribedSim, null));
+        assertEquals(expected, csvWithoutTimestamps(HeadlessRunner.simulate(polling, pollingSim, null)));
+        // Same result from a backend without the subscription API (collector falls back to polling)
+        assertEquals(expected, csvWithoutTimestamps(
+                HeadlessRunner.simulate(subscribed, backend().withoutSubscriptions(), null)));
+
+        // Fewer round-trips with subscriptions, even with at most 3 vehicles
+        assertTrue(subscribedSim.calls < pollingSim.calls);
+    }
+
+    @Test
+    void seedIsPassedToSumoOnlyWhenGiven() {
+        HeadlessRunner.Options seeded = HeadlessRunner.Options.parse(new String[] {"--seed", "42"});
+        HeadlessRunner.Options unseeded = HeadlessRunner.Options.parse(new String[0]);
+        assertEquals(42L, seeded.seed);
+        assertEquals(-1L, unseeded.seed);
+
+        List<String> cmd = SumoLauncher.headlessCommand("missing.sumocfg", "vtypes.rou.xml", seeded.seed);
+        int i = cmd.indexOf("--seed");
+        assertTrue(i > 0);
+        assertEquals("42", cmd.get(i + 1));
+
+        assertFalse(SumoLauncher.headlessCommand("missing.sumocfg", "vtypes.rou.xml", unseeded.seed).contains("--seed"));
+    }
+
+    @Test
+    void additionalFilesKeepTheConfigOwnList() throws IOException {
+        File cfg = tmp.resolve("run.sumocfg").toFile();
+        Files.writeString(cfg.toPath(), "<configuration><input>"
+                + "<additional-files value=\"detectors.add.xml, tls.add.xml\"/>"
+                + "</input></configuration>", StandardCharsets.UTF_8);
+
+        List<String> cmd = SumoLauncher.headlessCommand(cfg.getPath(), "vtypes.rou.xml", -1);
+        String files = cmd.get(cmd.indexOf("--additional-files") + 1);
+
+        assertEquals("vtypes.rou.xml,"
+                + new File(tmp.toFile().getAbsoluteFile(), "detectors.add.xml").getPath() + ","
+                + new File(tmp.toFile().getAbsoluteFile(), "tls.add.xml").getPath(), files);
+        assertEquals("vtypes.rou.xml",
+                SumoLauncher.mergedAdditionalFiles(tmp.resolve("none.sumocfg").toString(), "vtypes.rou.xml"));
+    }
+
+    private List<String> csvWithoutTimestamps(List<LiveConnectionSumo.MetricRow> rows) throws IOException {
+        File csv = Files.createTempFile(tmp, "metrics", ".csv").toFile();
+        LiveConnectionSumo.writeMetricsCsv(csv, rows, "", 0.0);
+        List<String> out = new ArrayList<>();
+        for (String line : Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8)) {
+            out.add(line.substring(line.indexOf(',') + 1));
+        }
+        return out;
+    }
+
+    private static void assertRow(String line, String... expected) {
+        assertArrayEquals(expected, columns(line, 1, 9), line);
+    }
+
+    private static String[] columns(String line, int from, int to) {
+        return Arrays.copyOfRange(line.split(","), from, to);
+    }
+}
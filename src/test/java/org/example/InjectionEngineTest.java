@@ -0,0 +1,30 @@
+// ===================== InjectionEngineTest.java =====================
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InjectionEngineTest {
+
+    @Test
+    void injectedIdsAreUniqueAndKeepTheirType() {
+        InjectionEngine engine = new InjectionEngine();
+        String car = engine.schedule("r0", Main.TYPE_CAR, "e0", 0.0);
+        String truck = engine.schedule("r0", Main.TYPE_TRUCK, "e0", 0.0);
+        String bus = engine.schedule("r0", Main.TYPE_BUS, "e0", 0.0);
+
+        // A cfg vehicle named like an old injected id ("truck_1") can no longer collide
+        assertEquals("inj_car_0", car);
+        assertEquals("inj_truck_1", truck);
+        assertEquals("inj_bus_2", bus);
+        assertEquals(3, engine.waitingInEngine());
+
+        // Polling path: no vType from SUMO, type comes from the id
+        assertEquals(VehicleSnapshot.TYPE_CAR, VehicleCollector.classifyType(null, car));
+        assertEquals(VehicleSnapshot.TYPE_TRUCK, VehicleCollector.classifyType(null, truck));
+        assertEquals(VehicleSnapshot.TYPE_BUS, VehicleCollector.classifyType(null, bus));
+        assertEquals(VehicleSnapshot.TYPE_BUS, VehicleCollector.classifyType(null, "bus_7"));
+        assertEquals(VehicleSnapshot.TYPE_CAR, VehicleCollector.classifyType(null, "inj_x_3"));
+    }
+}
@@ -0,0 +1,115 @@
+// ===================== TraciCapabilitiesBench.java =====================
+package org.example;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Microbenchmark for the TraciCapabilities approach (plain harness, run with: mvn -Pbench test).
+ *
+ * Compares a cached MethodHandle called with invokeExact (what TraciCapabilities does) against the former
+ * per-call Class.getMethod + Method.invoke, for an optional method that exists and for one that does not
+ * (null check vs swallowed NoSuchMethodException). The target is a dummy class, so no libtraci is needed.
+ */
+final class TraciCapabilitiesBench {
+
+    private TraciCapabilitiesBench() {}
+
+    // Stands in for Vehicle: one optional method present, the other one missing.
+    public static final class Target {
+        public static double getWaitingTime(String vehId) { return vehId.length() * 0.5; }
+    }
+
+    private static final MethodType WAIT_TYPE = MethodType.methodType(double.class, String.class);
+
+    // Resolved like TraciCapabilities.resolve: once, static final (constant for the JIT)
+    private static final MethodHandle PRESENT = resolve("getWaitingTime");
+    private static final MethodHandle MISSING = resolve("getAccumulatedWaitingTime");
+
+    private static final int CALLS_PER_ROUND = 2_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private static final String[] IDS = {"car_0", "truck_12", "bus_345", "inj_car_6789"};
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(String.format(Locale.US, "%-38s %12s %12s", "case", "ns/call", "min ns/call"));
+        report("MethodHandle.invokeExact (present)", TraciCapabilitiesBench::handlePresent);
+        report("getMethod + invoke (present)", TraciCapabilitiesBench::reflectPresent);
+        report("MethodHandle null check (missing)", TraciCapabilitiesBench::handleMissing);
+        report("getMethod + swallowed NSME (missing)", TraciCapabilitiesBench::reflectMissing);
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // ===================== Cases (one round each, result fed to the sink) =====================
+    private static double handlePresent() {
+        double sum = 0;
+        for (int i = 0; i < CALLS_PER_ROUND; i++) sum += waitingTimeByHandle(PRESENT, IDS[i & 3]);
+        return sum;
+    }
+
+    private static double reflectPresent() {
+        double sum = 0;
+        for (int i = 0; i < CALLS_PER_ROUND; i++) sum += waitingTimeByReflection("getWaitingTime", IDS[i & 3]);
+        return sum;
+    }
+
+    private static double handleMissing() {
+        double sum = 0;
+        for (int i = 0; i < CALLS_PER_ROUND; i++) sum += waitingTimeByHandle(MISSING, IDS[i & 3]);
+        return sum;
+    }
+
+    private static double reflectMissing() {
+        double sum = 0;
+        for (int i = 0; i < CALLS_PER_ROUND; i++) sum += waitingTimeByReflection("getAccumulatedWaitingTime", IDS[i & 3]);
+        return sum;
+    }
+
+    // Same shape as TraciCapabilities.vehicleWaitingTimeSec
+    private static double waitingTimeByHandle(MethodHandle h, String vehId) {
+        if (h == null) return Double.NaN;
+        try { return (double) h.invokeExact(vehId); }
+        catch (Throwable t) { return Double.NaN; }
+    }
+
+    // The former per-call lookup
+    private static double waitingTimeByReflection(String name, String vehId) {
+        try {
+            Method m = Target.class.getMethod(name, String.class);
+            return ((Number) m.invoke(null, vehId)).doubleValue();
+        } catch (Exception ex) {
+            return Double.NaN;
+        }
+    }
+
+    // ===================== Harness =====================
+    private interface Round { double run(); }
+
+    private static double sink; // results are consumed here so the JIT cannot drop the calls
+
+    private static void report(String name, Round round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) sink += round.run();
+        double[] ns = new double[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long t0 = System.nanoTime();
+            sink += round.run();
+            ns[i] = (System.nanoTime() - t0) / (double) CALLS_PER_ROUND;
+        }
+        Arrays.sort(ns);
+        System.out.println(String.format(Locale.US, "%-38s %12.2f %12.2f", name, ns[ROUNDS / 2], ns[0]));
+    }
+
+    private static MethodHandle resolve(String name) {
+        try {
+            Method m = Target.class.getMethod(name, WAIT_TYPE.parameterArray());
+            return MethodHandles.publicLookup().unreflect(m).asType(WAIT_TYPE);
+        } catch (Exception | LinkageError ex) {
+            return null;
+        }
+    }
+}
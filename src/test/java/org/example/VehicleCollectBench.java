@@ -0,0 +1,76 @@
+// ===================== VehicleCollectBench.java =====================
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Step latency of VehicleCollector: subscriptions vs per-vehicle polling (plain harness, run with:
+ * mvn -Pbench test; no SUMO needed).
+ *
+ * FakeSimBackend holds a steady fleet (every vehicle stays 600 s, departures spread evenly, so a few
+ * vehicles enter and leave on every step) and counts every backend call as one TraCI round-trip.
+ * Calls per step are exact for the collector's logic; time per step is measured with no added latency
+ * (Java-side cost) and with a modelled round-trip latency (busy wait per call).
+ * On a real SUMO run the same comparison is the collector's FINE log line, switched with --polling.
+ */
+final class VehicleCollectBench {
+
+    private VehicleCollectBench() {}
+
+    private static final double TRIP_SEC = 600.0;
+    private static final int MEASURED_STEPS = 20;
+    private static final long[] ROUND_TRIP_NANOS = {0L, 30_000L};
+    private static final int[] FLEETS = {500, 5000};
+
+    public static void main(String[] args) {
+        System.out.println(String.format(Locale.US, "%-8s %-14s %12s %14s %16s",
+                "vehicles", "path", "calls/step", "ms/step (0us)", "ms/step (30us)"));
+        for (int n : FLEETS) {
+            for (boolean subscriptions : new boolean[] {true, false}) {
+                double calls = 0;
+                StringBuilder times = new StringBuilder();
+                for (long rtt : ROUND_TRIP_NANOS) {
+                    double[] r = run(n, subscriptions, rtt);
+                    calls = r[0];
+                    times.append(String.format(Locale.US, " %15.2f", r[1]));
+                }
+                System.out.println(String.format(Locale.US, "%-8d %-14s %12.1f%s", n,
+                        subscriptions ? "subscriptions" : "polling", calls, times));
+            }
+        }
+    }
+
+    // {calls per collect, ms per collect} over MEASURED_STEPS single steps once the fleet is full
+    private static double[] run(int vehicles, boolean subscriptions, long roundTripNanos) {
+        List<FakeSimBackend.Trip> trips = new ArrayList<>();
+        double spacing = TRIP_SEC / vehicles;
+        int total = (int) Math.ceil((TRIP_SEC + MEASURED_STEPS + 2) / spacing);
+        for (int i = 0; i < total; i++) {
+            double depart = 0.5 + i * spacing;
+            trips.add(new FakeSimBackend.Trip(VehicleSnapshot.TYPE_NAMES[i % 3] + "_" + i, depart, depart + TRIP_SEC,
+                    (i % 7 == 0) ? 0.0 : 10.0, (i % 7 == 0) ? 12.0 : 0.0));
+        }
+        FakeSimBackend sim = new FakeSimBackend(1.0, trips);
+        VehicleCollector collector = new VehicleCollector(sim, subscriptions);
+
+        // Fill the network (collected every step, no latency), then measure
+        for (int s = 1; s <= TRIP_SEC; s++) {
+            sim.step(s);
+            collector.collect(false);
+        }
+        long calls = 0, nanos = 0;
+        for (int s = 1; s <= MEASURED_STEPS; s++) {
+            sim.roundTripNanos = 0;
+            sim.step(TRIP_SEC + s);
+            sim.roundTripNanos = roundTripNanos;
+            long c0 = sim.calls, t0 = System.nanoTime();
+            collector.collect(false);
+            nanos += System.nanoTime() - t0;
+            calls += sim.calls - c0;
+        }
+        if (collector.liveCount() < vehicles * 0.95) throw new IllegalStateException("fleet not full: " + collector.liveCount());
+        return new double[] {calls / (double) MEASURED_STEPS, nanos / 1e6 / MEASURED_STEPS};
+    }
+}
@@ -0,0 +1,162 @@
+// ===================== VehicleHandoffBench.java =====================
+package org.example;
+
+import java.awt.geom.Point2D;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GC pressure of the vehicle handoff from the compute stage to the map painter at 5k vehicles
+ * (plain harness, run with: mvn -Pbench test; no SUMO needed).
+ *
+ * A synthetic 5k-vehicle RawVehicleFrame (moving positions every step) goes through StepAggregator with
+ * - before : the former per-step HashMaps (Point2D + boxed Double per vehicle) copied into the panel's
+ *            ConcurrentHashMaps with clear+putAll, painter iterating the maps
+ * - after  : SnapshotAccumulator -> VehicleSnapshotBuffer, painter acquiring the newest frame
+ * Both painters only read what paintComponent reads (no drawing). Everything runs on one thread, so the
+ * thread allocation counter covers producer and reader.
+ */
+final class VehicleHandoffBench {
+
+    private VehicleHandoffBench() {}
+
+    private static final int VEHICLES = 5000;
+    private static final int WARMUP_STEPS = 2_000;
+    private static final int STEPS = 20_000;
+
+    private static double sink; // painter reads end up here so the JIT cannot drop them
+
+    public static void main(String[] args) {
+        System.out.println(String.format(Locale.US, "%d vehicles, %d steps per case (after %d warm-up steps), heap max %d MB",
+                VEHICLES, STEPS, WARMUP_STEPS, Runtime.getRuntime().maxMemory() >> 20));
+        System.out.println(String.format(Locale.US, "%-8s %14s %10s %12s %12s",
+                "case", "bytes/step", "GC count", "GC time ms", "us/step"));
+        run("before", new MapsHandoff());
+        run("after", new SnapshotHandoff());
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // ===================== Cases =====================
+    private interface Handoff {
+        StepAggregator.Accumulator producer();
+        void paint(); // what the painter reads of one frame
+    }
+
+    // Former pipeline: new maps per step, handed to MapPanel.updateVehicles (clear + putAll).
+    private static final class MapsHandoff implements Handoff, StepAggregator.Accumulator {
+        private final String[] ids = new String[VEHICLES];
+        private Map<String, Point2D.Double> positions;
+        private Map<String, String> types;
+        private Map<String, Double> speeds;
+
+        // Panel side
+        private final Map<String, Point2D.Double> vehicles = new ConcurrentHashMap<>();
+        private final Map<String, String> vehicleTypes = new ConcurrentHashMap<>();
+        private final Map<String, Double> vehicleSpeeds = new ConcurrentHashMap<>();
+
+        MapsHandoff() {
+            for (int i = 0; i < VEHICLES; i++) ids[i] = VehicleSnapshot.TYPE_NAMES[i % 3] + "_" + i;
+        }
+
+        @Override public StepAggregator.Accumulator producer() { return this; }
+
+        @Override public void begin() {
+            positions = new HashMap<>();
+            types = new HashMap<>();
+            speeds = new HashMap<>();
+        }
+
+        @Override public void accept(RawVehicleFrame f, int i, boolean visible) {
+            String id = ids[f.handle[i]];
+            positions.put(id, new Point2D.Double(f.x[i], f.y[i]));
+            types.put(id, VehicleSnapshot.TYPE_NAMES[f.type[i]]);
+            speeds.put(id, f.speed[i]);
+        }
+
+        @Override public void end() {
+            vehicles.clear(); vehicleTypes.clear(); vehicleSpeeds.clear();
+            vehicles.putAll(positions);
+            vehicleTypes.putAll(types);
+            vehicleSpeeds.putAll(speeds);
+        }
+
+        @Override public void paint() {
+            double s = 0;
+            for (Map.Entry<String, Point2D.Double> e : vehicles.entrySet()) {
+                Point2D.Double p = e.getValue();
+                String type = vehicleTypes.getOrDefault(e.getKey(), Main.TYPE_CAR);
+                double sp = vehicleSpeeds.getOrDefault(e.getKey(), 0.0);
+                s += p.x + p.y + sp + type.length();
+            }
+            sink += s;
+        }
+    }
+
+    // Current pipeline: columnar frames in a triple buffer.
+    private static final class SnapshotHandoff implements Handoff {
+        private final VehicleSnapshotBuffer buffer = new VehicleSnapshotBuffer(256);
+        private final LiveConnectionSumo.SnapshotAccumulator acc = new LiveConnectionSumo.SnapshotAccumulator(buffer);
+
+        @Override public StepAggregator.Accumulator producer() { return acc; }
+
+        @Override public void paint() {
+            VehicleSnapshot frame = buffer.acquire();
+            double s = 0;
+            for (int i = 0; i < frame.count; i++) {
+                s += frame.x[i] + frame.y[i] + frame.speed[i] + VehicleSnapshot.TYPE_NAMES[frame.type[i]].length();
+            }
+            sink += s;
+        }
+    }
+
+    // ===================== Harness =====================
+    private static void run(String name, Handoff handoff) {
+        StepAggregator aggregator = new StepAggregator(null);
+        aggregator.addAccumulator(handoff.producer());
+        RawVehicleFrame frame = new RawVehicleFrame(VEHICLES);
+
+        for (int s = 0; s < WARMUP_STEPS; s++) step(frame, aggregator, handoff, s);
+        System.gc();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long bytes0 = threads.getThreadAllocatedBytes(tid);
+        long[] gc0 = gcTotals();
+        long t0 = System.nanoTime();
+
+        for (int s = WARMUP_STEPS; s < WARMUP_STEPS + STEPS; s++) step(frame, aggregator, handoff, s);
+
+        long wallNanos = System.nanoTime() - t0;
+        long bytes = threads.getThreadAllocatedBytes(tid) - bytes0;
+        long[] gc1 = gcTotals();
+        System.out.println(String.format(Locale.US, "%-8s %14.0f %10d %12d %12.1f", name,
+                bytes / (double) STEPS, gc1[0] - gc0[0], gc1[1] - gc0[1], wallNanos / 1e3 / STEPS));
+    }
+
+    // One collection point: 5k vehicles moving along x, mixed types, every 7th stopped.
+    private static void step(RawVehicleFrame f, StepAggregator aggregator, Handoff handoff, int s) {
+        f.clear();
+        for (int i = 0; i < VEHICLES; i++) {
+            double sp = (i % 7 == 0) ? 0.0 : 5.0 + (i % 20);
+            f.add(i, (i % 100) * 50.0 + sp * s * 0.1, (i / 100) * 50.0, sp, 0.0, (byte) (i % 3));
+        }
+        aggregator.aggregate(f);
+        handoff.paint();
+    }
+
+    // {collection count, collection time ms} summed over all collectors
+    private static long[] gcTotals() {
+        long count = 0, ms = 0;
+        List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean gc : beans) {
+            count += Math.max(0, gc.getCollectionCount());
+            ms += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, ms};
+    }
+}